@@ -0,0 +1,114 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.SubmitException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Spool of the read receipts returned by ReadAssetWithReceipt, recorded on the ledger in
+ * RecordAccessBatch transactions. Receipts are appended to a JSONL file, so they survive
+ * the short lived CLI process, and are flushed once flushSize of them are waiting. The
+ * service shares one spool between concurrent requests, so its methods hold a lock. It is a
+ * ReentrantLock rather than a monitor because a flush submits a transaction while holding it,
+ * and a virtual thread blocked inside synchronized would pin its carrier thread.
+ */
+final class AccessReceiptBuffer {
+
+	private final Supplier<Contract> contract;
+	private final Path spool;
+	private final int flushSize;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	AccessReceiptBuffer(final Supplier<Contract> contract, final Path spool, final int flushSize) {
+		this.contract = contract;
+		this.spool = spool;
+		this.flushSize = flushSize;
+	}
+
+	/**
+	 * Adds a receipt to the spool and flushes the spool when it is full.
+	 *
+	 * @param out where the outcome of a flush is reported
+	 */
+	void add(final JSONObject receipt, final PrintStream out) throws IOException, EndorseException, SubmitException, CommitStatusException, CommitException {
+		lock.lock();
+		try {
+			Files.writeString(spool, receipt.toString() + System.lineSeparator(), StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			if (pending().size() >= flushSize) {
+				flush(out);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Records all spooled receipts, flushSize per transaction. The spool is rewritten after
+	 * each committed transaction, so a failed flush keeps only the receipts not yet recorded
+	 * and can be retried; the chaincode ignores receipts that are recorded twice.
+	 *
+	 * @param out where rejected receipts and the outcome are reported
+	 * @return the number of receipts recorded
+	 */
+	int flush(final PrintStream out) throws IOException, EndorseException, SubmitException, CommitStatusException, CommitException {
+		lock.lock();
+		try {
+			List<String> lines = pending();
+			int recorded = 0;
+			int duplicate = 0;
+			int rejected = 0;
+			for (int start = 0; start < lines.size(); start += flushSize) {
+				List<String> chunk = lines.subList(start, Math.min(start + flushSize, lines.size()));
+				JSONArray receipts = new JSONArray();
+				for (String line : chunk) {
+					receipts.put(new JSONObject(line));
+				}
+
+				var result = contract.get().submitTransaction("RecordAccessBatch", receipts.toString());
+
+				JSONObject summary = new JSONObject(new String(result, StandardCharsets.UTF_8));
+				JSONArray results = summary.getJSONArray("results");
+				for (int i = 0; i < results.length(); i++) {
+					JSONObject item = results.getJSONObject(i);
+					if ("rejected".equals(item.getString("status"))) {
+						out.printf("*** Receipt %s rejected: %s%n", item.optString("receiptId", "item " + item.getInt("index")), item.getString("error"));
+					}
+				}
+				recorded += summary.getInt("recorded");
+				duplicate += summary.getInt("duplicate");
+				rejected += summary.getInt("rejected");
+				Files.write(spool, lines.subList(start + chunk.size(), lines.size()), StandardCharsets.UTF_8);
+			}
+			out.printf("*** %d access records written, %d already recorded, %d receipts rejected%n", recorded, duplicate, rejected);
+			return recorded;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private List<String> pending() throws IOException {
+		if (!Files.exists(spool)) {
+			return List.of();
+		}
+		List<String> lines = Files.readAllLines(spool, StandardCharsets.UTF_8);
+		lines.removeIf(String::isBlank);
+		return lines;
+	}
+}
@@ -10,12 +10,14 @@ import com.google.gson.JsonParser;
 import io.grpc.Grpc;
 import io.grpc.ManagedChannel;
 import io.grpc.TlsChannelCredentials;
+import org.hyperledger.fabric.client.FileCheckpointer;
 import org.hyperledger.fabric.client.CommitException;
 import org.hyperledger.fabric.client.CommitStatusException;
 import org.hyperledger.fabric.client.Contract;
 import org.hyperledger.fabric.client.EndorseException;
 import org.hyperledger.fabric.client.Gateway;
 import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Network;
 import org.hyperledger.fabric.client.SubmitException;
 import org.hyperledger.fabric.client.identity.Identities;
 import org.hyperledger.fabric.client.identity.Identity;
@@ -26,156 +28,383 @@ import org.hyperledger.fabric.client.Proposal.Builder;
 import org.hyperledger.fabric.client.Transaction;
 import org.hyperledger.fabric.client.Proposal;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Map;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.InvalidKeyException;
+import java.security.SecureRandom;
 import java.security.cert.CertificateException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 public final class App {
+	// The organization of a CLI run and the default organization of the service.
 	private static final String ORG = System.getenv().getOrDefault("ORG", "org1");
-	// private static final String MSP_ID = System.getenv().getOrDefault("MSP_ID", "Org1MSP");
-	// Update MSP ID based on organization.
-    private static final String MSP_ID = ORG.substring(0, 1).toUpperCase() + ORG.substring(1) + "MSP";
 	private static final String CHANNEL_NAME = System.getenv().getOrDefault("CHANNEL_NAME", "mako");
 	private static final String CHAINCODE_NAME = System.getenv().getOrDefault("CHAINCODE_NAME", "medcare");
 	private static final String USER = System.getenv().getOrDefault("USER", "owner");
 
-	// Update paths to crypto materials based on organization and user.
-	private static final Path CRYPTO_PATH = Paths.get("../../fabric-samples/test-network/organizations/peerOrganizations", ORG + ".example.com");
-	private static final Path CERT_PATH = CRYPTO_PATH.resolve(Paths.get("users", USER + "@" + ORG + ".example.com", "msp", "signcerts", "cert.pem"));
-	private static final Path KEY_DIR_PATH = CRYPTO_PATH.resolve(Paths.get("users", USER + "@" + ORG + ".example.com", "msp", "keystore"));
-	private static final Path TLS_CERT_PATH = CRYPTO_PATH.resolve(Paths.get("peers", "peer0." + ORG + ".example.com", "tls", "ca.crt"));
-
-	// Update peer endpoint and override authority based on organization.
-	private static final String OVERRIDE_AUTH = "peer0." + ORG + ".example.com";
-	private static final String PEER_ENDPOINT;
-	static {
-		switch (ORG) {
-			case "org1":
-				PEER_ENDPOINT = "localhost:7051";
-				break;
-			case "org2":
-				PEER_ENDPOINT = "localhost:9051";
-				break;
-			case "org3":
-				PEER_ENDPOINT = "localhost:11051";
-				break;
-			default:
-				throw new IllegalArgumentException("Unsupported organization: " + ORG);
-		}
-	}
-
+	// Crypto materials of the organizations, peerOrganizations/<org>.example.com.
+	private static final Path PEER_ORGANIZATIONS_PATH = Paths.get("../../fabric-samples/test-network/organizations/peerOrganizations");
+
+	// Number of assets sent per CreateAssets transaction, must not exceed the chaincode's MAX_BATCH_SIZE.
+	private static final int BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("BATCH_SIZE", "100"));
+
+	// Number of records fetched per getHistoryForAssetPaged call, capped by the chaincode's HISTORY_PAGE_LIMIT.
+	private static final int HISTORY_PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("HISTORY_PAGE_SIZE", "100"));
+
+	// Spool of read receipts waiting for RecordAccessBatch, and the number of receipts per transaction,
+	// which must not exceed the chaincode's MAX_BATCH_SIZE.
+	private static final Path RECEIPT_SPOOL = Paths.get(System.getenv().getOrDefault("RECEIPT_SPOOL", "access_receipts.jsonl"));
+	private static final int RECEIPT_FLUSH_SIZE = Integer.parseInt(System.getenv().getOrDefault("RECEIPT_FLUSH_SIZE", "50"));
+
+	// Number of transactions submitted and not yet committed at a time, per organization, by the bulk
+	// operations: CreateAssets, the bulk ACL operations, MigrateAcls and EraseDataSubject.
+	private static final int SUBMIT_IN_FLIGHT = Integer.parseInt(System.getenv().getOrDefault("SUBMIT_IN_FLIGHT", "8"));
+
+	// Number of assets per bulk ACL or MigrateAcls transaction, which should not exceed the chaincode's
+	// ACL_CHUNK_SIZE, and per bulkEraseAssets transaction, which should not exceed its ERASE_CHUNK_SIZE.
+	private static final int ACL_CHUNK_SIZE = Integer.parseInt(System.getenv().getOrDefault("ACL_CHUNK_SIZE", "100"));
+	private static final int ERASE_CHUNK_SIZE = Integer.parseInt(System.getenv().getOrDefault("ERASE_CHUNK_SIZE", "50"));
+
+	// Checkpoint of the asset event listener and the file of its local read model.
+	private static final Path EVENT_CHECKPOINT = Paths.get(System.getenv().getOrDefault("EVENT_CHECKPOINT", "asset_events.checkpoint"));
+	private static final Path EVENT_INDEX = Paths.get(System.getenv().getOrDefault("EVENT_INDEX", "asset_index.jsonl"));
+
+	// Cache of ReadAcl and QueryAssetByPatient results, invalidated by the AssetEvents of the chaincode.
+	// In strict mode ReadAcl, which decides who may read an asset, always goes to the peer.
+	private static final int CACHE_SIZE = Integer.parseInt(System.getenv().getOrDefault("CACHE_SIZE", "1000"));
+	private static final Duration CACHE_TTL = Duration.ofSeconds(Long.parseLong(System.getenv().getOrDefault("CACHE_TTL_SECONDS", "60")));
+	private static final boolean CACHE_STRICT = Boolean.parseBoolean(System.getenv().getOrDefault("CACHE_STRICT", "false"));
+	private static final Set<String> CACHE_SENSITIVE_FUNCTIONS = Set.of("ReadAcl");
+
+	// Evaluate functions whose identical concurrent calls share one call to a peer, comma separated.
+	// Only read-only functions without a per-call effect belong here, never ReadAssetWithReceipt.
+	private static final Set<String> SINGLE_FLIGHT_FUNCTIONS = Arrays.stream(System.getenv()
+			.getOrDefault("SINGLE_FLIGHT_FUNCTIONS", "ReadAcl,QueryAssetByPatient,getHistoryForAsset").split(","))
+			.map(String::trim).filter(function -> !function.isEmpty()).collect(Collectors.toUnmodifiableSet());
+
+	// Interval of the health check of the channels to the peers of an organization, which are
+	// listed in PEER_ENDPOINTS_<ORG>, see peerEndpointsOf.
+	private static final Duration PEER_HEALTH_INTERVAL = Duration.ofSeconds(Long.parseLong(System.getenv().getOrDefault("PEER_HEALTH_INTERVAL_SECONDS", "5")));
+
+	// Number of endorsements in flight per peer, whatever the number of concurrent service requests.
+	private static final int PEER_MAX_ENDORSEMENTS = Integer.parseInt(System.getenv().getOrDefault("PEER_MAX_ENDORSEMENTS", "64"));
+
+	// Address of the service mode, which runs each request on a virtual thread of its own.
+	private static final String SERVICE_HOST = System.getenv().getOrDefault("SERVICE_HOST", "127.0.0.1");
+	private static final int SERVICE_PORT = Integer.parseInt(System.getenv().getOrDefault("SERVICE_PORT", "8080"));
+
+	private final OrgGateway session;
+	private final PrintStream out;
+	private final PeerPool peers;
+	private final SingleFlight reads;
+	private final Network network;
 	private final Contract contract;
+	private final AccessReceiptBuffer receipts;
+	private final EvaluateCache cache;
+	private final SubmitEngine engine;
 	// private final String assetId = "asset" + Instant.now().toEpochMilli();
 	private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
 	public static void main(final String[] args) throws Exception {
-		// The gRPC client connection should be shared by all Gateway connections to
-		// this endpoint.
-		var channel = newGrpcConnection();
-
-		var builder = Gateway.newInstance().identity(newIdentity()).signer(newSigner()).connection(channel)
-				// Default timeouts for different gRPC calls
-				.evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-				.endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
-				.submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-				.commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES));
-
-		try (var gateway = builder.connect()) {
-			// new App(gateway).run(args[0]);
-			App app = new App(gateway);
-			switch (args[0]) {
-				case "RetrieveFile": 
-					app.ReadAsset(args[1]); 
-					break;
-				case "CreateAsset": 
-					app.createAsset(args[1], args[2], args[3], Integer.parseInt(args[4]), args[5], args[6]);
-					break;
-				case "UploadKey":
-					app.UploadKey(args[1], args[2]);
-					break;
-				case "ReadAsset":
-					app.ReadAsset(args[1]);
-					break;
-				case "ReadAcl":
-					app.ReadAcl(args[1]);   
-					break;
-				case "RequestPermission":
-					app.requestPermission(args[1], args[2]);   
-					break;
-				case "GetHistoryForAsset":
-					app.getHistoryForAsset(args[1]);   
-					break;
-				case "UpdateAclPermission":
-					app.updateAclPermission(args[1], args[2]);   
-					break;
-				case "RevokeAclPermission":
-					app.revokeAclPermission(args[1], args[2]);   
-					break;
-				case "DeleteAsset":
-					app.DeleteAsset(args[1]);   
-					break;
-				case "eraseDataRequest":
-					app.eraseDataRequest(args[1]);   
-					break;
-				case "QueryAssetByPatient":
-					app.QueryAssetByPatient(args[1]);   
-					break;
-				case "CreateAsset_mock": 
-					app.createAsset(args[1], args[2], args[3], Integer.parseInt(args[4]), args[5], args[6]);
-					break;
-			}
-		} finally {
-			channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		if (runOffline(args, System.out)) {
+			return;
+		}
+		switch (args[0]) {
+			case "Serve":
+				new GatewayService(ORG, SERVICE_HOST, SERVICE_PORT, App::connect).serve();
+				return;
+			default:
+				break;
+		}
+
+		try (var session = connect(ORG)) {
+			new App(session, System.out).run(args);
 		}
 	}
 
-	private static ManagedChannel newGrpcConnection() throws IOException {
+	/**
+	 * Runs the operations answered from the local read model, which do not connect to a peer.
+	 *
+	 * @return false if the operation needs a peer
+	 */
+	static boolean runOffline(final String[] args, final PrintStream out) throws IOException {
+		switch (args[0]) {
+			case "IndexHistory":
+				out.println(AssetReadModel.open(EVENT_INDEX).history(args[1]).toString(2));
+				return true;
+			case "IndexAssets":
+				out.println(AssetReadModel.open(EVENT_INDEX).assets(args[1]));
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Connects an organization to its peers with the identity of USER in that organization,
+	 * one gRPC channel and Gateway per peer.
+	 */
+	static OrgGateway connect(final String org) throws IOException, CertificateException, InvalidKeyException {
+		Map<String, String> peerEndpoints = peerEndpointsOf(org);
+		Path cryptoPath = PEER_ORGANIZATIONS_PATH.resolve(org + ".example.com");
+		var identity = newIdentity(org, cryptoPath);
+		var signer = newSigner(org, cryptoPath);
+
+		List<PeerPool.Peer> peers = new ArrayList<>();
+		for (Map.Entry<String, String> peer : peerEndpoints.entrySet()) {
+			// The gRPC client connection should be shared by all Gateway connections to
+			// this endpoint.
+			var endorsements = new EndorsementLimiter(PEER_MAX_ENDORSEMENTS);
+			var channel = newGrpcConnection(peer.getKey(), peer.getValue(), cryptoPath, endorsements);
+
+			var builder = Gateway.newInstance().identity(identity).signer(signer).connection(channel)
+					// Default timeouts for different gRPC calls
+					.evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
+					.endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
+					.submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
+					.commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES));
+
+			var gateway = builder.connect();
+			// Get a network instance representing the channel where the smart contract is
+			// deployed.
+			var network = gateway.getNetwork(CHANNEL_NAME);
+
+			// Get the smart contract from the network.
+			var contract = network.getContract(CHAINCODE_NAME);
+			peers.add(new PeerPool.Peer(peer.getKey(), peer.getValue(), channel, endorsements, gateway, network, contract, contract::evaluateTransaction));
+		}
+		var pool = new PeerPool(org, peers, PEER_HEALTH_INTERVAL.toMillis());
+		var reads = new SingleFlight(pool::evaluateTransaction, SINGLE_FLIGHT_FUNCTIONS);
+		var receipts = new AccessReceiptBuffer(pool::contract, RECEIPT_SPOOL, RECEIPT_FLUSH_SIZE);
+		var cache = new EvaluateCache(reads::evaluate, CACHE_SIZE, CACHE_TTL, CACHE_STRICT, CACHE_SENSITIVE_FUNCTIONS);
+		var engine = new SubmitEngine("submit-" + org, SUBMIT_IN_FLIGHT);
+		return new OrgGateway(org, CHAINCODE_NAME, pool, reads, receipts, cache, engine);
+	}
+
+	private static ManagedChannel newGrpcConnection(final String peerName, final String peerEndpoint, final Path cryptoPath, final EndorsementLimiter endorsements)
+			throws IOException {
 		var credentials = TlsChannelCredentials.newBuilder()
-				.trustManager(TLS_CERT_PATH.toFile())
+				.trustManager(cryptoPath.resolve(Paths.get("peers", peerName, "tls", "ca.crt")).toFile())
 				.build();
-		return Grpc.newChannelBuilder(PEER_ENDPOINT, credentials)
-				.overrideAuthority(OVERRIDE_AUTH)
+		// Override authority based on the peer.
+		return Grpc.newChannelBuilder(peerEndpoint, credentials)
+				.overrideAuthority(peerName)
+				.intercept(endorsements)
 				.build();
 	}
 
-	private static Identity newIdentity() throws IOException, CertificateException {
-		var certReader = Files.newBufferedReader(CERT_PATH);
+	/**
+	 * The peers of an organization by host name, from PEER_ENDPOINTS_<ORG>, a comma separated
+	 * list of peer=endpoint such as "peer0=localhost:7051,peer1=localhost:8051", where a
+	 * short peer name is completed with the domain of the organization. Without it the
+	 * organization has its single default peer0.
+	 */
+	static Map<String, String> peerEndpointsOf(final String org) {
+		String defaultEndpoint = peerEndpointOf(org);
+		String domain = "." + org + ".example.com";
+		Map<String, String> peers = new LinkedHashMap<>();
+		String list = System.getenv("PEER_ENDPOINTS_" + org.toUpperCase());
+		if (list == null || list.isBlank()) {
+			peers.put("peer0" + domain, defaultEndpoint);
+			return peers;
+		}
+		for (String entry : list.split(",")) {
+			int separator = entry.indexOf('=');
+			if (separator <= 0 || separator == entry.length() - 1) {
+				throw new IllegalArgumentException("Invalid peer endpoint, expected peer=host:port: " + entry);
+			}
+			String name = entry.substring(0, separator).trim();
+			peers.put(name.contains(".") ? name : name + domain, entry.substring(separator + 1).trim());
+		}
+		return peers;
+	}
+
+	// Default peer endpoint based on organization.
+	private static String peerEndpointOf(final String org) {
+		switch (org) {
+			case "org1":
+				return "localhost:7051";
+			case "org2":
+				return "localhost:9051";
+			case "org3":
+				return "localhost:11051";
+			default:
+				throw new IllegalArgumentException("Unsupported organization: " + org);
+		}
+	}
+
+	static String mspIdOf(final String org) {
+		return org.substring(0, 1).toUpperCase() + org.substring(1) + "MSP";
+	}
+
+	private static Path mspPathOf(final String org, final Path cryptoPath) {
+		return cryptoPath.resolve(Paths.get("users", USER + "@" + org + ".example.com", "msp"));
+	}
+
+	private static Identity newIdentity(final String org, final Path cryptoPath) throws IOException, CertificateException {
+		var certReader = Files.newBufferedReader(mspPathOf(org, cryptoPath).resolve(Paths.get("signcerts", "cert.pem")));
 		var certificate = Identities.readX509Certificate(certReader);
 
-		return new X509Identity(MSP_ID, certificate);
+		return new X509Identity(mspIdOf(org), certificate);
 	}
 
-	private static Signer newSigner() throws IOException, InvalidKeyException {
-		var keyReader = Files.newBufferedReader(getPrivateKeyPath());
+	private static Signer newSigner(final String org, final Path cryptoPath) throws IOException, InvalidKeyException {
+		var keyReader = Files.newBufferedReader(getPrivateKeyPath(mspPathOf(org, cryptoPath).resolve("keystore")));
 		var privateKey = Identities.readPrivateKey(keyReader);
 
 		return Signers.newPrivateKeySigner(privateKey);
 	}
 
-	private static Path getPrivateKeyPath() throws IOException {
-		try (var keyFiles = Files.list(KEY_DIR_PATH)) {
+	private static Path getPrivateKeyPath(final Path keyDirPath) throws IOException {
+		try (var keyFiles = Files.list(keyDirPath)) {
 			return keyFiles.findFirst().orElseThrow();
 		}
 	}
 
-	public App(final Gateway gateway) {
-		// Get a network instance representing the channel where the smart contract is
-		// deployed.
-		var network = gateway.getNetwork(CHANNEL_NAME);
+	App(final OrgGateway session, final PrintStream out) {
+		this.session = session;
+		this.out = out;
+		peers = session.getPeers();
+		reads = session.getReads();
+		network = session.getNetwork();
+		contract = session.getContract();
+		receipts = session.getReceipts();
+		cache = session.getCache();
+		engine = session.getSubmitEngine();
+	}
 
-		// Get the smart contract from the network.
-		contract = network.getContract(CHAINCODE_NAME);
+	/**
+	 * Runs one operation, named by the first argument, against the peer of the organization.
+	 *
+	 * @return false if the operation is unknown
+	 */
+	boolean run(final String[] args) throws Exception {
+		switch (args[0]) {
+			case "RetrieveFile": 
+				readAssetFast(args[1]); 
+				break;
+			case "CreateAsset": 
+				createAsset(args[1], args[2], args[3], Integer.parseInt(args[4]), args[5], args[6]);
+				break;
+			case "UploadKey":
+				UploadKey(args[1], args[2]);
+				break;
+			case "ReadAsset":
+				ReadAsset(args[1]);
+				break;
+			case "ReadAssets":
+				readAssets(Arrays.asList(args[1].split(",")));
+				break;
+			case "BenchmarkCachedReads":
+				benchmarkCachedReads(Arrays.asList(args[1].split(",")), args.length > 2 ? Integer.parseInt(args[2]) : 5);
+				break;
+			case "PeerStats":
+				peerStats(args.length > 1 ? Arrays.asList(args[1].split(",")) : List.of(), args.length > 2 ? Integer.parseInt(args[2]) : 1);
+				break;
+			case "BenchmarkReads":
+				benchmarkReads(Arrays.asList(args[1].split(",")), args.length > 2 ? Integer.parseInt(args[2]) : 5);
+				break;
+			case "ReadAssetFast":
+				readAssetFast(args[1]);
+				break;
+			case "FlushReceipts":
+				flushReceipts();
+				break;
+			case "SetReceiptKey":
+				setReceiptKey(args.length > 1 ? args[1] : null);
+				break;
+			case "GetAccessStats":
+				getAccessStats(args[1], args[2]);
+				break;
+			case "ReadAcl":
+				ReadAcl(args[1]);   
+				break;
+			case "RequestPermission":
+				requestPermission(args[1], args[2]);   
+				break;
+			case "GetHistoryForAsset":
+				getHistoryForAsset(args[1]);   
+				break;
+			case "GetHistoryForAssetPaged":
+				getHistoryForAssetPaged(args[1], args.length > 2 ? Integer.parseInt(args[2]) : HISTORY_PAGE_SIZE);
+				break;
+			case "UpdateAclPermission":
+				updateAclPermission(args[1], args[2]);   
+				break;
+			case "RevokeAclPermission":
+				revokeAclPermission(args[1], args[2]);   
+				break;
+			case "BulkUpdateAclPermission":
+				bulkAclPermission("bulkUpdateAclPermission", args[1], args[2]);
+				break;
+			case "BulkRevokeAclPermission":
+				bulkAclPermission("bulkRevokeAclPermission", args[1], args[2]);
+				break;
+			case "MigrateAcls":
+				migrateAcls(args[1]);
+				break;
+			case "DeleteAsset":
+				DeleteAsset(args[1]);   
+				break;
+			case "eraseDataRequest":
+				eraseDataRequest(args[1]);   
+				break;
+			case "ConfirmErasure":
+				confirmErasure(args[1]);
+				break;
+			case "GetErasureStatus":
+				getErasureStatus(args[1]);
+				break;
+			case "UpdateAssetVersion":
+				updateAssetVersion(args[1], args[2], args[3]);
+				break;
+			case "ListAssetVersions":
+				listAssetVersions(args[1], args.length > 2 ? Integer.parseInt(args[2]) : HISTORY_PAGE_SIZE);
+				break;
+			case "ReadAssetVersion":
+				readAssetVersion(args[1], Integer.parseInt(args[2]));
+				break;
+			case "PurgeAssetVersion":
+				purgeAssetVersion(args[1], Integer.parseInt(args[2]));
+				break;
+			case "ListenEvents":
+				listenEvents();
+				break;
+			case "EraseDataSubject":
+				eraseDataSubject(args[1], args.length > 2 ? args[2] : "delete");
+				break;
+			case "QueryAssetByPatient":
+				QueryAssetByPatient(args[1]);   
+				break;
+			case "CreateAssets":
+				createAssets(Paths.get(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : BATCH_SIZE);
+				break;
+			case "CreateAsset_mock": 
+				createAsset(args[1], args[2], args[3], Integer.parseInt(args[4]), args[5], args[6]);
+				break;
+			default:
+				return false;
+		}
+		return true;
 	}
 	
 	/**
@@ -184,11 +413,11 @@ public final class App {
 	 * the chaincode deployed later would likely not need to run an "init" function.
 	 */
 	private void initLedger() throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.println("\n--> Submit Transaction: InitLedger, function creates the initial set of assets on the ledger");
+		out.println("\n--> Submit Transaction: InitLedger, function creates the initial set of assets on the ledger");
 
 		contract.submitTransaction("InitLedger");
 
-		System.out.println("*** Transaction committed successfully");
+		out.println("*** Transaction committed successfully");
 	}
 
 	private String prettyJson(final byte[] json) {
@@ -201,7 +430,7 @@ public final class App {
 	}
 
 	private void createAsset(final String assetID, final String pointer, final String dataSubject, final int version, final String filekey, final String acl_string) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.printf("\n--> Submit Transaction: CreateAsset, creates new asset with ID %s", assetID);
+		out.printf("\n--> Submit Transaction: CreateAsset, creates new asset with ID %s", assetID);
 		List<String> acl = Arrays.asList(acl_string.split(","));
 		// Create a map to hold the transient data
 		Map<String, byte[]> transientDataMap = new HashMap<>();
@@ -224,11 +453,81 @@ public final class App {
 				.endorse()
 				.submit();
 
-		System.out.println("*** Transaction committed successfully");
+		out.println("*** Transaction committed successfully");
+	}
+
+	/**
+	 * Registers the assets listed in a JSONL file, one JSON object with the CreateAsset
+	 * properties per line, in CreateAssets transactions of up to batchSize assets each.
+	 * The acl may be given as a JSON array or as a comma separated string. The batches are
+	 * pipelined through the submit engine, so reading the file waits only while it has
+	 * SUBMIT_IN_FLIGHT transactions in flight, and a failed batch does not stop the others.
+	 */
+	private void createAssets(final Path file, final int batchSize) throws IOException, InterruptedException {
+		out.printf("\n--> Submit Transactions: CreateAssets, creates the assets in %s in batches of %d with up to %d transactions in flight%n", file,
+				batchSize, engine.getMaxInFlight());
+		AtomicInteger created = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		List<CompletableFuture<Void>> batches = new ArrayList<>();
+		long start = System.nanoTime();
+		try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			JSONArray batch = new JSONArray();
+			String line;
+			while (true) {
+				line = reader.readLine();
+				if (line != null && !line.isBlank()) {
+					JSONObject json = new JSONObject(line);
+					if (json.opt("acl") instanceof String) {
+						json.put("acl", Arrays.asList(json.getString("acl").split(",")));
+					}
+					batch.put(json);
+				}
+				if (batch.length() == batchSize || (line == null && batch.length() > 0)) {
+					batches.add(submitAssetBatch(batch, created, failed));
+					batch = new JSONArray();
+				}
+				if (line == null) {
+					break;
+				}
+			}
+		}
+		CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).join();
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		out.printf("*** %d assets created, %d failed, in %d transactions and %d ms%n", created.get(), failed.get(), batches.size(), millis);
+		out.println("*** Submit engine: " + engine.stats());
+	}
+
+	/**
+	 * Submits a CreateAssets transaction for a batch, waiting while the submit engine is at
+	 * its limit, and reports the batch once it has committed.
+	 */
+	private CompletableFuture<Void> submitAssetBatch(final JSONArray batch, final AtomicInteger created, final AtomicInteger failed) throws InterruptedException {
+		Map<String, byte[]> transientDataMap = new HashMap<>();
+		transientDataMap.put("assets_properties", batch.toString().getBytes(StandardCharsets.UTF_8));
+
+		return engine.submit(contract, "CreateAssets", transientDataMap).handle((result, error) -> {
+			if (error != null) {
+				out.printf("*** Batch of %d assets failed: %s%n", batch.length(), SubmitEngine.causeOf(error).getMessage());
+				failed.addAndGet(batch.length());
+				return null;
+			}
+			JSONObject summary = new JSONObject(new String(result, StandardCharsets.UTF_8));
+			JSONArray results = summary.getJSONArray("results");
+			for (int i = 0; i < results.length(); i++) {
+				JSONObject item = results.getJSONObject(i);
+				if (!"created".equals(item.getString("status"))) {
+					out.printf("*** Failed %s: %s%n", item.optString("assetID", "item " + item.getInt("index")), item.getString("error"));
+				}
+			}
+			out.printf("*** Batch committed: %d created, %d failed%n", summary.getInt("created"), summary.getInt("failed"));
+			created.addAndGet(summary.getInt("created"));
+			failed.addAndGet(summary.getInt("failed"));
+			return null;
+		});
 	}
 
 	private void UploadKey(final String keyType, final String key) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.printf("\n--> Submit Transaction: uploadKey, adding key %s",keyType);
+		out.printf("\n--> Submit Transaction: uploadKey, adding key %s",keyType);
 		// Create a map to hold the transient data
 		Map<String, byte[]> transientDataMap = new HashMap<>();
 
@@ -246,11 +545,11 @@ public final class App {
 				.endorse()
 				.submit();
 
-		System.out.println("*** Transaction committed successfully");
+		out.println("*** Transaction committed successfully");
 	}
 
 	private void DeleteAsset(final String assetID) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.printf("\n--> Submit Transaction: DeleteAsset, delete asset with ID %s", assetID);
+		out.printf("\n--> Submit Transaction: DeleteAsset, delete asset with ID %s", assetID);
 		// Create a map to hold the transient data
 		Map<String, byte[]> transientDataMap = new HashMap<>();
 
@@ -267,13 +566,13 @@ public final class App {
 				.endorse()
 				.submit();
 
-		System.out.println("*** Transaction committed successfully");
+		out.println("*** Transaction committed successfully");
 	}
 
 	private void GetAsset(final String assetID) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.println("\n--> Submit Transaction: ReadAsset, function returns asset attributes and write this access record into the ledger");
+		out.println("\n--> Submit Transaction: ReadAsset, function returns asset attributes and write this access record into the ledger");
 		var evaluateResult = contract.submitTransaction("ReadAsset", assetID);
-		System.out.println("*** Transaction committed successfully");
+		out.println("*** Transaction committed successfully");
 
 		String results = new String(evaluateResult, StandardCharsets.UTF_8);
 
@@ -292,82 +591,426 @@ public final class App {
 		String pointer = results.substring(pointerStartIndex);
 
 		// return assetId, fileKey, pointer
-		System.out.printf("assetId: %s, fileKey: %s, pointer: %s",assetId, fileKey, pointer);
+		out.printf("assetId: %s, fileKey: %s, pointer: %s",assetId, fileKey, pointer);
 	}
 
 	private void ReadAsset(final String assetID) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.println("\n--> Submit Transaction: ReadAsset, function returns asset attributes and write this access record into the ledger");
+		out.println("\n--> Submit Transaction: ReadAsset, function returns asset attributes and write this access record into the ledger");
 
 		var evaluateResult = contract.submitTransaction("ReadAsset", assetID);
 
-		System.out.println("*** Transaction committed successfully");
-		// System.out.println("*** Result:" + prettyJson(evaluateResult));
-		System.out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
+		out.println("*** Transaction committed successfully");
+		// out.println("*** Result:" + prettyJson(evaluateResult));
+		out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
+	}
+
+	private void readAssets(final List<String> assetIDs) throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.printf("\n--> Submit Transaction: ReadAssets, function returns the attributes of %d assets and writes one access record into the ledger%n", assetIDs.size());
+
+		var result = contract.submitTransaction("ReadAssets", new JSONArray(assetIDs).toString());
+
+		out.println("*** Transaction committed successfully");
+		JSONObject summary = new JSONObject(new String(result, StandardCharsets.UTF_8));
+		JSONArray results = summary.getJSONArray("results");
+		for (int i = 0; i < results.length(); i++) {
+			JSONObject item = results.getJSONObject(i);
+			switch (item.getString("status")) {
+				case "read":
+					out.println("*** Result: " + item.getString("result"));
+					break;
+				case "denied":
+					out.printf("*** Denied %s: %s%n", item.getString("assetID"), item.getString("error"));
+					break;
+				default:
+					out.printf("*** Not found %s%n", item.getString("assetID"));
+					break;
+			}
+		}
+		out.printf("*** %d read, %d denied, %d not found%n", summary.getInt("read"), summary.getInt("denied"), summary.getInt("notFound"));
+	}
+
+	/**
+	 * Compares reading a set of assets with one ReadAsset transaction each against a single
+	 * ReadAssets transaction, and prints the mean wall time of both over the given rounds.
+	 */
+	private void benchmarkReads(final List<String> assetIDs, final int rounds) throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.printf("\n--> Benchmark: %d ReadAsset transactions against one ReadAssets transaction, %d rounds%n", assetIDs.size(), rounds);
+
+		long singleNanos = 0;
+		long batchNanos = 0;
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			for (String assetID : assetIDs) {
+				contract.submitTransaction("ReadAsset", assetID);
+			}
+			singleNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			contract.submitTransaction("ReadAssets", new JSONArray(assetIDs).toString());
+			batchNanos += System.nanoTime() - start;
+		}
+
+		long singleMillis = TimeUnit.NANOSECONDS.toMillis(singleNanos / rounds);
+		long batchMillis = TimeUnit.NANOSECONDS.toMillis(batchNanos / rounds);
+		out.printf("*** ReadAsset x %d: %d ms per round%n", assetIDs.size(), singleMillis);
+		out.printf("*** ReadAssets: %d ms per round%n", batchMillis);
+	}
+
+	/**
+	 * Evaluates ReadAcl for the assets repeatedly, the way a portal does, with the cache kept
+	 * up to date by the chaincode events from now on, and reports the cache counters.
+	 */
+	private void benchmarkCachedReads(final List<String> assetIDs, final int rounds) throws GatewayException, InterruptedException {
+		out.printf("\n--> Benchmark: ReadAcl of %d assets, %d rounds through the cache%n", assetIDs.size(), rounds);
+
+		session.startCacheInvalidation();
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			for (String assetID : assetIDs) {
+				cache.evaluate(EvaluateCache.assetTag(assetID), "ReadAcl", assetID);
+			}
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis((System.nanoTime() - start) / rounds);
+		out.printf("*** ReadAcl x %d: %d ms per round%n", assetIDs.size(), millis);
+		out.println("*** Cache: " + cache.stats());
+	}
+
+	/**
+	 * Reports the routing statistics of the peers of the organization, after evaluating
+	 * ReadAcl for the given assets the given number of rounds through the peer pool.
+	 */
+	private void peerStats(final List<String> assetIDs, final int rounds) throws GatewayException {
+		out.printf("\n--> Evaluate Transactions: ReadAcl of %d assets, %d rounds across %d peers%n", assetIDs.size(), rounds, peers.peers().size());
+
+		for (int round = 0; round < rounds; round++) {
+			for (String assetID : assetIDs) {
+				peers.evaluateTransaction("ReadAcl", assetID);
+			}
+		}
+		out.println("*** Result: " + peers.stats().toString(2));
+	}
+
+	/**
+	 * Reads an asset with a single evaluate call and spools the returned receipt, so the
+	 * access record is written later in a RecordAccessBatch transaction together with other
+	 * reads. Falls back to the ReadAsset transaction if the read cannot be evaluated, for
+	 * example when no receipt key has been set.
+	 */
+	private void readAssetFast(final String assetID) throws IOException, EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.println("\n--> Evaluate Transaction: ReadAssetWithReceipt, function returns asset attributes and a receipt of the read");
+
+		final byte[] evaluateResult;
+		try {
+			evaluateResult = reads.evaluate("ReadAssetWithReceipt", assetID);
+		} catch (GatewayException e) {
+			out.println("*** Evaluate failed, reading with a submitted transaction: " + e.getMessage());
+			ReadAsset(assetID);
+			return;
+		}
+		if (evaluateResult.length == 0) {
+			out.println("*** Result: ");
+			return;
+		}
+
+		JSONObject read = new JSONObject(new String(evaluateResult, StandardCharsets.UTF_8));
+		out.println("*** Result: " + read.getString("result"));
+		receipts.add(read.getJSONObject("receipt"), out);
+	}
+
+	private void flushReceipts() throws IOException, EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.printf("\n--> Submit Transaction: RecordAccessBatch, records the reads spooled in %s%n", RECEIPT_SPOOL);
+
+		receipts.flush(out);
+	}
+
+	/**
+	 * Sets the key the chaincode tags read receipts with. A random key is generated when
+	 * none is given; every organization reading with receipts uses the same key.
+	 */
+	private void setReceiptKey(final String base64Key) throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.println("\n--> Submit Transaction: SetReceiptKey, sets the key of read receipts");
+		String key = base64Key;
+		if (key == null) {
+			byte[] random = new byte[32];
+			new SecureRandom().nextBytes(random);
+			key = Base64.getEncoder().encodeToString(random);
+		}
+
+		Map<String, byte[]> transientDataMap = new HashMap<>();
+		transientDataMap.put("receipt_key", new JSONObject().put("key", key).toString().getBytes(StandardCharsets.UTF_8));
+
+		contract.newProposal("SetReceiptKey")
+				.putAllTransient(transientDataMap)
+				.build()
+				.endorse()
+				.submit();
+
+		out.println("*** Transaction committed successfully");
 	}
 
 	private void eraseDataRequest(final String assetID) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.printf("\n--> Submit Transaction: eraseDataRequest, function tries to send data erase request to all data holders for asset %s", assetID);
+		out.printf("\n--> Submit Transaction: eraseDataRequest, function tries to send data erase request to all data holders for asset %s", assetID);
 
 		var evaluateResult = contract.submitTransaction("eraseDataRequest", assetID);
 
-		System.out.println("*** Transaction committed successfully");
+		out.println("*** Transaction committed successfully");
+
+		out.println("*** Result: " + prettyJson(evaluateResult));
+	}
+
+	private void confirmErasure(final String assetID) throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.printf("\n--> Submit Transaction: ConfirmErasure, confirm that this organization erased its copies of asset %s%n", assetID);
+
+		var submitResult = contract.submitTransaction("ConfirmErasure", assetID);
 
-		System.out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
+		out.println("*** Transaction committed successfully");
+
+		out.println("*** Result: " + prettyJson(submitResult));
+	}
+
+	private void eraseDataSubject(final String dataSubject, final String mode) throws GatewayException, InterruptedException {
+		out.printf("\n--> Submit Transactions: bulkEraseAssets, %s all assets of %s%n", mode, dataSubject);
+
+		new BulkSubmitter(contract, engine, "bulkEraseAssets", (selection, continuation) -> new String[] {selection, mode, continuation}, ERASE_CHUNK_SIZE, out)
+				.run(new JSONObject().put("dataSubject", dataSubject));
+	}
+
+	private void getErasureStatus(final String assetID) throws GatewayException {
+		out.printf("\n--> Evaluate Transaction: GetErasureStatus, function returns which holders have erased asset %s%n", assetID);
+
+		var evaluateResult = reads.evaluate("GetErasureStatus", assetID);
+
+		out.println("*** Result:" + prettyJson(evaluateResult));
 	}
 
 	private void ReadAcl(final String assetID) throws GatewayException {
-		System.out.println("\n--> Evaluate Transaction: ReadAcl, function returns asset attribute");
+		out.println("\n--> Evaluate Transaction: ReadAcl, function returns asset attribute");
 
-		var evaluateResult = contract.evaluateTransaction("ReadAcl", assetID);
+		var evaluateResult = cache.evaluate(EvaluateCache.assetTag(assetID), "ReadAcl", assetID);
 		
-		System.out.println("*** Result:" + prettyJson(evaluateResult));
+		out.println("*** Result:" + prettyJson(evaluateResult));
+	}
+
+	/**
+	 * Keeps the local read model up to date with the AssetEvents of the chaincode until the
+	 * process is interrupted. The listener resumes from its checkpoint file on the next start.
+	 */
+	private void listenEvents() throws IOException, InterruptedException {
+		AssetReadModel model = AssetReadModel.open(EVENT_INDEX, this::dataSubjectOf);
+		try (var checkpointer = new FileCheckpointer(EVENT_CHECKPOINT)) {
+			var listener = new AssetEventListener(new GatewayEventSource(network, CHAINCODE_NAME, true), checkpointer, model);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				listener.stop();
+				try {
+					listener.awaitStopped(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+
+			out.printf("\n--> Listening for %s events from block %d into %s, Ctrl-C to stop%n", AssetEventListener.EVENT_NAME, checkpointer.getBlockNumber().orElse(0), EVENT_INDEX);
+			listener.run();
+			out.printf("*** Listener stopped after %d events, last block %d%n", listener.applied(), model.lastBlock());
+		}
+	}
+
+	/**
+	 * Looks up the data subject of an asset for the read model, or null if this client may
+	 * not read the asset.
+	 */
+	private String dataSubjectOf(final String assetID) {
+		try {
+			return new String(contract.evaluateTransaction("ReadAssetDataSubject", assetID), StandardCharsets.UTF_8);
+		} catch (GatewayException e) {
+			out.printf("*** Data subject of %s not available: %s%n", assetID, e.getMessage());
+			return null;
+		}
+	}
+
+	private void getAccessStats(final String scope, final String id) throws GatewayException {
+		out.printf("\n--> Evaluate Transaction: GetAccessStats, function returns how often the %s %s has been read%n", scope, id);
+
+		var evaluateResult = reads.evaluate("GetAccessStats", scope, id);
+
+		out.println("*** Result:" + prettyJson(evaluateResult));
 	}
 
 	private void QueryAssetByPatient(final String dataSubject) throws GatewayException {
-		System.out.printf("\n--> Evaluate Transaction: QueryAssetByPatient, function returns all assets related to dataSubject %s:", dataSubject);
+		out.printf("\n--> Evaluate Transaction: QueryAssetByPatient, function returns all assets related to dataSubject %s:", dataSubject);
 
-		var evaluateResult = contract.evaluateTransaction("QueryAssetByPatient", dataSubject);
+		var evaluateResult = cache.evaluate(EvaluateCache.patientTag(dataSubject), "QueryAssetByPatient", dataSubject);
 		
-		System.out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
+		out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
 	}
 
 	private void getHistoryForAsset(final String assetID) throws GatewayException {
-		System.out.printf("\n--> Evaluate Transaction: retrieving transaction records of %s", assetID);
+		out.printf("\n--> Evaluate Transaction: retrieving transaction records of %s", assetID);
 
-		var evaluateResult = contract.evaluateTransaction("getHistoryForAsset", assetID);
+		var evaluateResult = reads.evaluate("getHistoryForAsset", assetID);
 		
-		System.out.println(" Result: " + new String(evaluateResult, StandardCharsets.UTF_8) + ",");
+		out.println(" Result: " + new String(evaluateResult, StandardCharsets.UTF_8) + ",");
+	}
+
+	/**
+	 * Prints the whole history of a key, one record per line, fetching it a page at a time
+	 * so neither side holds more than a page.
+	 */
+	private void getHistoryForAssetPaged(final String assetID, final int pageSize) throws GatewayException {
+		out.printf("\n--> Evaluate Transaction: retrieving transaction records of %s in pages of %d%n", assetID, pageSize);
+
+		int count = 0;
+		String bookmark = "";
+		do {
+			var evaluateResult = reads.evaluate("getHistoryForAssetPaged", assetID, Integer.toString(pageSize), bookmark);
+			JSONObject page = new JSONObject(new String(evaluateResult, StandardCharsets.UTF_8));
+			JSONArray records = page.getJSONArray("records");
+			for (int i = 0; i < records.length(); i++) {
+				JSONObject record = records.getJSONObject(i);
+				out.printf("%s %s %s%s%n", record.optString("timestamp"), record.getString("txId"),
+						record.getBoolean("isDelete") ? "[deleted] " : "", record.getString("value"));
+			}
+			count += records.length();
+			bookmark = page.getString("bookmark");
+		} while (!bookmark.isEmpty());
+
+		out.printf("*** %d records%n", count);
+	}
+
+	private void updateAssetVersion(final String assetID, final String pointer, final String filekey) throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.printf("\n--> Submit Transaction: UpdateAssetVersion, add a new version of asset %s%n", assetID);
+
+		JSONObject json = new JSONObject();
+		json.put("assetID", assetID);
+		json.put("pointer", pointer);
+		json.put("filekey", filekey);
+		Map<String, byte[]> transientDataMap = new HashMap<>();
+		transientDataMap.put("asset_version", json.toString().getBytes(StandardCharsets.UTF_8));
+
+		var submitResult = contract.newProposal("UpdateAssetVersion")
+				.putAllTransient(transientDataMap)
+				.build()
+				.endorse()
+				.submit();
+
+		out.println("*** Transaction committed successfully");
+		out.println("*** Result: " + prettyJson(submitResult));
+	}
+
+	private void listAssetVersions(final String assetID, final int pageSize) throws GatewayException {
+		out.printf("\n--> Evaluate Transaction: ListAssetVersions, versions of %s newest first in pages of %d%n", assetID, pageSize);
+
+		int count = 0;
+		String bookmark = "";
+		do {
+			var evaluateResult = reads.evaluate("ListAssetVersions", assetID, Integer.toString(pageSize), bookmark);
+			JSONObject page = new JSONObject(new String(evaluateResult, StandardCharsets.UTF_8));
+			JSONArray versions = page.getJSONArray("versions");
+			for (int i = 0; i < versions.length(); i++) {
+				JSONObject version = versions.getJSONObject(i);
+				out.printf("version %d %s%s%n", version.getInt("version"), version.optString("txId"),
+						version.getBoolean("purged") ? " [purged]" : "");
+			}
+			count += versions.length();
+			bookmark = page.getString("bookmark");
+		} while (!bookmark.isEmpty());
+
+		out.printf("*** %d versions%n", count);
+	}
+
+	private void readAssetVersion(final String assetID, final int version) throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.printf("\n--> Submit Transaction: ReadAssetVersion, function returns version %d of asset %s and records the read%n", version, assetID);
+
+		var submitResult = contract.submitTransaction("ReadAssetVersion", assetID, Integer.toString(version));
+
+		out.println("*** Result: " + new String(submitResult, StandardCharsets.UTF_8));
+	}
+
+	private void purgeAssetVersion(final String assetID, final int version) throws EndorseException, SubmitException, CommitStatusException, CommitException {
+		out.printf("\n--> Submit Transaction: PurgeAssetVersion, purge version %d of asset %s%n", version, assetID);
+
+		JSONObject json = new JSONObject();
+		json.put("assetID", assetID);
+		json.put("version", version);
+		Map<String, byte[]> transientDataMap = new HashMap<>();
+		transientDataMap.put("asset_purge", json.toString().getBytes(StandardCharsets.UTF_8));
+
+		contract.newProposal("PurgeAssetVersion")
+				.putAllTransient(transientDataMap)
+				.build()
+				.endorse()
+				.submit();
+
+		out.println("*** Transaction committed successfully");
 	}
 
 	private void updateAclPermission(final String assetID, final String newOrg) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.printf("\n--> Submit Transaction: updateAclPermission for asset %s to add %s to access control list", assetID, newOrg);
+		out.printf("\n--> Submit Transaction: updateAclPermission for asset %s to add %s to access control list", assetID, newOrg);
 		
 		try {
 			// Submit the transaction
 			var evaluateResult = contract.submitTransaction("updateAclPermission", assetID, newOrg);
-			System.out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
+			out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
 		} catch (GatewayException e) {
-			System.out.println("*** Failed ");
+			out.println("*** Failed ");
 		}
 	}
 
 	private void revokeAclPermission(final String assetID, final String targetOrg) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.printf("\n--> Submit Transaction: revokeAclPermission for asset %s to revoke the permission of %s to access", assetID, targetOrg);
+		out.printf("\n--> Submit Transaction: revokeAclPermission for asset %s to revoke the permission of %s to access", assetID, targetOrg);
 		try {
 			// Submit the transaction
 			var evaluateResult = contract.submitTransaction("revokeAclPermission", assetID, targetOrg);
-			System.out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
+			out.println("*** Result: " + new String(evaluateResult, StandardCharsets.UTF_8));
 		} catch (GatewayException e) {
-			System.out.println("*** Failed ");
+			out.println("*** Failed ");
+		}
+	}
+
+	/**
+	 * Applies a bulk ACL change with pipelined transactions of up to ACL_CHUNK_SIZE assets
+	 * each, see {@link BulkSubmitter}. The assets are given as for {@link #selectionOf(String)}.
+	 */
+	private void bulkAclPermission(final String function, final String org, final String assets) throws GatewayException, InterruptedException {
+		out.printf("\n--> Submit Transactions: %s for %s on %s%n", function, org, assets);
+
+		new BulkSubmitter(contract, engine, function, (selection, continuation) -> new String[] {org, selection, continuation}, ACL_CHUNK_SIZE, out)
+				.run(selectionOf(assets));
+	}
+
+	/**
+	 * Moves the ACLs embedded in older asset records to per-principal keys with pipelined
+	 * transactions of up to ACL_CHUNK_SIZE assets each. The assets are given as for
+	 * {@link #selectionOf(String)}.
+	 */
+	private void migrateAcls(final String assets) throws GatewayException, InterruptedException {
+		out.printf("\n--> Submit Transactions: MigrateAcls for %s%n", assets);
+
+		new BulkSubmitter(contract, engine, "MigrateAcls", (selection, continuation) -> new String[] {selection, continuation}, ACL_CHUNK_SIZE, out)
+				.run(selectionOf(assets));
+	}
+
+	/**
+	 * Builds the asset selection of a {@link BulkSubmitter} run from "patient:<dataSubject>",
+	 * "org:<mspId>" or a comma separated list of asset IDs.
+	 */
+	private static JSONObject selectionOf(final String assets) {
+		JSONObject selection = new JSONObject();
+		if (assets.startsWith("patient:")) {
+			selection.put("dataSubject", assets.substring("patient:".length()));
+		} else if (assets.startsWith("org:")) {
+			selection.put("ownerOrg", assets.substring("org:".length()));
+		} else {
+			selection.put("assetIDs", Arrays.asList(assets.split(",")));
 		}
+		return selection;
 	}
 
 	private void requestPermission(final String assetID, final String purpose) throws EndorseException, SubmitException, CommitStatusException, CommitException {
-		System.out.printf("\n--> Submit Transaction: requesting access for asset %s for the purpose of: %s", assetID, purpose);
+		out.printf("\n--> Submit Transaction: requesting access for asset %s for the purpose of: %s", assetID, purpose);
 		
 		contract.submitTransaction("requestPermission", assetID, purpose);
 		
-		System.out.println("*** Transaction committed successfully");
+		out.println("*** Transaction committed successfully");
 	}
 
 }
@@ -0,0 +1,146 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.Checkpointer;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+
+import org.json.JSONException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds the AssetEvents chaincode events of a source into a read model and to observers
+ * until stopped. The checkpointer records every event once the model has applied it, and the
+ * stream is opened again from the checkpoint after an error, waiting longer after each
+ * failed attempt.
+ */
+final class AssetEventListener implements Runnable {
+
+	/**
+	 * Told about every event of the stream and about the stream opening and closing, so it
+	 * knows when events may have been missed.
+	 */
+	interface Observer {
+		void connected();
+
+		void event(ChaincodeEvent event);
+
+		void disconnected();
+	}
+
+	static final String EVENT_NAME = "AssetEvents";
+
+	private static final long INITIAL_BACKOFF_MILLIS = 500;
+	private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+	private final AssetEventSource source;
+	private final Checkpointer checkpointer;
+	private final AssetReadModel model;
+	private final List<Observer> observers = new CopyOnWriteArrayList<>();
+
+	private final AtomicLong applied = new AtomicLong();
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private volatile boolean running = true;
+	private volatile CloseableIterator<ChaincodeEvent> current;
+
+	/**
+	 * @param source       the events
+	 * @param checkpointer the position of the listener
+	 * @param model        the read model to apply the events to, or null to only notify observers
+	 */
+	AssetEventListener(final AssetEventSource source, final Checkpointer checkpointer, final AssetReadModel model) {
+		this.source = source;
+		this.checkpointer = checkpointer;
+		this.model = model;
+	}
+
+	AssetEventListener addObserver(final Observer observer) {
+		observers.add(observer);
+		return this;
+	}
+
+	@Override
+	public void run() {
+		long backoff = INITIAL_BACKOFF_MILLIS;
+		try {
+			while (running) {
+				try (CloseableIterator<ChaincodeEvent> events = source.open(checkpointer)) {
+					current = events;
+					observers.forEach(Observer::connected);
+					while (running && events.hasNext()) {
+						ChaincodeEvent event = events.next();
+						if (model != null && EVENT_NAME.equals(event.getEventName())) {
+							apply(event);
+						}
+						for (Observer observer : observers) {
+							observer.event(event);
+						}
+						checkpointer.checkpointChaincodeEvent(event);
+						backoff = INITIAL_BACKOFF_MILLIS;
+					}
+				} catch (GatewayRuntimeException | IOException e) {
+					if (!running) {
+						break;
+					}
+					System.out.printf("*** Event stream failed, reconnecting in %d ms: %s%n", backoff, e.getMessage());
+				} finally {
+					observers.forEach(Observer::disconnected);
+				}
+				if (running) {
+					Thread.sleep(backoff);
+					backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			running = false;
+			stopped.countDown();
+		}
+	}
+
+	private void apply(final ChaincodeEvent event) throws IOException {
+		try {
+			if (model.apply(event.getBlockNumber(), event.getTransactionId(), event.getPayload())) {
+				applied.incrementAndGet();
+			}
+		} catch (JSONException e) {
+			// a malformed payload would fail again on every retry, skip it
+			System.out.printf("*** Skipped malformed event of transaction %s: %s%n", event.getTransactionId(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Stops the listener, closing the open stream.
+	 */
+	void stop() {
+		running = false;
+		CloseableIterator<ChaincodeEvent> events = current;
+		if (events != null) {
+			events.close();
+		}
+	}
+
+	/**
+	 * Waits for the listener to finish after it was stopped.
+	 *
+	 * @return false if the timeout elapsed first
+	 */
+	boolean awaitStopped(final long timeout, final TimeUnit unit) throws InterruptedException {
+		return stopped.await(timeout, unit);
+	}
+
+	/**
+	 * The number of events applied to the model.
+	 */
+	long applied() {
+		return applied.get();
+	}
+}
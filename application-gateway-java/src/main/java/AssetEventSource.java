@@ -0,0 +1,23 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.Checkpoint;
+import org.hyperledger.fabric.client.CloseableIterator;
+
+/**
+ * A stream of the chaincode events of the asset contract.
+ */
+interface AssetEventSource {
+
+	/**
+	 * Opens the stream after the position recorded by a checkpoint. The events of the stream
+	 * are in block order, and hasNext blocks until the next event arrives or the stream is
+	 * closed.
+	 *
+	 * @param checkpoint the position of the last event processed
+	 * @return the events following the checkpoint
+	 */
+	CloseableIterator<ChaincodeEvent> open(Checkpoint checkpoint);
+}
@@ -0,0 +1,171 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A local index of the asset changes announced by AssetEvents chaincode events. It answers
+ * the history of an asset and the live assets of a patient without a call to a peer.
+ *
+ * Events are public and do not name the data subject of an asset, so the index looks it up
+ * once when the asset is created, with the ReadAssetDataSubject function of the chaincode,
+ * and keeps it only in its own file. Assets this organization may not read are not listed
+ * for any patient.
+ *
+ * The index is kept in memory and every applied event is appended to a JSONL file, which is
+ * replayed when the index is opened again. An event is appended before its checkpoint is
+ * written, so after a crash between the two the event is delivered again; events at or
+ * before the last applied transaction are recognized and skipped.
+ */
+final class AssetReadModel {
+
+	/**
+	 * Looks up the data subject of an asset.
+	 */
+	@FunctionalInterface
+	interface Subjects {
+		/**
+		 * @return the data subject, or null if the asset cannot be read
+		 */
+		String of(String assetID);
+	}
+
+	private final Path file;
+	private final Subjects subjects;
+	private final Map<String, List<JSONObject>> history = new HashMap<>();
+	private final Map<String, String> dataSubjects = new HashMap<>();
+	private final Map<String, Set<String>> patientAssets = new HashMap<>();
+	private final Set<String> lastBlockTransactions = new HashSet<>();
+	private long lastBlock = -1;
+
+	private AssetReadModel(final Path file, final Subjects subjects) {
+		this.file = file;
+		this.subjects = subjects;
+	}
+
+	/**
+	 * Opens the index kept in a file for reading only.
+	 */
+	static AssetReadModel open(final Path file) throws IOException {
+		return open(file, assetID -> null);
+	}
+
+	/**
+	 * Opens the index kept in a file, which is created with the first event.
+	 *
+	 * @param subjects looks up the data subject of a new asset
+	 */
+	static AssetReadModel open(final Path file, final Subjects subjects) throws IOException {
+		AssetReadModel model = new AssetReadModel(file, subjects);
+		if (Files.exists(file)) {
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				if (!line.isBlank()) {
+					model.replay(new JSONObject(line));
+				}
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * Applies the payload of an AssetEvents event, a JSON array of changes.
+	 *
+	 * @return false if the event had been applied already
+	 */
+	synchronized boolean apply(final long block, final String transactionId, final byte[] payload) throws IOException {
+		if (block < lastBlock || block == lastBlock && lastBlockTransactions.contains(transactionId)) {
+			return false;
+		}
+		JSONArray changes = new JSONArray(new String(payload, StandardCharsets.UTF_8));
+		for (int i = 0; i < changes.length(); i++) {
+			JSONObject change = changes.getJSONObject(i);
+			if ("CREATED".equals(change.getString("type"))) {
+				change.putOpt("dataSubject", subjects.of(change.getString("assetID")));
+			}
+		}
+		JSONObject record = new JSONObject();
+		record.put("block", block);
+		record.put("txId", transactionId);
+		record.put("changes", changes);
+		Files.writeString(file, record.toString() + System.lineSeparator(), StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		replay(record);
+		return true;
+	}
+
+	private void replay(final JSONObject record) {
+		long block = record.getLong("block");
+		String transactionId = record.getString("txId");
+		if (block != lastBlock) {
+			lastBlock = block;
+			lastBlockTransactions.clear();
+		}
+		lastBlockTransactions.add(transactionId);
+
+		JSONArray changes = record.getJSONArray("changes");
+		for (int i = 0; i < changes.length(); i++) {
+			JSONObject change = changes.getJSONObject(i);
+			String assetID = change.getString("assetID");
+			String dataSubject = change.optString("dataSubject", null);
+			JSONObject entry = new JSONObject(change.toString()).put("block", block).put("txId", transactionId);
+			history.computeIfAbsent(assetID, key -> new ArrayList<>()).add(entry);
+			switch (change.getString("type")) {
+				case "CREATED":
+					if (dataSubject != null) {
+						dataSubjects.put(assetID, dataSubject);
+						patientAssets.computeIfAbsent(dataSubject, key -> new TreeSet<>()).add(assetID);
+					}
+					break;
+				case "DELETED":
+				case "PURGED":
+					String subject = dataSubjects.remove(assetID);
+					Set<String> assets = subject == null ? null : patientAssets.get(subject);
+					if (assets != null) {
+						assets.remove(assetID);
+						if (assets.isEmpty()) {
+							patientAssets.remove(subject);
+						}
+					}
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	/**
+	 * The changes of an asset in ledger order, each with its block and transaction.
+	 */
+	synchronized JSONArray history(final String assetID) {
+		return new JSONArray(history.getOrDefault(assetID, List.of()));
+	}
+
+	/**
+	 * The IDs of the assets of a patient that have not been deleted and that this
+	 * organization could read when they were created, sorted.
+	 */
+	synchronized List<String> assets(final String patient) {
+		return new ArrayList<>(patientAssets.getOrDefault(patient, Set.of()));
+	}
+
+	/**
+	 * The block of the last applied event, or -1 if none has been applied.
+	 */
+	synchronized long lastBlock() {
+		return lastBlock;
+	}
+}
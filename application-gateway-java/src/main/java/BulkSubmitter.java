@@ -0,0 +1,181 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.GatewayException;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs a bulk transaction function, such as bulkEraseAssets, bulkUpdateAclPermission or
+ * MigrateAcls, over a selection of assets with pipelined transactions. The assets of a data
+ * subject or an owner organization are listed with QueryAssetByPatientIndex or
+ * QueryAssetByOwnerOrg, a list of asset IDs is taken as given, and the assets are split into
+ * chunks submitted through a {@link SubmitEngine}, which keeps as many of them in flight as
+ * it allows. Chunks never share an asset, so their transactions do not conflict with each
+ * other. A chunk the chaincode returned a continuation for is finished once all chunks have
+ * committed. The chaincode only takes lists of asset IDs, since a peer does not run range
+ * queries over private data in a submitted transaction, so for a data subject or an
+ * organization the final pass lists the selection again and submits the assets the earlier
+ * listings missed, such as assets created meanwhile or, once erased assets have left the
+ * index, those cut off by the chaincode's query limit, until a listing has nothing new.
+ *
+ * The status of every asset is kept by asset ID. An asset reported again keeps the status of
+ * its chunk unless that failed, so each asset is counted and reported once.
+ */
+final class BulkSubmitter {
+
+	/**
+	 * Builds the arguments of the function from a selection and a continuation.
+	 */
+	@FunctionalInterface
+	interface Arguments {
+		String[] of(String selection, String continuation);
+	}
+
+	private static final String FAILED = "failed";
+
+	private final Contract contract;
+	private final SubmitEngine engine;
+	private final String function;
+	private final Arguments arguments;
+	private final int chunkSize;
+	private final PrintStream out;
+
+	private final Map<String, String> statuses = new ConcurrentHashMap<>();
+
+	BulkSubmitter(final Contract contract, final SubmitEngine engine, final String function, final Arguments arguments, final int chunkSize,
+			final PrintStream out) {
+		this.contract = contract;
+		this.engine = engine;
+		this.function = function;
+		this.arguments = arguments;
+		this.chunkSize = chunkSize;
+		this.out = out;
+	}
+
+	/**
+	 * Runs the function over a selection.
+	 *
+	 * @param selection the selection, with "assetIDs", "dataSubject" or "ownerOrg"
+	 * @return the number of assets by status, such as "updated", "unchanged" or "failed"
+	 */
+	Map<String, Integer> run(final JSONObject selection) throws GatewayException, InterruptedException {
+		boolean listed = !selection.has("assetIDs");
+		List<String> assetIDs = listed ? list(selection) : toList(selection.getJSONArray("assetIDs"));
+		out.printf("*** %d assets selected, submitting %s in chunks of %d with up to %d transactions in flight%n", assetIDs.size(), function,
+				chunkSize, engine.getMaxInFlight());
+
+		submit(assetIDs);
+
+		while (listed) {
+			List<String> missed = list(selection);
+			missed.removeIf(statuses::containsKey);
+			if (missed.isEmpty()) {
+				break;
+			}
+			out.printf("*** %d more assets listed, submitting them%n", missed.size());
+			submit(missed);
+		}
+
+		Map<String, Integer> counts = new TreeMap<>();
+		counts.put(FAILED, 0);
+		for (String status : statuses.values()) {
+			counts.merge(status, 1, Integer::sum);
+		}
+		StringJoiner result = new StringJoiner(", ");
+		counts.forEach((status, count) -> result.add(count + " " + status));
+		out.println("*** Result: " + result);
+		return counts;
+	}
+
+	/**
+	 * Submits the function for the assets in chunks, all in flight at once within the limit of
+	 * the engine, and finishes each chunk the chaincode returned a continuation for.
+	 */
+	private void submit(final List<String> assetIDs) throws GatewayException, InterruptedException {
+		Map<JSONObject, CompletableFuture<String>> chunks = new LinkedHashMap<>();
+		for (int start = 0; start < assetIDs.size(); start += chunkSize) {
+			JSONObject chunk = new JSONObject().put("assetIDs", assetIDs.subList(start, Math.min(start + chunkSize, assetIDs.size())));
+			chunks.put(chunk, engine.submit(contract, function, null, arguments.of(chunk.toString(), "")).thenApply(this::record));
+		}
+		for (Map.Entry<JSONObject, CompletableFuture<String>> chunk : chunks.entrySet()) {
+			String continuation = SubmitEngine.await(chunk.getValue());
+			if (!continuation.isEmpty()) {
+				run(chunk.getKey(), continuation);
+			}
+		}
+	}
+
+	/**
+	 * Submits the function for a chunk, one transaction after the other, until the
+	 * continuation is empty.
+	 */
+	private void run(final JSONObject selection, final String start) throws GatewayException, InterruptedException {
+		String continuation = start;
+		do {
+			continuation = SubmitEngine.await(engine.submit(contract, function, null, arguments.of(selection.toString(), continuation)).thenApply(this::record));
+		} while (!continuation.isEmpty());
+	}
+
+	/**
+	 * Records the status of the assets of a transaction result and returns its continuation.
+	 */
+	private String record(final byte[] result) {
+		JSONObject summary = new JSONObject(new String(result, StandardCharsets.UTF_8));
+		JSONArray results = summary.getJSONArray("results");
+		for (int i = 0; i < results.length(); i++) {
+			JSONObject item = results.getJSONObject(i);
+			String assetID = item.getString("assetID");
+			String status = item.getString("status");
+			String previous = statuses.putIfAbsent(assetID, status);
+			if (previous == null && FAILED.equals(status)) {
+				out.printf("*** Failed %s: %s%n", assetID, item.getString("error"));
+			} else if (FAILED.equals(previous) && !FAILED.equals(status)) {
+				statuses.put(assetID, status);
+			}
+		}
+		return summary.getString("continuation");
+	}
+
+	/**
+	 * Lists the asset IDs of a data subject or an owner organization from the result of
+	 * QueryAssetByPatientIndex or QueryAssetByOwnerOrg, " ,assetID-ownerOrg,...". Those fail
+	 * with RESULT_LIMIT_EXCEEDED rather than list part of the assets.
+	 */
+	private List<String> list(final JSONObject selection) throws GatewayException {
+		var result = selection.has("dataSubject")
+				? contract.evaluateTransaction("QueryAssetByPatientIndex", selection.getString("dataSubject"))
+				: contract.evaluateTransaction("QueryAssetByOwnerOrg", selection.getString("ownerOrg"));
+		List<String> assetIDs = new ArrayList<>();
+		for (String entry : new String(result, StandardCharsets.UTF_8).split(",")) {
+			entry = entry.trim();
+			int separator = entry.lastIndexOf('-');
+			if (entry.isEmpty() || separator <= 0) {
+				continue;
+			}
+			assetIDs.add(entry.substring(0, separator));
+		}
+		return assetIDs;
+	}
+
+	private static List<String> toList(final JSONArray array) {
+		List<String> list = new ArrayList<>();
+		for (int i = 0; i < array.length(); i++) {
+			list.add(array.getString(i));
+		}
+		return list;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import org.json.JSONObject;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the endorsements in flight on the channel to one peer. Every Gateway Endorse call takes
+ * a permit when it starts, waiting while all permits are taken, and returns it when it closes.
+ * Being an interceptor of the channel, it applies to every path that endorses, whether
+ * submitTransaction, a proposal built by hand or the submit engine, so thousands of service
+ * requests on virtual threads cannot flood a peer with endorsements.
+ */
+final class EndorsementLimiter implements ClientInterceptor {
+
+	static final String ENDORSE_METHOD = "gateway.Gateway/Endorse";
+
+	private final int limit;
+	private final Semaphore permits;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private final AtomicLong endorsements = new AtomicLong();
+	private final AtomicLong waited = new AtomicLong();
+
+	EndorsementLimiter(final int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("The endorsement limit must be at least 1: " + limit);
+		}
+		this.limit = limit;
+		this.permits = new Semaphore(limit, true);
+	}
+
+	@Override
+	public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(final MethodDescriptor<ReqT, RespT> method, final CallOptions callOptions,
+			final Channel next) {
+		ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
+		if (!ENDORSE_METHOD.equals(method.getFullMethodName())) {
+			return call;
+		}
+		return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+			@Override
+			public void start(final Listener<RespT> listener, final Metadata headers) {
+				acquire();
+				AtomicBoolean released = new AtomicBoolean();
+				try {
+					super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(listener) {
+						@Override
+						public void onClose(final Status status, final Metadata trailers) {
+							if (released.compareAndSet(false, true)) {
+								release();
+							}
+							super.onClose(status, trailers);
+						}
+					}, headers);
+				} catch (RuntimeException e) {
+					if (released.compareAndSet(false, true)) {
+						release();
+					}
+					throw e;
+				}
+			}
+		};
+	}
+
+	private void acquire() {
+		if (!permits.tryAcquire()) {
+			waited.incrementAndGet();
+			// the caller is a request thread; with virtual threads waiting here is cheap
+			permits.acquireUninterruptibly();
+		}
+		endorsements.incrementAndGet();
+		peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+	}
+
+	private void release() {
+		inFlight.decrementAndGet();
+		permits.release();
+	}
+
+	/**
+	 * The limit, the endorsements in flight and their peak, the endorsements started and how
+	 * many of them had to wait for a permit.
+	 */
+	JSONObject stats() {
+		JSONObject stats = new JSONObject();
+		stats.put("limit", limit);
+		stats.put("inFlight", inFlight.get());
+		stats.put("peakInFlight", peakInFlight.get());
+		stats.put("endorsements", endorsements.get());
+		stats.put("waited", waited.get());
+		return stats;
+	}
+}
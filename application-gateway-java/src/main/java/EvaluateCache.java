@@ -0,0 +1,280 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.GatewayException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of evaluate results, keyed by function and arguments, kept consistent
+ * with the ledger by the AssetEvents of the chaincode.
+ *
+ * Every entry carries a tag naming what its result depends on, an asset or a patient, and
+ * an event invalidates the entries of the tags it touches. Events do not name patients, so
+ * an asset created or removed drops the entries of every patient. Entries are only served
+ * while an event stream is connected: a connection or disconnection drops all of them,
+ * since events may have been missed, and without a stream every call goes to the peer. The
+ * time to live bounds the staleness of an entry in the window between a commit and the
+ * arrival of its event. The least recently used entry is evicted once the cache is full.
+ *
+ * A result loaded while an invalidation happened is returned but not stored, as it may
+ * predate the change. In strict mode the sensitive functions always go to the peer.
+ */
+final class EvaluateCache implements AssetEventListener.Observer {
+
+	/**
+	 * Evaluates a function on a peer, such as {@code contract::evaluateTransaction}.
+	 */
+	interface Evaluator {
+		byte[] evaluate(String function, String... args) throws GatewayException;
+	}
+
+	private static final class Entry {
+		private final byte[] value;
+		private final String tag;
+		private final long expiresAt;
+
+		Entry(final byte[] value, final String tag, final long expiresAt) {
+			this.value = value;
+			this.tag = tag;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final Evaluator evaluator;
+	private final int capacity;
+	private final long ttlNanos;
+	private final boolean strict;
+	private final Set<String> sensitiveFunctions;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Set<String>> keysByTag = new HashMap<>();
+	private long generation;
+	private int streams;
+	private volatile boolean live;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong bypasses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * @param evaluator          evaluates the functions on a miss
+	 * @param capacity           the maximum number of entries
+	 * @param ttl                the time an entry is served at most
+	 * @param strict             whether the sensitive functions bypass the cache
+	 * @param sensitiveFunctions the functions whose results must be fresh in strict mode
+	 */
+	EvaluateCache(final Evaluator evaluator, final int capacity, final Duration ttl, final boolean strict, final Set<String> sensitiveFunctions) {
+		this.evaluator = evaluator;
+		this.capacity = capacity;
+		this.ttlNanos = ttl.toNanos();
+		this.strict = strict;
+		this.sensitiveFunctions = Set.copyOf(sensitiveFunctions);
+	}
+
+	static String assetTag(final String assetID) {
+		return "asset:" + assetID;
+	}
+
+	static String patientTag(final String dataSubject) {
+		return "patient:" + dataSubject;
+	}
+
+	/**
+	 * Evaluates a function, answering from the cache when possible.
+	 *
+	 * @param tag      what the result depends on, see {@link #assetTag} and {@link #patientTag}
+	 * @param function the chaincode function
+	 * @param args     its arguments
+	 * @return the result of the function
+	 */
+	byte[] evaluate(final String tag, final String function, final String... args) throws GatewayException {
+		if (!live || capacity <= 0 || strict && sensitiveFunctions.contains(function)) {
+			bypasses.incrementAndGet();
+			return evaluator.evaluate(function, args);
+		}
+
+		String key = key(function, args);
+		long loadedAt;
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+				hits.incrementAndGet();
+				return entry.value.clone();
+			}
+			if (entry != null) {
+				expirations.incrementAndGet();
+				remove(key);
+			}
+			loadedAt = generation;
+		}
+
+		misses.incrementAndGet();
+		byte[] value = evaluator.evaluate(function, args);
+
+		synchronized (this) {
+			if (live && generation == loadedAt) {
+				entries.put(key, new Entry(value.clone(), tag, System.nanoTime() + ttlNanos));
+				keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+				evictEldest();
+			}
+		}
+		return value;
+	}
+
+	private static String key(final String function, final String... args) {
+		StringBuilder key = new StringBuilder(function);
+		for (String arg : args) {
+			key.append('\u0000').append(arg);
+		}
+		return key.toString();
+	}
+
+	private void evictEldest() {
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while (entries.size() > capacity && eldest.hasNext()) {
+			Map.Entry<String, Entry> entry = eldest.next();
+			eldest.remove();
+			untag(entry.getKey(), entry.getValue().tag);
+			evictions.incrementAndGet();
+		}
+	}
+
+	private void remove(final String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			untag(key, entry.tag);
+		}
+	}
+
+	private void untag(final String key, final String tag) {
+		Set<String> keys = keysByTag.get(tag);
+		if (keys != null) {
+			keys.remove(key);
+			if (keys.isEmpty()) {
+				keysByTag.remove(tag);
+			}
+		}
+	}
+
+	/**
+	 * Drops the entries of a tag.
+	 */
+	synchronized void invalidate(final String tag) {
+		generation++;
+		Set<String> keys = keysByTag.remove(tag);
+		if (keys != null) {
+			for (String key : keys) {
+				entries.remove(key);
+				invalidations.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Drops the entries of every patient tag.
+	 */
+	synchronized void invalidatePatients() {
+		for (String tag : new ArrayList<>(keysByTag.keySet())) {
+			if (tag.startsWith(patientTag(""))) {
+				invalidate(tag);
+			}
+		}
+	}
+
+	/**
+	 * Drops all entries.
+	 */
+	synchronized void invalidateAll() {
+		generation++;
+		invalidations.addAndGet(entries.size());
+		entries.clear();
+		keysByTag.clear();
+	}
+
+	/**
+	 * Whether an event stream is connected, so entries are served.
+	 */
+	boolean isLive() {
+		return live;
+	}
+
+	@Override
+	public synchronized void connected() {
+		invalidateAll();
+		streams++;
+		live = true;
+	}
+
+	@Override
+	public synchronized void disconnected() {
+		streams--;
+		live = streams > 0;
+		invalidateAll();
+	}
+
+	/**
+	 * Invalidates the assets changed by an AssetEvents event, and the lists of assets of all
+	 * patients when an asset was created or removed. Reads and access requests change nothing
+	 * that is cached.
+	 */
+	@Override
+	public void event(final ChaincodeEvent event) {
+		if (!AssetEventListener.EVENT_NAME.equals(event.getEventName())) {
+			return;
+		}
+		try {
+			JSONArray changes = new JSONArray(new String(event.getPayload(), StandardCharsets.UTF_8));
+			for (int i = 0; i < changes.length(); i++) {
+				JSONObject change = changes.getJSONObject(i);
+				String type = change.getString("type");
+				if ("READ".equals(type) || "ACCESS_REQUESTED".equals(type)) {
+					continue;
+				}
+				invalidate(assetTag(change.getString("assetID")));
+				if ("CREATED".equals(type) || "DELETED".equals(type) || "PURGED".equals(type)) {
+					// events do not name the patient, so any list of assets may have changed
+					invalidatePatients();
+				}
+			}
+		} catch (JSONException e) {
+			// the event cannot be attributed, so nothing cached can be trusted
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * The counters of the cache and its current size.
+	 */
+	synchronized JSONObject stats() {
+		JSONObject stats = new JSONObject();
+		stats.put("size", entries.size());
+		stats.put("capacity", capacity);
+		stats.put("live", isLive());
+		stats.put("strict", strict);
+		stats.put("hits", hits.get());
+		stats.put("misses", misses.get());
+		stats.put("bypasses", bypasses.get());
+		stats.put("evictions", evictions.get());
+		stats.put("expirations", expirations.get());
+		stats.put("invalidations", invalidations.get());
+		return stats;
+	}
+}
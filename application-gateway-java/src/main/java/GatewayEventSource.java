@@ -0,0 +1,36 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.Checkpoint;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.Network;
+
+/**
+ * Chaincode events read from a peer with the Gateway chaincode events API. Without a
+ * checkpoint the events are read either from the first block, so a new read model sees
+ * every change of the channel, or from the next block, for observers that only care about
+ * changes from now on.
+ */
+final class GatewayEventSource implements AssetEventSource {
+
+	private final Network network;
+	private final String chaincodeName;
+	private final boolean fromFirstBlock;
+
+	GatewayEventSource(final Network network, final String chaincodeName, final boolean fromFirstBlock) {
+		this.network = network;
+		this.chaincodeName = chaincodeName;
+		this.fromFirstBlock = fromFirstBlock;
+	}
+
+	@Override
+	public CloseableIterator<ChaincodeEvent> open(final Checkpoint checkpoint) {
+		var request = network.newChaincodeEventsRequest(chaincodeName);
+		if (fromFirstBlock) {
+			request = request.startBlock(0);
+		}
+		return request.checkpoint(checkpoint).build().getEvents();
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.hyperledger.fabric.client.CommitException;
+import org.hyperledger.fabric.client.GatewayException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A resident local HTTP/JSON front end to the operations of the CLI. It keeps one
+ * OrgGateway, that is one gRPC channel and Gateway per peer, per organization for its
+ * lifetime, so a request pays neither JVM startup nor a TLS handshake. Connecting an
+ * organization also starts listening to its chaincode events, which keep its
+ * {@link EvaluateCache} consistent with the ledger and thus in use. Every request runs on
+ * a virtual thread of its own: Gateway calls block, and a virtual thread blocked on one costs
+ * no platform thread, so the number of concurrent requests is not bounded by a thread pool.
+ * What protects the peers is the endorsement limit of each channel, see
+ * {@link EndorsementLimiter}.
+ *
+ * POST /operations/&lt;operation&gt;?org=&lt;org&gt; runs an operation with the arguments of
+ * the CLI, given as a JSON array of strings in the body, and answers with a JSON object with
+ * the operation, the organization, the output the CLI would print and the time taken. The
+ * organization defaults to ORG. GET /health reports the connected organizations with their
+ * cache counters, the coalescing of their identical concurrent reads by {@link SingleFlight}
+ * and the health and latency of their peers. The service has no
+ * authentication and listens on the loopback interface unless SERVICE_HOST says otherwise.
+ *
+ * On SIGTERM or Ctrl-C it answers new requests with 503, gives the requests in flight up to
+ * DRAIN_SECONDS to finish, then stops the server and closes the connections.
+ */
+final class GatewayService {
+
+	private static final int DRAIN_SECONDS = 30;
+
+	// connections waiting to be accepted, so bursts of thousands of clients are queued rather than refused
+	private static final int BACKLOG = 4096;
+
+	// operations that run for the lifetime of a process, or start one, rather than serve a request
+	private static final Set<String> PROCESS_OPERATIONS = Set.of("Serve", "ListenEvents");
+
+	/**
+	 * Connects an organization, see {@link App#connect(String)}.
+	 */
+	@FunctionalInterface
+	interface Connector {
+		OrgGateway connect(String org) throws Exception;
+	}
+
+	private final String defaultOrg;
+	private final String host;
+	private final int port;
+	private final Connector connector;
+
+	private final Map<String, OrgGateway> sessions = new ConcurrentHashMap<>();
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private final AtomicInteger active = new AtomicInteger();
+	private volatile boolean draining;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * @param port      the port, or 0 for any free port
+	 * @param connector connects the organizations on their first request
+	 */
+	GatewayService(final String defaultOrg, final String host, final int port, final Connector connector) {
+		this.defaultOrg = defaultOrg;
+		this.host = host;
+		this.port = port;
+		this.connector = connector;
+	}
+
+	/**
+	 * Serves requests until the process is asked to stop.
+	 */
+	void serve() throws IOException, InterruptedException {
+		start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "service-shutdown"));
+
+		System.out.printf("*** Serving the operations of %s on http://%s:%d/operations/<operation>, Ctrl-C to stop%n", defaultOrg, host, port());
+		stopped.await();
+	}
+
+	/**
+	 * Connects the default organization and starts accepting requests.
+	 */
+	void start() throws IOException {
+		session(defaultOrg);
+
+		server = HttpServer.create(new InetSocketAddress(host, port), BACKLOG);
+		executor = Executors.newVirtualThreadPerTaskExecutor();
+		server.setExecutor(executor);
+		server.createContext("/operations/", exchange -> handle(exchange, this::operation));
+		server.createContext("/health", exchange -> handle(exchange, this::health));
+		server.start();
+	}
+
+	/**
+	 * The port the service listens on.
+	 */
+	int port() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Answers new requests with 503, waits up to DRAIN_SECONDS for the requests in flight,
+	 * then stops the server and closes the connections.
+	 */
+	void stop() {
+		System.out.printf("*** Stopping, waiting for %d requests in flight%n", active.get());
+		draining = true;
+		try {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+			while (active.get() > 0 && System.nanoTime() < deadline) {
+				Thread.sleep(50);
+			}
+			server.stop(0);
+			executor.shutdown();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+			for (OrgGateway session : sessions.values()) {
+				session.close();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			System.out.println("*** Stopped");
+			stopped.countDown();
+		}
+	}
+
+	private OrgGateway session(final String org) {
+		return sessions.computeIfAbsent(org, key -> {
+			try {
+				OrgGateway session = connector.connect(key);
+				// without the events of its organization the cache of a session is never live
+				session.startCacheInvalidation();
+				return session;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while connecting " + key, e);
+			} catch (Exception e) {
+				throw new IllegalStateException("Cannot connect " + key + ": " + e.getMessage(), e);
+			}
+		});
+	}
+
+	private void handle(final HttpExchange exchange, final HttpHandler handler) throws IOException {
+		active.incrementAndGet();
+		try {
+			if (draining) {
+				respond(exchange, 503, new JSONObject().put("error", "The service is stopping"));
+				exchange.close();
+			} else {
+				handler.handle(exchange);
+			}
+		} finally {
+			active.decrementAndGet();
+		}
+	}
+
+	private void operation(final HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, 405, new JSONObject().put("error", "Use POST"));
+				return;
+			}
+			String operation = exchange.getRequestURI().getPath().substring("/operations/".length());
+			String org = queryParameter(exchange, "org", defaultOrg);
+			JSONObject response = new JSONObject().put("operation", operation).put("org", org);
+			if (PROCESS_OPERATIONS.contains(operation)) {
+				respond(exchange, 400, response.put("error", operation + " runs as a process of its own"));
+				return;
+			}
+
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			int status = 200;
+			long start = System.nanoTime();
+			try (PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8)) {
+				String[] args = arguments(operation, exchange);
+				if (!App.runOffline(args, out) && !new App(session(org), out).run(args)) {
+					status = 404;
+					response.put("error", "Unknown operation " + operation);
+				}
+			} catch (JSONException | IndexOutOfBoundsException | IllegalArgumentException e) {
+				status = 400;
+				response.put("error", "Invalid arguments: " + e.getMessage());
+			} catch (GatewayException | CommitException e) {
+				status = 502;
+				response.put("error", e.getMessage());
+			} catch (Exception e) {
+				status = 500;
+				response.put("error", e.toString());
+			}
+			response.put("millis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			response.put("output", output.toString(StandardCharsets.UTF_8));
+			respond(exchange, status, response);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static String[] arguments(final String operation, final HttpExchange exchange) throws IOException {
+		String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+		JSONArray values = body.isBlank() ? new JSONArray() : new JSONArray(body);
+		String[] args = new String[values.length() + 1];
+		args[0] = operation;
+		for (int i = 0; i < values.length(); i++) {
+			args[i + 1] = values.getString(i);
+		}
+		return args;
+	}
+
+	private void health(final HttpExchange exchange) throws IOException {
+		try {
+			JSONObject orgs = new JSONObject();
+			sessions.forEach((org, session) -> orgs.put(org, new JSONObject()
+					.put("cache", session.getCache().stats())
+					.put("singleFlight", session.getReads().stats())
+					.put("peers", session.getPeers().stats())));
+			respond(exchange, 200, new JSONObject().put("status", "ok").put("orgs", orgs));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static String queryParameter(final HttpExchange exchange, final String name, final String defaultValue) {
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String parameter : query.split("&")) {
+				int separator = parameter.indexOf('=');
+				if (separator > 0 && name.equals(parameter.substring(0, separator))) {
+					return URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8);
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+	private static void respond(final HttpExchange exchange, final int status, final JSONObject body) throws IOException {
+		byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream stream = exchange.getResponseBody()) {
+			stream.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.InMemoryCheckpointer;
+import org.hyperledger.fabric.client.Network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The connection of one organization to its peers: the pool of their channels and Gateways,
+ * with the single-flight layer of its evaluations, the receipt spool, the evaluate cache and
+ * the submit engine that go with them. A CLI run opens one for its single operation; the
+ * service keeps one per organization for its lifetime and shares it between concurrent
+ * requests, which then share the limit of transactions in flight and their identical reads.
+ */
+final class OrgGateway implements AutoCloseable {
+
+	private final String org;
+	private final String chaincodeName;
+	private final PeerPool peers;
+	private final SingleFlight reads;
+	private final AccessReceiptBuffer receipts;
+	private final EvaluateCache cache;
+	private final SubmitEngine engine;
+	private AssetEventListener cacheListener;
+
+	OrgGateway(final String org, final String chaincodeName, final PeerPool peers, final SingleFlight reads, final AccessReceiptBuffer receipts,
+			final EvaluateCache cache, final SubmitEngine engine) {
+		this.org = org;
+		this.chaincodeName = chaincodeName;
+		this.peers = peers;
+		this.reads = reads;
+		this.receipts = receipts;
+		this.cache = cache;
+		this.engine = engine;
+	}
+
+	String getOrg() {
+		return org;
+	}
+
+	PeerPool getPeers() {
+		return peers;
+	}
+
+	/**
+	 * The evaluations of the peers, identical concurrent ones sharing one call.
+	 */
+	SingleFlight getReads() {
+		return reads;
+	}
+
+	/**
+	 * The network on the best peer at the time of the call.
+	 */
+	Network getNetwork() {
+		return peers.network();
+	}
+
+	/**
+	 * The contract on the best peer at the time of the call.
+	 */
+	Contract getContract() {
+		return peers.contract();
+	}
+
+	AccessReceiptBuffer getReceipts() {
+		return receipts;
+	}
+
+	EvaluateCache getCache() {
+		return cache;
+	}
+
+	SubmitEngine getSubmitEngine() {
+		return engine;
+	}
+
+	/**
+	 * Starts the background listener that keeps the cache consistent with the ledger, once,
+	 * and waits briefly for its stream, without which the cache is bypassed. Peers without a
+	 * network, such as stand-ins, have no events, so their cache stays bypassed.
+	 */
+	void startCacheInvalidation() throws InterruptedException {
+		if (peers.network() == null) {
+			return;
+		}
+		synchronized (this) {
+			if (cacheListener == null) {
+				cacheListener = new AssetEventListener(new GatewayEventSource(peers.network(), chaincodeName, false), new InMemoryCheckpointer(), null)
+						.addObserver(cache);
+				var thread = new Thread(cacheListener, "cache-invalidation-" + org);
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+		// wait outside the monitor, which would pin the carrier of a virtual request thread
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!cache.isLive() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Stops the cache listener, lets the submit engine finish the transactions in flight and
+	 * closes the peers.
+	 */
+	@Override
+	public synchronized void close() throws InterruptedException {
+		if (cacheListener != null) {
+			cacheListener.stop();
+		}
+		engine.close();
+		peers.close();
+	}
+}
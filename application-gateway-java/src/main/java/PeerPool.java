@@ -0,0 +1,312 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Network;
+
+import org.json.JSONObject;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The peers of one organization, each with its own gRPC channel and Gateway, so a slow or
+ * restarting peer only holds up the requests sent to it.
+ *
+ * Evaluations go to the healthy peer with the fewest evaluations outstanding, the one with
+ * the lower average latency on a tie. A peer that fails with UNAVAILABLE or DEADLINE_EXCEEDED
+ * is taken out of rotation for a cooldown, doubling with each consecutive failure up to
+ * {@link #MAX_COOLDOWN_MILLIS}, and the evaluation is retried on the next peer. Any other
+ * error, such as one raised by the chaincode, came from a working peer and is returned as is.
+ * A background check also takes out peers whose channel is in TRANSIENT_FAILURE. When every
+ * peer is down they are still tried, best first, rather than failing without a call.
+ *
+ * Submits are not retried, since a transaction may have reached the orderer before the
+ * failure; they use the contract of the best peer at the time {@link #contract()} is called.
+ */
+final class PeerPool implements AutoCloseable {
+
+	static final long BASE_COOLDOWN_MILLIS = 1000;
+	static final long MAX_COOLDOWN_MILLIS = 30_000;
+
+	// weight of the latest call in the average latency of a peer
+	private static final double LATENCY_WEIGHT = 0.2;
+
+	/**
+	 * One peer: its connection and its statistics.
+	 */
+	static final class Peer {
+
+		private final String name;
+		private final String endpoint;
+		private final ManagedChannel channel;
+		private final EndorsementLimiter endorsements;
+		private final Gateway gateway;
+		private final Network network;
+		private final Contract contract;
+		private final EvaluateCache.Evaluator evaluator;
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+		private long totalNanos;
+		private long maxNanos;
+		private double averageMillis;
+		private int consecutiveFailures;
+		private long downUntil;
+		private String lastError;
+
+		/**
+		 * @param channel      the channel, or null for a peer without one, which the health
+		 *                     check then skips
+		 * @param endorsements the endorsement limiter of the channel, or null
+		 * @param evaluator    evaluates a transaction function on the peer
+		 */
+		Peer(final String name, final String endpoint, final ManagedChannel channel, final EndorsementLimiter endorsements, final Gateway gateway,
+				final Network network, final Contract contract, final EvaluateCache.Evaluator evaluator) {
+			this.name = name;
+			this.endpoint = endpoint;
+			this.channel = channel;
+			this.endorsements = endorsements;
+			this.gateway = gateway;
+			this.network = network;
+			this.contract = contract;
+			this.evaluator = evaluator;
+		}
+
+		synchronized boolean isHealthy() {
+			return System.currentTimeMillis() >= downUntil;
+		}
+
+		/**
+		 * Records a call the peer answered, successfully or with an error of the chaincode.
+		 */
+		synchronized void answered(final long nanos) {
+			record(nanos);
+			consecutiveFailures = 0;
+		}
+
+		/**
+		 * Records a failed call and takes the peer out of rotation.
+		 */
+		synchronized void failed(final long nanos, final String error) {
+			record(nanos);
+			failures.incrementAndGet();
+			markDown(error);
+		}
+
+		synchronized void markDown(final String error) {
+			long cooldown = Math.min(MAX_COOLDOWN_MILLIS, BASE_COOLDOWN_MILLIS << Math.min(consecutiveFailures, 10));
+			consecutiveFailures++;
+			downUntil = System.currentTimeMillis() + cooldown;
+			lastError = error;
+		}
+
+		private void record(final long nanos) {
+			calls.incrementAndGet();
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+			double millis = nanos / 1e6;
+			averageMillis = calls.get() == 1 ? millis : averageMillis + LATENCY_WEIGHT * (millis - averageMillis);
+		}
+
+		synchronized double averageMillis() {
+			return averageMillis;
+		}
+
+		synchronized JSONObject stats() {
+			long count = calls.get();
+			JSONObject stats = new JSONObject();
+			stats.put("endpoint", endpoint);
+			stats.put("healthy", System.currentTimeMillis() >= downUntil);
+			stats.put("state", channel == null ? "NONE" : channel.getState(false).name());
+			stats.put("outstanding", outstanding.get());
+			stats.put("calls", count);
+			stats.put("failures", failures.get());
+			stats.put("meanMillis", count == 0 ? 0 : totalNanos / count / 1e6);
+			stats.put("averageMillis", averageMillis);
+			stats.put("maxMillis", maxNanos / 1e6);
+			stats.putOpt("lastError", lastError);
+			stats.putOpt("endorsements", endorsements == null ? null : endorsements.stats());
+			return stats;
+		}
+	}
+
+	private final List<Peer> peers;
+	private final AtomicLong failovers = new AtomicLong();
+	private final ScheduledExecutorService healthCheck;
+
+	/**
+	 * @param org                  the organization, naming the health check thread
+	 * @param peers                the peers, at least one
+	 * @param healthIntervalMillis the interval of the channel health check, or 0 for none
+	 */
+	PeerPool(final String org, final List<Peer> peers, final long healthIntervalMillis) {
+		if (peers.isEmpty()) {
+			throw new IllegalArgumentException("No peers for " + org);
+		}
+		this.peers = List.copyOf(peers);
+		if (healthIntervalMillis > 0) {
+			healthCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				var thread = new Thread(runnable, "peer-health-" + org);
+				thread.setDaemon(true);
+				return thread;
+			});
+			healthCheck.scheduleWithFixedDelay(this::checkHealth, healthIntervalMillis, healthIntervalMillis, TimeUnit.MILLISECONDS);
+		} else {
+			healthCheck = null;
+		}
+	}
+
+	/**
+	 * Evaluates a transaction function on the best peer, failing over to the next on
+	 * UNAVAILABLE or DEADLINE_EXCEEDED.
+	 */
+	byte[] evaluateTransaction(final String function, final String... args) throws GatewayException {
+		Set<Peer> tried = new HashSet<>();
+		Exception failure = null;
+		for (Peer peer = select(tried); peer != null; peer = select(tried)) {
+			if (failure != null) {
+				failovers.incrementAndGet();
+			}
+			tried.add(peer);
+			peer.outstanding.incrementAndGet();
+			long start = System.nanoTime();
+			try {
+				byte[] result = peer.evaluator.evaluate(function, args);
+				peer.answered(System.nanoTime() - start);
+				return result;
+			} catch (GatewayException | RuntimeException e) {
+				if (!isFailover(e)) {
+					peer.answered(System.nanoTime() - start);
+					throw e;
+				}
+				peer.failed(System.nanoTime() - start, Status.fromThrowable(e).getCode() + ": " + e.getMessage());
+				failure = e;
+			} finally {
+				peer.outstanding.decrementAndGet();
+			}
+		}
+		if (failure instanceof GatewayException) {
+			throw (GatewayException) failure;
+		}
+		throw (RuntimeException) failure;
+	}
+
+	/**
+	 * Whether a failure means the peer could not be reached or did not answer in time, from
+	 * the gRPC status of the failure or of its cause.
+	 */
+	static boolean isFailover(final Throwable failure) {
+		Status.Code code = Status.fromThrowable(failure).getCode();
+		return code == Status.Code.UNAVAILABLE || code == Status.Code.DEADLINE_EXCEEDED;
+	}
+
+	/**
+	 * Selects the best peer not tried yet: healthy before down, then the fewest outstanding
+	 * evaluations, then the lowest average latency.
+	 *
+	 * @return the peer, or null if all have been tried
+	 */
+	private Peer select(final Set<Peer> tried) {
+		Peer best = null;
+		boolean bestHealthy = false;
+		for (Peer peer : peers) {
+			if (tried.contains(peer)) {
+				continue;
+			}
+			boolean healthy = peer.isHealthy();
+			if (best == null || healthy && !bestHealthy || healthy == bestHealthy && isBetter(peer, best)) {
+				best = peer;
+				bestHealthy = healthy;
+			}
+		}
+		return best;
+	}
+
+	private static boolean isBetter(final Peer peer, final Peer than) {
+		int outstanding = peer.outstanding.get();
+		int thanOutstanding = than.outstanding.get();
+		return outstanding < thanOutstanding || outstanding == thanOutstanding && peer.averageMillis() < than.averageMillis();
+	}
+
+	/**
+	 * Takes the peers whose channel failed to connect out of rotation. Peers come back once
+	 * their cooldown has passed.
+	 */
+	void checkHealth() {
+		for (Peer peer : peers) {
+			if (peer.channel == null || !peer.isHealthy()) {
+				continue;
+			}
+			ConnectivityState state = peer.channel.getState(true);
+			if (state == ConnectivityState.TRANSIENT_FAILURE || state == ConnectivityState.SHUTDOWN) {
+				peer.markDown("channel " + state);
+			}
+		}
+	}
+
+	/**
+	 * The contract on the best peer, for submitting transactions.
+	 */
+	Contract contract() {
+		return select(Set.of()).contract;
+	}
+
+	/**
+	 * The network on the best peer, for listening to chaincode events.
+	 */
+	Network network() {
+		return select(Set.of()).network;
+	}
+
+	List<Peer> peers() {
+		return peers;
+	}
+
+	/**
+	 * The statistics of every peer by name, with the number of failovers.
+	 */
+	JSONObject stats() {
+		JSONObject byPeer = new JSONObject();
+		for (Peer peer : peers) {
+			byPeer.put(peer.name, peer.stats());
+		}
+		return new JSONObject().put("peers", byPeer).put("failovers", failovers.get());
+	}
+
+	/**
+	 * Stops the health check and closes the Gateways, then the channels, giving calls in
+	 * flight a few seconds to finish.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		if (healthCheck != null) {
+			healthCheck.shutdownNow();
+		}
+		for (Peer peer : peers) {
+			if (peer.gateway != null) {
+				peer.gateway.close();
+			}
+			if (peer.channel != null) {
+				peer.channel.shutdown();
+			}
+		}
+		for (Peer peer : peers) {
+			if (peer.channel != null && !peer.channel.awaitTermination(5, TimeUnit.SECONDS)) {
+				peer.channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.GatewayException;
+
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces identical concurrent evaluations. For the functions opted in, an evaluation with
+ * the same function and arguments as one already on its way to a peer does not call the peer
+ * again but waits for that call and receives its result, or its failure, as if it had made
+ * the call itself. Once the call returns the next evaluation calls the peer again, so nothing
+ * is cached: a request that joins a call in flight gets an answer at most one peer round trip
+ * older than the request. Functions whose every call must reach the peer, such as
+ * ReadAssetWithReceipt, which writes a receipt per read, are simply not opted in.
+ */
+final class SingleFlight {
+
+	private static final class Counters {
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder peerCalls = new LongAdder();
+		private final LongAdder coalesced = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+	}
+
+	private final EvaluateCache.Evaluator peer;
+	private final Set<String> functions;
+	private final Map<List<String>, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+	private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+	/**
+	 * @param peer      evaluates on a peer
+	 * @param functions the functions whose identical concurrent evaluations are coalesced
+	 */
+	SingleFlight(final EvaluateCache.Evaluator peer, final Set<String> functions) {
+		this.peer = peer;
+		this.functions = Set.copyOf(functions);
+	}
+
+	/**
+	 * Evaluates a transaction function, joining an identical evaluation in flight if the
+	 * function is opted in.
+	 */
+	byte[] evaluate(final String function, final String... args) throws GatewayException {
+		if (!functions.contains(function)) {
+			return peer.evaluate(function, args);
+		}
+		Counters count = counters.computeIfAbsent(function, key -> new Counters());
+		count.requests.increment();
+
+		List<String> key = new ArrayList<>(args.length + 1);
+		key.add(function);
+		key.addAll(Arrays.asList(args));
+		CompletableFuture<byte[]> call = new CompletableFuture<>();
+		CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, call);
+		if (running != null) {
+			count.coalesced.increment();
+			// each waiter gets its own copy of the result
+			return await(running).clone();
+		}
+
+		count.peerCalls.increment();
+		try {
+			byte[] result = peer.evaluate(function, args);
+			call.complete(result);
+			return result;
+		} catch (GatewayException | RuntimeException e) {
+			count.failures.increment();
+			call.completeExceptionally(e);
+			throw e;
+		} finally {
+			// never leave waiters behind, whatever the call threw
+			if (!call.isDone()) {
+				call.completeExceptionally(new IllegalStateException("Evaluation of " + function + " failed"));
+			}
+			inFlight.remove(key, call);
+		}
+	}
+
+	/**
+	 * Waits for the call of another request, rethrowing the exception it failed with.
+	 */
+	private static byte[] await(final CompletableFuture<byte[]> call) throws GatewayException {
+		try {
+			return call.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof GatewayException) {
+				throw (GatewayException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * The counters of every opted in function that has been evaluated: requests, calls made
+	 * to a peer, requests that joined a call in flight, failed calls, and the coalescing
+	 * ratio, the share of requests that joined a call.
+	 */
+	JSONObject stats() {
+		JSONObject byFunction = new JSONObject();
+		counters.forEach((function, count) -> {
+			long requests = count.requests.sum();
+			long coalesced = count.coalesced.sum();
+			byFunction.put(function, new JSONObject()
+					.put("requests", requests)
+					.put("peerCalls", count.peerCalls.sum())
+					.put("coalesced", coalesced)
+					.put("failures", count.failures.sum())
+					.put("ratio", requests == 0 ? 0.0 : (double) coalesced / requests));
+		});
+		return new JSONObject().put("functions", byFunction).put("inFlight", inFlight.size());
+	}
+}
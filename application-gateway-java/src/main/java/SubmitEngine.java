@@ -0,0 +1,205 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+
+import org.json.JSONObject;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Submits transactions without waiting for each to commit before sending the next. Every
+ * transaction is endorsed and sent to the orderer with submitAsync, then its commit status is
+ * awaited, on a pool of maxInFlight threads, so up to maxInFlight transactions are between
+ * endorsement and commit at any time. Submitting while the limit is reached blocks the caller
+ * until a transaction commits, so a producer reading a large file never runs ahead of the
+ * orderer.
+ *
+ * Each submission returns a future completed with the result of the transaction once it has
+ * committed, or exceptionally with the GatewayException of a failed endorsement or submit, or
+ * of an invalid transaction. Callbacks on the future run on the engine's
+ * threads and must not block.
+ */
+final class SubmitEngine implements AutoCloseable {
+
+	/**
+	 * Endorses a transaction and sends it to the orderer.
+	 */
+	@FunctionalInterface
+	interface Submission {
+		SubmittedTransaction submit() throws GatewayException;
+	}
+
+	private final int maxInFlight;
+	private final Semaphore permits;
+	private final ExecutorService pool;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong committed = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	SubmitEngine(final String name, final int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+		}
+		this.maxInFlight = maxInFlight;
+		this.permits = new Semaphore(maxInFlight);
+		AtomicInteger threads = new AtomicInteger();
+		this.pool = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+			var thread = new Thread(runnable, name + "-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Submits a transaction of a contract, waiting first while maxInFlight transactions are
+	 * in flight.
+	 *
+	 * @param contract      the contract
+	 * @param function      the transaction function
+	 * @param transientData the transient data of the proposal, or null
+	 * @param arguments     the arguments of the function
+	 * @return the future result of the transaction
+	 */
+	CompletableFuture<byte[]> submit(final Contract contract, final String function, final Map<String, byte[]> transientData, final String... arguments)
+			throws InterruptedException {
+		return submit(() -> {
+			var proposal = contract.newProposal(function).addArguments(arguments);
+			if (transientData != null) {
+				proposal.putAllTransient(transientData);
+			}
+			return proposal.build().endorse().submitAsync();
+		});
+	}
+
+	/**
+	 * Submits a transaction, waiting first while maxInFlight transactions are in flight.
+	 *
+	 * @param submission endorses the transaction and sends it to the orderer
+	 * @return the future result of the transaction
+	 */
+	CompletableFuture<byte[]> submit(final Submission submission) throws InterruptedException {
+		permits.acquire();
+		peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+		CompletableFuture<byte[]> future = new CompletableFuture<>();
+		try {
+			pool.execute(() -> run(submission, future));
+		} catch (RejectedExecutionException e) {
+			inFlight.decrementAndGet();
+			permits.release();
+			throw new IllegalStateException("Submit engine is closed", e);
+		}
+		return future;
+	}
+
+	private void run(final Submission submission, final CompletableFuture<byte[]> future) {
+		byte[] result = null;
+		Exception error = null;
+		try {
+			SubmittedTransaction transaction = submission.submit();
+			submitted.incrementAndGet();
+			Status status = transaction.getStatus();
+			if (!status.isSuccessful()) {
+				// the constructor of CommitException is not public
+				throw new GatewayException(io.grpc.Status.ABORTED.withDescription(String.format("Transaction %s failed to commit with status code %s",
+						status.getTransactionId(), status.getCode())).asRuntimeException());
+			}
+			result = transaction.getResult();
+			committed.incrementAndGet();
+		} catch (Exception e) {
+			failed.incrementAndGet();
+			error = e;
+		} finally {
+			// free the slot before completing, so callbacks may submit the next transaction
+			inFlight.decrementAndGet();
+			permits.release();
+		}
+		if (error == null) {
+			future.complete(result);
+		} else {
+			future.completeExceptionally(error);
+		}
+	}
+
+	/**
+	 * Waits until no transaction is in flight.
+	 */
+	void drain() throws InterruptedException {
+		permits.acquire(maxInFlight);
+		permits.release(maxInFlight);
+	}
+
+	/**
+	 * Waits for the result of a transaction, or of a stage depending on it, rethrowing the
+	 * GatewayException it failed with.
+	 */
+	static <T> T await(final CompletableFuture<T> future) throws GatewayException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = causeOf(e);
+			if (cause instanceof GatewayException) {
+				throw (GatewayException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * The failure of a transaction, which callbacks of dependent stages get wrapped in a
+	 * CompletionException.
+	 */
+	static Throwable causeOf(final Throwable failure) {
+		boolean wrapped = failure instanceof CompletionException || failure instanceof ExecutionException;
+		return wrapped && failure.getCause() != null ? failure.getCause() : failure;
+	}
+
+	int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Counts of the engine: transactions in flight and their peak, transactions accepted by the
+	 * orderer, committed successfully and failed at any stage.
+	 */
+	JSONObject stats() {
+		JSONObject stats = new JSONObject();
+		stats.put("maxInFlight", maxInFlight);
+		stats.put("inFlight", inFlight.get());
+		stats.put("peakInFlight", peakInFlight.get());
+		stats.put("submitted", submitted.get());
+		stats.put("committed", committed.get());
+		stats.put("failed", failed.get());
+		return stats;
+	}
+
+	/**
+	 * Waits for the transactions in flight, then stops the threads.
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		pool.shutdown();
+		if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+			pool.shutdownNow();
+		}
+	}
+}
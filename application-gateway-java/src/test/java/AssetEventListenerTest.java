@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.hyperledger.fabric.client.InMemoryCheckpointer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public final class AssetEventListenerTest {
+
+	private Path index;
+
+	@BeforeEach
+	void createIndex() throws IOException {
+		index = Files.createTempFile("asset_index", ".jsonl");
+	}
+
+	@AfterEach
+	void deleteIndex() throws IOException {
+		Files.deleteIfExists(index);
+	}
+
+	@Test
+	void buildsTheReadModelFromTheAssetEvents() throws Exception {
+		var source = new InMemoryEventSource("medcare");
+		source.publish(AssetEventListener.EVENT_NAME, changes(change("CREATED", "asset1"), change("CREATED", "asset2")));
+		source.publish("OtherEvent", new byte[0]);
+		source.publish(AssetEventListener.EVENT_NAME, changes(change("ACL_GRANTED", "asset2").put("detail", "Org2MSP")));
+		source.publish(AssetEventListener.EVENT_NAME, changes(change("DELETED", "asset1")));
+
+		AssetReadModel model = AssetReadModel.open(index, assetID -> "patient1");
+		long applied = listenUntil(source, model, 4);
+
+		assertEquals(2, model.history("asset2").length());
+		assertEquals(List.of("asset2"), model.assets("patient1"));
+		assertEquals(3L, applied);
+	}
+
+	@Test
+	void appliesNoChangeTwiceWhenTheStreamIsReplayed() throws Exception {
+		var source = new InMemoryEventSource("medcare");
+		source.publish(AssetEventListener.EVENT_NAME, changes(change("CREATED", "asset1"), change("CREATED", "asset2")));
+		source.publish(AssetEventListener.EVENT_NAME, changes(change("ACL_GRANTED", "asset2").put("detail", "Org2MSP")));
+		source.publish(AssetEventListener.EVENT_NAME, changes(change("DELETED", "asset1")));
+		listenUntil(source, AssetReadModel.open(index, assetID -> "patient1"), 3);
+
+		// a reopened index replays the whole stream, as after a crash before the checkpoint was written
+		AssetReadModel reopened = AssetReadModel.open(index, assetID -> null);
+		source.publish(AssetEventListener.EVENT_NAME, changes(change("READ", "asset2")));
+		long applied = listenUntil(source, reopened, 4);
+
+		assertEquals(3, reopened.history("asset2").length());
+		assertEquals(1L, applied);
+		assertEquals(List.of("asset2"), reopened.assets("patient1"));
+	}
+
+	private static long listenUntil(final InMemoryEventSource source, final AssetReadModel model, final long block) throws InterruptedException {
+		var listener = new AssetEventListener(source, new InMemoryCheckpointer(), model);
+		var thread = new Thread(listener);
+		thread.start();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (model.lastBlock() < block && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		listener.stop();
+		thread.join();
+		return listener.applied();
+	}
+
+	static JSONObject change(final String type, final String assetID) {
+		return new JSONObject().put("type", type).put("assetID", assetID).put("org", "Org1MSP");
+	}
+
+	static byte[] changes(final JSONObject... changes) {
+		return new JSONArray(Arrays.asList(changes)).toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+public final class EndorsementLimiterTest {
+
+	@Test
+	void limitsEndorseCallsAndPassesOtherCalls() throws Exception {
+		var limiter = new EndorsementLimiter(4);
+		try (var peer = new StandInPeer("test-endorse", 20)) {
+			var channel = peer.newChannel(limiter);
+			var threads = new ArrayList<Thread>();
+			for (int i = 0; i < 32; i++) {
+				String method = i % 2 == 0 ? EndorsementLimiter.ENDORSE_METHOD : StandInPeer.EVALUATE_METHOD;
+				var thread = new Thread(() -> StandInPeer.call(channel, method, new byte[] {1}));
+				thread.start();
+				threads.add(thread);
+			}
+			for (var thread : threads) {
+				thread.join();
+			}
+			channel.shutdownNow();
+
+			var stats = limiter.stats();
+			assertEquals(16L, stats.getLong("endorsements"));
+			assertEquals(4, stats.getInt("peakInFlight"));
+			assertEquals(0, stats.getInt("inFlight"));
+			assertEquals(32L, peer.stats().getLong("calls"));
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.hyperledger.fabric.client.InMemoryCheckpointer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public final class EvaluateCacheTest {
+
+	private static final Set<String> SENSITIVE_FUNCTIONS = Set.of("ReadAcl");
+
+	private final Map<String, Integer> calls = new HashMap<>();
+
+	private final EvaluateCache.Evaluator peer = (function, args) -> {
+		calls.merge(function + " " + String.join(",", args), 1, Integer::sum);
+		return new byte[0];
+	};
+
+	@Test
+	void callsThePeerWithoutAStream() throws Exception {
+		var cache = new EvaluateCache(peer, 2, Duration.ofMinutes(1), false, SENSITIVE_FUNCTIONS);
+
+		cache.evaluate(EvaluateCache.assetTag("asset2"), "ReadAcl", "asset2");
+		cache.evaluate(EvaluateCache.assetTag("asset2"), "ReadAcl", "asset2");
+
+		assertEquals(2, calls.get("ReadAcl asset2"));
+	}
+
+	@Test
+	void dropsTheEntriesAnEventTouches() throws Exception {
+		var source = new InMemoryEventSource("medcare");
+		source.publish(AssetEventListener.EVENT_NAME, AssetEventListenerTest.changes(AssetEventListenerTest.change("CREATED", "asset2")));
+		var cache = new EvaluateCache(peer, 2, Duration.ofMinutes(1), false, SENSITIVE_FUNCTIONS);
+
+		// observe the events published from now on, like a cache listening from the next block
+		var checkpointer = new InMemoryCheckpointer();
+		checkpointer.checkpointBlock(source.blockNumber());
+		var listener = new AssetEventListener(source, checkpointer, null).addObserver(cache);
+		var thread = new Thread(listener);
+		thread.start();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!cache.stats().getBoolean("live") && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		try {
+			for (int i = 0; i < 3; i++) {
+				cache.evaluate(EvaluateCache.assetTag("asset2"), "ReadAcl", "asset2");
+				cache.evaluate(EvaluateCache.patientTag("patient1"), "QueryAssetByPatient", "patient1");
+			}
+			assertEquals(1, calls.get("ReadAcl asset2"));
+			assertEquals(1, calls.get("QueryAssetByPatient patient1"));
+
+			long invalidations = cache.stats().getLong("invalidations");
+			source.publish(AssetEventListener.EVENT_NAME, AssetEventListenerTest.changes(
+					AssetEventListenerTest.change("ACL_REVOKED", "asset2").put("detail", "Org2MSP")));
+			while (cache.stats().getLong("invalidations") == invalidations && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			cache.evaluate(EvaluateCache.assetTag("asset2"), "ReadAcl", "asset2");
+			cache.evaluate(EvaluateCache.patientTag("patient1"), "QueryAssetByPatient", "patient1");
+			assertEquals(2, calls.get("ReadAcl asset2"));
+			assertEquals(1, calls.get("QueryAssetByPatient patient1"));
+
+			cache.evaluate(EvaluateCache.assetTag("asset3"), "ReadAcl", "asset3");
+			assertEquals(1L, cache.stats().getLong("evictions"));
+		} finally {
+			listener.stop();
+			thread.join();
+		}
+	}
+
+	@Test
+	void bypassesSensitiveFunctionsInStrictMode() throws Exception {
+		var strict = new EvaluateCache(peer, 2, Duration.ofMinutes(1), true, SENSITIVE_FUNCTIONS);
+		strict.connected();
+
+		strict.evaluate(EvaluateCache.assetTag("asset4"), "ReadAcl", "asset4");
+		strict.evaluate(EvaluateCache.assetTag("asset4"), "ReadAcl", "asset4");
+
+		assertEquals(2, calls.get("ReadAcl asset4"));
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.Checkpoint;
+import org.hyperledger.fabric.client.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * An in-process stand-in for the chaincode events of a peer, so the listener and the read
+ * model can be exercised without a network. Every published event gets a block of its own.
+ * Streams honour checkpoints the way the Gateway does: they start at the checkpointed block
+ * and skip the events up to the checkpointed transaction in it.
+ */
+final class InMemoryEventSource implements AssetEventSource {
+
+	private final String chaincodeName;
+	private final List<ChaincodeEvent> events = new ArrayList<>();
+	private long blockNumber;
+
+	InMemoryEventSource(final String chaincodeName) {
+		this.chaincodeName = chaincodeName;
+	}
+
+	/**
+	 * Publishes an event in a new block.
+	 *
+	 * @return the published event
+	 */
+	synchronized ChaincodeEvent publish(final String eventName, final byte[] payload) {
+		blockNumber++;
+		ChaincodeEvent event = new Event(blockNumber, "tx" + blockNumber, chaincodeName, eventName, payload);
+		events.add(event);
+		notifyAll();
+		return event;
+	}
+
+	/**
+	 * The block of the last published event.
+	 */
+	synchronized long blockNumber() {
+		return blockNumber;
+	}
+
+	@Override
+	public synchronized CloseableIterator<ChaincodeEvent> open(final Checkpoint checkpoint) {
+		long block = checkpoint.getBlockNumber().orElse(0);
+		Optional<String> transactionId = checkpoint.getTransactionId();
+		int start = 0;
+		while (start < events.size() && events.get(start).getBlockNumber() < block) {
+			start++;
+		}
+		if (transactionId != null && transactionId.isPresent()) {
+			for (int i = start; i < events.size() && events.get(i).getBlockNumber() == block; i++) {
+				if (transactionId.get().equals(events.get(i).getTransactionId())) {
+					start = i + 1;
+					break;
+				}
+			}
+		}
+		return new Stream(start);
+	}
+
+	private final class Stream implements CloseableIterator<ChaincodeEvent> {
+
+		private int next;
+		private boolean closed;
+
+		Stream(final int start) {
+			next = start;
+		}
+
+		@Override
+		public boolean hasNext() {
+			synchronized (InMemoryEventSource.this) {
+				try {
+					while (!closed && next >= events.size()) {
+						InMemoryEventSource.this.wait();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+				return !closed;
+			}
+		}
+
+		@Override
+		public ChaincodeEvent next() {
+			synchronized (InMemoryEventSource.this) {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return events.get(next++);
+			}
+		}
+
+		@Override
+		public void close() {
+			synchronized (InMemoryEventSource.this) {
+				closed = true;
+				InMemoryEventSource.this.notifyAll();
+			}
+		}
+	}
+
+	private static final class Event implements ChaincodeEvent {
+
+		private final long blockNumber;
+		private final String transactionId;
+		private final String chaincodeName;
+		private final String eventName;
+		private final byte[] payload;
+
+		Event(final long blockNumber, final String transactionId, final String chaincodeName, final String eventName, final byte[] payload) {
+			this.blockNumber = blockNumber;
+			this.transactionId = transactionId;
+			this.chaincodeName = chaincodeName;
+			this.eventName = eventName;
+			this.payload = payload;
+		}
+
+		@Override
+		public long getBlockNumber() {
+			return blockNumber;
+		}
+
+		@Override
+		public String getTransactionId() {
+			return transactionId;
+		}
+
+		@Override
+		public String getChaincodeName() {
+			return chaincodeName;
+		}
+
+		@Override
+		public String getEventName() {
+			return eventName;
+		}
+
+		@Override
+		public byte[] getPayload() {
+			return payload.clone();
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public final class PeerPoolTest {
+
+	@Test
+	void failsOverFromAnUnreachablePeerAndSkipsIt() throws Exception {
+		var down = peer("down", 0, Status.Code.UNAVAILABLE);
+		var pool = new PeerPool("test", List.of(down, peer("up", 0, Status.Code.OK)), 0);
+		try {
+			assertEquals("ReadAcl asset1", new String(pool.evaluateTransaction("ReadAcl", "asset1"), StandardCharsets.UTF_8));
+			assertFalse(down.isHealthy());
+
+			pool.evaluateTransaction("ReadAcl", "asset1");
+			var stats = pool.stats();
+			assertEquals(1L, stats.getJSONObject("peers").getJSONObject("down").getLong("calls"));
+			assertEquals(1L, stats.getLong("failovers"));
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	void favoursTheFasterPeerUnderConcurrentLoad() throws Exception {
+		var pool = new PeerPool("test", List.of(peer("slow", 40, Status.Code.OK), peer("fast", 5, Status.Code.OK)), 0);
+		try {
+			var threads = new ArrayList<Thread>();
+			for (int i = 0; i < 4; i++) {
+				var thread = new Thread(() -> {
+					for (int call = 0; call < 10; call++) {
+						try {
+							pool.evaluateTransaction("ReadAcl", "asset1");
+						} catch (GatewayException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				});
+				thread.start();
+				threads.add(thread);
+			}
+			for (var thread : threads) {
+				thread.join();
+			}
+			var peerStats = pool.stats().getJSONObject("peers");
+			long fastCalls = peerStats.getJSONObject("fast").getLong("calls");
+			long slowCalls = peerStats.getJSONObject("slow").getLong("calls");
+			assertEquals(40L, fastCalls + slowCalls);
+			assertTrue(fastCalls > slowCalls);
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	void returnsErrorsOfTheChaincodeAsTheyAre() throws Exception {
+		var pool = new PeerPool("test", List.of(peer("denied", 0, Status.Code.PERMISSION_DENIED)), 0);
+		try {
+			assertThrows(StatusRuntimeException.class, () -> pool.evaluateTransaction("ReadAcl", "asset1"));
+			assertTrue(pool.peers().get(0).isHealthy());
+		} finally {
+			pool.close();
+		}
+	}
+
+	private static PeerPool.Peer peer(final String name, final long latencyMillis, final Status.Code code) {
+		return new PeerPool.Peer(name, "in-process", null, null, null, null, null, latencyPeer(latencyMillis, code));
+	}
+
+	/**
+	 * An evaluator standing in for a peer, which answers after latencyMillis with the function
+	 * and arguments, or fails with the given gRPC status.
+	 */
+	private static EvaluateCache.Evaluator latencyPeer(final long latencyMillis, final Status.Code code) {
+		return (function, args) -> {
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (code != Status.Code.OK) {
+				throw Status.fromCode(code).asRuntimeException();
+			}
+			return (function + " " + String.join(",", args)).getBytes(StandardCharsets.UTF_8);
+		};
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import org.json.JSONArray;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency of an operation run the way the scripts run it, one JVM per
+ * operation, with the same operation sent to a running service. The CLI runs are started
+ * with the java binary and class path of this process, which leaves out the Gradle startup
+ * the scripts add on top. The first service request is not measured, as the service pays
+ * for its connection once.
+ */
+final class ServiceBenchmark {
+
+	private ServiceBenchmark() {
+	}
+
+	/**
+	 * Runs the benchmark against SERVICE_URL, see the benchmarkService task.
+	 *
+	 * @param args the number of runs, then the operation and its arguments
+	 */
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		String serviceUrl = System.getenv().getOrDefault("SERVICE_URL", "http://" + System.getenv().getOrDefault("SERVICE_HOST", "127.0.0.1") + ":" + System.getenv().getOrDefault("SERVICE_PORT", "8080"));
+		run(serviceUrl, Integer.parseInt(args[0]), Arrays.copyOfRange(args, 1, args.length));
+	}
+
+	/**
+	 * @param serviceUrl the address of the running service
+	 * @param runs       the number of runs of each kind
+	 * @param operation  the operation and its arguments, as given to the CLI
+	 */
+	static void run(final String serviceUrl, final int runs, final String[] operation) throws IOException, InterruptedException {
+		System.out.printf("\n--> Benchmark: %s, %d CLI runs against %d requests to %s%n", String.join(" ", operation), runs, runs, serviceUrl);
+
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"), "App"));
+		command.addAll(Arrays.asList(operation));
+		long[] cli = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			int exit = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start().waitFor();
+			cli[i] = System.nanoTime() - start;
+			if (exit != 0) {
+				throw new IllegalStateException("CLI run failed with exit code " + exit);
+			}
+		}
+
+		HttpClient client = HttpClient.newHttpClient();
+		HttpRequest request = HttpRequest.newBuilder(URI.create(serviceUrl + "/operations/" + operation[0]))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(new JSONArray(Arrays.asList(operation).subList(1, operation.length)).toString()))
+				.build();
+		send(client, request);
+		long[] service = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			long start = System.nanoTime();
+			send(client, request);
+			service[i] = System.nanoTime() - start;
+		}
+
+		report("CLI", cli);
+		report("Service", service);
+		System.out.printf("*** Median speedup: %.1fx%n", (double) percentile(cli, 50) / Math.max(1, percentile(service, 50)));
+	}
+
+	private static void send(final HttpClient client, final HttpRequest request) throws IOException, InterruptedException {
+		HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+		if (response.statusCode() != 200) {
+			throw new IllegalStateException("Service request failed: " + response.body());
+		}
+	}
+
+	private static void report(final String name, final long[] nanos) {
+		System.out.printf("*** %s: median %d ms, p95 %d ms, max %d ms%n", name,
+				TimeUnit.NANOSECONDS.toMillis(percentile(nanos, 50)),
+				TimeUnit.NANOSECONDS.toMillis(percentile(nanos, 95)),
+				TimeUnit.NANOSECONDS.toMillis(percentile(nanos, 100)));
+	}
+
+	static long percentile(final long[] nanos, final int percentile) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, index)];
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how the service scales with the number of simultaneous requests, without a Fabric
+ * network. The service runs in this process against two in-process {@link StandInPeer}s that
+ * answer every evaluation after a fixed latency, and for each level all requests, ReadAcl
+ * evaluations through the peer pool, are sent at once over HTTP. With a request per virtual
+ * thread the time of a level stays close to the latency of the stand-in as the level grows,
+ * where a pool of n platform threads would need level / n times that latency.
+ */
+final class ServiceLoadTest {
+
+	private static final String ORG = "org1";
+
+	private ServiceLoadTest() {
+	}
+
+	/**
+	 * Runs the load test, see the loadTestService task.
+	 *
+	 * @param args the numbers of simultaneous requests, comma separated, and the latency of the stand-in peers in ms
+	 */
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		run(args.length > 0 ? args[0] : "10,100,1000,5000", args.length > 1 ? Long.parseLong(args[1]) : 50);
+	}
+
+	/**
+	 * @param levels        the numbers of simultaneous requests, comma separated
+	 * @param latencyMillis the latency of the stand-in peers
+	 */
+	static void run(final String levels, final long latencyMillis) throws IOException, InterruptedException {
+		System.out.printf("\n--> Load test: ReadAcl with %s simultaneous requests, stand-in peers answering after %d ms%n", levels, latencyMillis);
+
+		var spool = Files.createTempFile("access_receipts", ".jsonl");
+		try (var peer0 = new StandInPeer("load-test-peer0", latencyMillis); var peer1 = new StandInPeer("load-test-peer1", latencyMillis)) {
+			var service = new GatewayService(ORG, "127.0.0.1", 0, org -> connect(org, spool, peer0, peer1));
+			service.start();
+			try {
+				HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+				URI uri = URI.create("http://127.0.0.1:" + service.port() + "/operations/ReadAcl");
+				send(client, uri, 1);
+				System.out.println("*** requests  wall ms  requests/s  p50 ms  p99 ms  max ms  failed");
+				for (String level : levels.split(",")) {
+					send(client, uri, Integer.parseInt(level.trim()));
+				}
+				System.out.println("*** Stand-in peers: " + List.of(peer0.stats(), peer1.stats()));
+			} finally {
+				service.stop();
+			}
+		} finally {
+			Files.deleteIfExists(spool);
+		}
+	}
+
+	/**
+	 * Sends the requests of one level at once and reports their latencies.
+	 */
+	private static void send(final HttpClient client, final URI uri, final int requests) {
+		var request = HttpRequest.newBuilder(uri)
+				.header("Content-Type", "application/json")
+				.timeout(Duration.ofMinutes(2))
+				.POST(HttpRequest.BodyPublishers.ofString("[\"asset1\"]"))
+				.build();
+		long[] nanos = new long[requests];
+		AtomicInteger failed = new AtomicInteger();
+		CompletableFuture<?>[] responses = new CompletableFuture<?>[requests];
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			int index = i;
+			long sent = System.nanoTime();
+			responses[i] = client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).handle((response, error) -> {
+				nanos[index] = System.nanoTime() - sent;
+				if (error != null || response.statusCode() != 200) {
+					failed.incrementAndGet();
+				}
+				return null;
+			});
+		}
+		CompletableFuture.allOf(responses).join();
+		long wall = System.nanoTime() - start;
+		if (requests > 1) {
+			System.out.printf("*** %8d  %7d  %10.0f  %6d  %6d  %6d  %6d%n", requests, TimeUnit.NANOSECONDS.toMillis(wall), requests * 1e9 / wall,
+					TimeUnit.NANOSECONDS.toMillis(ServiceBenchmark.percentile(nanos, 50)),
+					TimeUnit.NANOSECONDS.toMillis(ServiceBenchmark.percentile(nanos, 99)),
+					TimeUnit.NANOSECONDS.toMillis(ServiceBenchmark.percentile(nanos, 100)), failed.get());
+		}
+	}
+
+	/**
+	 * Connects an organization to the stand-in peers. Nothing is cached, coalesced or
+	 * submitted, so every request evaluates at a stand-in.
+	 */
+	private static OrgGateway connect(final String org, final Path spool, final StandInPeer... standIns) {
+		var peers = new ArrayList<PeerPool.Peer>();
+		for (int i = 0; i < standIns.length; i++) {
+			var endorsements = new EndorsementLimiter(64);
+			var channel = standIns[i].newChannel(endorsements);
+			peers.add(new PeerPool.Peer("peer" + i, "in-process", channel, endorsements, null, null, null, StandInPeer.evaluator(channel)));
+		}
+		var pool = new PeerPool(org, peers, 0);
+		var reads = new SingleFlight(pool::evaluateTransaction, Set.of());
+		var receipts = new AccessReceiptBuffer(pool::contract, spool, 1);
+		var cache = new EvaluateCache(reads::evaluate, 1, Duration.ZERO, true, Set.of("ReadAcl"));
+		return new OrgGateway(org, "stand-in", pool, reads, receipts, cache, new SubmitEngine("submit-" + org, 1));
+	}
+}
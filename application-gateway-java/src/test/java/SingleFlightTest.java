@@ -0,0 +1,108 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.grpc.Status;
+import org.hyperledger.fabric.client.GatewayException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class SingleFlightTest {
+
+	private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	// answers once released with the function and arguments, or fails for the asset "missing"
+	private final EvaluateCache.Evaluator peer = (function, args) -> {
+		calls.computeIfAbsent(function + " " + String.join(",", args), key -> new AtomicInteger()).incrementAndGet();
+		try {
+			release.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if ("missing".equals(args[0])) {
+			throw Status.NOT_FOUND.withDescription("asset missing").asRuntimeException();
+		}
+		return (function + " " + String.join(",", args)).getBytes(StandardCharsets.UTF_8);
+	};
+
+	@Test
+	void sharesIdenticalConcurrentEvaluationsOfOptedInFunctions() throws Exception {
+		var reads = new SingleFlight(peer, Set.of("ReadAcl", "QueryAssetByPatient"));
+		List<String[]> requests = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			requests.add(new String[] {"ReadAcl", "asset1"});
+		}
+		for (int i = 0; i < 5; i++) {
+			requests.add(new String[] {"ReadAcl", "missing"});
+		}
+		for (int i = 0; i < 3; i++) {
+			requests.add(new String[] {"ReadAssetWithReceipt", "asset1"});
+		}
+		requests.add(new String[] {"QueryAssetByPatient", "asset1"});
+
+		Map<Integer, String> outcomes = new ConcurrentHashMap<>();
+		var threads = new ArrayList<Thread>();
+		for (int i = 0; i < requests.size(); i++) {
+			int request = i;
+			var thread = new Thread(() -> {
+				String[] call = requests.get(request);
+				try {
+					outcomes.put(request, new String(reads.evaluate(call[0], call[1]), StandardCharsets.UTF_8));
+				} catch (GatewayException | RuntimeException e) {
+					outcomes.put(request, Status.fromThrowable(e).getCode().name());
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		// hold the peer until every request has either called it or joined a call
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (System.nanoTime() < deadline && (calls.values().stream().mapToInt(AtomicInteger::get).sum() < 6
+				|| reads.stats().getJSONObject("functions").getJSONObject("ReadAcl").getLong("coalesced") < 13)) {
+			Thread.sleep(5);
+		}
+		release.countDown();
+		for (var thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(1, calls.get("ReadAcl asset1").get());
+		assertEquals(1, calls.get("ReadAcl missing").get());
+		assertEquals(3, calls.get("ReadAssetWithReceipt asset1").get());
+		assertEquals(1, calls.get("QueryAssetByPatient asset1").get());
+		for (int i = 0; i < requests.size(); i++) {
+			String[] call = requests.get(i);
+			assertEquals("missing".equals(call[1]) ? "NOT_FOUND" : call[0] + " " + call[1], outcomes.get(i), String.join(" ", call));
+		}
+		var stats = reads.stats();
+		var readAcl = stats.getJSONObject("functions").getJSONObject("ReadAcl");
+		assertEquals(15L, readAcl.getLong("requests"));
+		assertEquals(1L, readAcl.getLong("failures"));
+		assertEquals(13.0 / 15, readAcl.getDouble("ratio"));
+		assertEquals(0, stats.getInt("inFlight"));
+	}
+
+	@Test
+	void doesNotShareACallThatHasReturned() throws Exception {
+		var reads = new SingleFlight(peer, Set.of("ReadAcl"));
+		release.countDown();
+
+		reads.evaluate("ReadAcl", "asset1");
+		reads.evaluate("ReadAcl", "asset1");
+
+		assertEquals(2, calls.get("ReadAcl asset1").get());
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for the Gateway service of a peer, for load and self tests without a Fabric
+ * network: an in-process gRPC server answering the Evaluate and Endorse methods of
+ * gateway.Gateway after a fixed latency. It speaks raw bytes rather than the Fabric protobuf
+ * messages and echoes each request, so it exercises the channel, its interceptors and the
+ * threading of the caller but not the Gateway client. Answers are scheduled, not slept, so
+ * the stand-in holds no thread per call in flight.
+ */
+final class StandInPeer implements AutoCloseable {
+
+	static final String EVALUATE_METHOD = "gateway.Gateway/Evaluate";
+
+	private static final MethodDescriptor.Marshaller<byte[]> BYTES = new MethodDescriptor.Marshaller<>() {
+		@Override
+		public InputStream stream(final byte[] value) {
+			return new ByteArrayInputStream(value);
+		}
+
+		@Override
+		public byte[] parse(final InputStream stream) {
+			try {
+				return stream.readAllBytes();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	};
+
+	private final String name;
+	private final long latencyMillis;
+	private final Server server;
+	private final ScheduledExecutorService scheduler;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private final AtomicLong calls = new AtomicLong();
+
+	StandInPeer(final String name, final long latencyMillis) throws IOException {
+		this.name = name;
+		this.latencyMillis = latencyMillis;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			var thread = new Thread(runnable, "stand-in-" + name);
+			thread.setDaemon(true);
+			return thread;
+		});
+		var service = ServerServiceDefinition.builder("gateway.Gateway")
+				.addMethod(method(EVALUATE_METHOD), this::answer)
+				.addMethod(method(EndorsementLimiter.ENDORSE_METHOD), this::answer)
+				.build();
+		this.server = InProcessServerBuilder.forName(name).addService(service).build().start();
+	}
+
+	private static MethodDescriptor<byte[], byte[]> method(final String fullMethodName) {
+		return MethodDescriptor.<byte[], byte[]>newBuilder()
+				.setType(MethodDescriptor.MethodType.UNARY)
+				.setFullMethodName(fullMethodName)
+				.setRequestMarshaller(BYTES)
+				.setResponseMarshaller(BYTES)
+				.build();
+	}
+
+	private ServerCall.Listener<byte[]> answer(final ServerCall<byte[], byte[]> call, final Metadata headers) {
+		call.request(1);
+		return new ServerCall.Listener<>() {
+			@Override
+			public void onMessage(final byte[] request) {
+				calls.incrementAndGet();
+				peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				scheduler.schedule(() -> {
+					inFlight.decrementAndGet();
+					call.sendHeaders(new Metadata());
+					call.sendMessage(request);
+					call.close(Status.OK, new Metadata());
+				}, latencyMillis, TimeUnit.MILLISECONDS);
+			}
+		};
+	}
+
+	/**
+	 * Opens a channel to the stand-in.
+	 */
+	ManagedChannel newChannel(final ClientInterceptor... interceptors) {
+		return InProcessChannelBuilder.forName(name).intercept(interceptors).build();
+	}
+
+	/**
+	 * An evaluator that sends the function and its arguments to the Evaluate method of the
+	 * stand-in and returns them as the JSON result.
+	 */
+	static EvaluateCache.Evaluator evaluator(final Channel channel) {
+		return (function, args) -> {
+			JSONObject request = new JSONObject().put("function", function).put("args", new JSONArray(Arrays.asList(args)));
+			return call(channel, EVALUATE_METHOD, request.toString().getBytes(StandardCharsets.UTF_8));
+		};
+	}
+
+	/**
+	 * Makes a unary call, blocking the calling thread until it closes.
+	 *
+	 * @throws io.grpc.StatusRuntimeException if the call fails
+	 */
+	static byte[] call(final Channel channel, final String fullMethodName, final byte[] request) {
+		CompletableFuture<byte[]> response = new CompletableFuture<>();
+		ClientCall<byte[], byte[]> call = channel.newCall(method(fullMethodName), CallOptions.DEFAULT);
+		call.start(new ClientCall.Listener<>() {
+			private byte[] message;
+
+			@Override
+			public void onMessage(final byte[] value) {
+				message = value;
+			}
+
+			@Override
+			public void onClose(final Status status, final Metadata trailers) {
+				if (status.isOk()) {
+					response.complete(message);
+				} else {
+					response.completeExceptionally(status.asRuntimeException(trailers));
+				}
+			}
+		}, new Metadata());
+		call.request(1);
+		call.sendMessage(request);
+		call.halfClose();
+		try {
+			return response.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			call.cancel("interrupted", e);
+			throw Status.CANCELLED.withCause(e).asRuntimeException();
+		} catch (ExecutionException e) {
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	/**
+	 * The calls answered and the peak of calls in flight at the stand-in.
+	 */
+	JSONObject stats() {
+		return new JSONObject().put("calls", calls.get()).put("peakInFlight", peakInFlight.get());
+	}
+
+	@Override
+	public void close() throws InterruptedException {
+		server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+		scheduler.shutdownNow();
+	}
+}
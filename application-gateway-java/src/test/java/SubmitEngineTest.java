@@ -0,0 +1,101 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.Status;
+
+import org.hyperledger.fabric.client.EndorseException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+public final class SubmitEngineTest {
+
+	@Test
+	void blocksTheProducerAtTheLimitOfTransactionsInFlight() throws Exception {
+		var commits = new CountDownLatch(1);
+		try (var engine = new SubmitEngine("test", 2)) {
+			var first = engine.submit(() -> fakeTransaction("tx1", true, commits));
+			var second = engine.submit(() -> fakeTransaction("tx2", true, commits));
+			var producer = new Thread(() -> {
+				try {
+					engine.submit(() -> fakeTransaction("tx3", true, commits));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			producer.start();
+			producer.join(200);
+			assertTrue(producer.isAlive());
+
+			commits.countDown();
+			producer.join();
+			engine.drain();
+			assertEquals("tx1", new String(SubmitEngine.await(first), StandardCharsets.UTF_8));
+			assertEquals("tx2", new String(SubmitEngine.await(second), StandardCharsets.UTF_8));
+			assertEquals(2, engine.stats().getInt("peakInFlight"));
+			assertEquals(3L, engine.stats().getLong("committed"));
+		}
+	}
+
+	@Test
+	void failsTheFuturesOfInvalidTransactionsAndFailedEndorsements() throws Exception {
+		var commits = new CountDownLatch(0);
+		try (var engine = new SubmitEngine("test", 2)) {
+			var invalid = engine.submit(() -> fakeTransaction("tx1", false, commits));
+			var endorsement = engine.submit(() -> {
+				throw new EndorseException("tx2", Status.UNAVAILABLE.asRuntimeException());
+			});
+
+			var commitError = assertThrows(GatewayException.class, () -> SubmitEngine.await(invalid));
+			assertEquals(Status.Code.ABORTED, commitError.getStatus().getCode());
+			assertEquals(EndorseException.class, SubmitEngine.causeOf(endorsement.handle((result, error) -> error).join()).getClass());
+			engine.drain();
+			assertEquals(0L, engine.stats().getLong("committed"));
+			assertEquals(2L, engine.stats().getLong("failed"));
+		}
+	}
+
+	/**
+	 * A submitted transaction whose result is its ID and whose commit status is available once
+	 * commits is counted down. Proxies keep the fakes independent of the rest of the API.
+	 */
+	private static SubmittedTransaction fakeTransaction(final String transactionId, final boolean valid, final CountDownLatch commits) {
+		Class<?> statusType = org.hyperledger.fabric.client.Status.class;
+		var status = Proxy.newProxyInstance(statusType.getClassLoader(), new Class<?>[] {statusType}, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "isSuccessful":
+					return valid;
+				case "getBlockNumber":
+					return 1L;
+				case "getTransactionId":
+					return transactionId;
+				default:
+					// the validation code, VALID or the first invalid one
+					return method.getReturnType().isEnum() ? method.getReturnType().getEnumConstants()[valid ? 0 : 1] : null;
+			}
+		});
+		var transaction = Proxy.newProxyInstance(SubmittedTransaction.class.getClassLoader(), new Class<?>[] {SubmittedTransaction.class}, (proxy, method, args) -> {
+			switch (method.getName()) {
+				case "getResult":
+					return transactionId.getBytes(StandardCharsets.UTF_8);
+				case "getTransactionId":
+					return transactionId;
+				case "getStatus":
+					commits.await();
+					return status;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		});
+		return (SubmittedTransaction) transaction;
+	}
+}
@@ -0,0 +1,106 @@
+#!/usr/bin/env python3
+"""
+Measures patient query latency against collection size on a local CouchDB.
+
+The chaincode's private data lives in a CouchDB database per collection, so this seeds a
+stand-in database with asset documents shaped like the JSON-encoded medCollection records
+and times the same _find queries QueryAssetByPatient and QueryAssetByPatientPaged send,
+with and without the dataSubject index from META-INF.
+
+    docker run -d -p 5984:5984 -e COUCHDB_USER=admin -e COUCHDB_PASSWORD=adminpw couchdb:3.3
+    python3 couchdb_index_bench.py --sizes 1000 10000 100000 1000000
+"""
+
+import argparse
+import base64
+import json
+import statistics
+import time
+import urllib.error
+import urllib.request
+
+INDEX = "../chaincode-java/META-INF/statedb/couchdb/collections/medCollection/indexes/dataSubject_index.json"
+PATIENTS = 1000
+
+
+def request(base, auth, method, path, body=None):
+    data = json.dumps(body).encode() if body is not None else None
+    req = urllib.request.Request(base + path, data=data, method=method)
+    req.add_header("Content-Type", "application/json")
+    req.add_header("Authorization", "Basic " + auth)
+    try:
+        with urllib.request.urlopen(req) as resp:
+            return json.loads(resp.read() or b"{}")
+    except urllib.error.HTTPError as err:
+        if err.code == 404 and method == "DELETE":
+            return {}
+        raise
+
+
+def seed(base, auth, db, size):
+    request(base, auth, "DELETE", "/" + db)
+    request(base, auth, "PUT", "/" + db)
+    batch = []
+    for i in range(size):
+        batch.append({
+            "_id": "phi_%08d" % i,
+            "assetID": "phi_%08d" % i,
+            "dataSubject": "patient%d" % (i % PATIENTS),
+            "pointer": "QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG",
+            "filekey": "Ag8fJ3k2b0Zs",
+            "version": 1,
+            "owner": "x509::CN=owner,OU=client,O=Hyperledger::CN=ca.org1.example.com,O=org1.example.com",
+            "ownerOrg": "Org1MSP",
+            "acl": ["Org1MSP", "Org2MSP"],
+            "schemaVersion": 2,
+        })
+        if len(batch) == 10000:
+            request(base, auth, "POST", "/%s/_bulk_docs" % db, {"docs": batch})
+            batch = []
+    if batch:
+        request(base, auth, "POST", "/%s/_bulk_docs" % db, {"docs": batch})
+
+
+def time_query(base, auth, db, query, runs):
+    samples = []
+    for _ in range(runs):
+        start = time.perf_counter()
+        request(base, auth, "POST", "/%s/_find" % db, query)
+        samples.append((time.perf_counter() - start) * 1000)
+    return statistics.median(samples), max(samples)
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--url", default="http://localhost:5984")
+    parser.add_argument("--user", default="admin")
+    parser.add_argument("--password", default="adminpw")
+    parser.add_argument("--sizes", type=int, nargs="+", default=[1000, 10000, 100000, 1000000])
+    parser.add_argument("--runs", type=int, default=20)
+    args = parser.parse_args()
+
+    auth = base64.b64encode(("%s:%s" % (args.user, args.password)).encode()).decode()
+    with open(INDEX) as f:
+        index = json.load(f)
+
+    full = {"selector": {"dataSubject": "patient7"}, "limit": 100000}
+    paged = {
+        "selector": {"dataSubject": "patient7", "assetID": {"$gt": ""}},
+        "sort": [{"dataSubject": "asc"}, {"assetID": "asc"}],
+        "limit": 51,
+    }
+
+    print("%10s  %22s  %22s  %22s" % ("assets", "full scan ms (med/max)", "indexed ms (med/max)", "paged ms (med/max)"))
+    for size in args.sizes:
+        db = "bench_medcollection_%d" % size
+        seed(base=args.url, auth=auth, db=db, size=size)
+        scan = time_query(args.url, auth, db, full, args.runs)
+        request(args.url, auth, "POST", "/%s/_index" % db, index)
+        indexed = time_query(args.url, auth, db, full, args.runs)
+        page = time_query(args.url, auth, db, paged, args.runs)
+        print("%10d  %10.1f / %9.1f  %10.1f / %9.1f  %10.1f / %9.1f" % (size, scan[0], scan[1], indexed[0], indexed[1], page[0], page[1]))
+        request(args.url, auth, "DELETE", "/" + db)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,26 @@
+'use strict';
+
+const { WorkloadModuleBase } = require('@hyperledger/caliper-core');
+
+class QueryAssetByPatientPagedWorkload extends WorkloadModuleBase {
+    constructor() {
+        super();
+    }
+
+    async submitTransaction() {
+        const myArgs = {
+            contractId: 'medcare',
+            contractFunction: 'QueryAssetByPatientPaged',
+            contractArguments: ['cbirm1', '50', ''],
+            readOnly: true,
+        };
+
+        await this.sutAdapter.sendRequests(myArgs);
+    }
+}
+
+function createWorkloadModule() {
+    return new QueryAssetByPatientPagedWorkload();
+}
+
+module.exports.createWorkloadModule = createWorkloadModule;
@@ -0,0 +1,27 @@
+'use strict';
+
+const { WorkloadModuleBase } = require('@hyperledger/caliper-core');
+
+class ReadAssetFastWorkload extends WorkloadModuleBase {
+    constructor() {
+        super();
+    }
+
+    async submitTransaction() {
+        const assetID = 'phi_mock0';
+        const myArgs = {
+            contractId: 'medcare',
+            contractFunction: 'ReadAssetWithReceipt',
+            contractArguments: [assetID],
+            readOnly: true,
+        };
+
+        await this.sutAdapter.sendRequests(myArgs);
+    }
+}
+
+function createWorkloadModule() {
+    return new ReadAssetFastWorkload();
+}
+
+module.exports.createWorkloadModule = createWorkloadModule;
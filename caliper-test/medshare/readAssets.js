@@ -0,0 +1,35 @@
+'use strict';
+
+const { WorkloadModuleBase } = require('@hyperledger/caliper-core');
+
+/**
+ * Reads the assets phi_mock0 .. phi_mock<count-1> in one ReadAssets transaction, to be
+ * compared with a round of count ReadAsset transactions.
+ */
+class ReadAssetsWorkload extends WorkloadModuleBase {
+    constructor() {
+        super();
+    }
+
+    async initializeWorkloadModule(workerIndex, totalWorkers, roundIndex, roundArguments, sutAdapter, sutContext) {
+        await super.initializeWorkloadModule(workerIndex, totalWorkers, roundIndex, roundArguments, sutAdapter, sutContext);
+        const count = this.roundArguments.count || 20;
+        this.assetIDs = Array.from({ length: count }, (_, i) => `phi_mock${i}`);
+    }
+
+    async submitTransaction() {
+        const myArgs = {
+            contractId: 'medcare',
+            contractFunction: 'ReadAssets',
+            contractArguments: [JSON.stringify(this.assetIDs)],
+        };
+
+        await this.sutAdapter.sendRequests(myArgs);
+    }
+}
+
+function createWorkloadModule() {
+    return new ReadAssetsWorkload();
+}
+
+module.exports.createWorkloadModule = createWorkloadModule;
@@ -0,0 +1,78 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hyperledger.fabric.contract.annotation.Property;
+import org.junit.jupiter.api.Test;
+
+public final class AccessControlListTest {
+
+    @Test
+    public void ignoresDuplicateGrants() {
+        AccessControlList acl = new AccessControlList(Arrays.asList("Org2MSP", "Org1MSP", "Org2MSP"));
+
+        assertThat(acl.add("Org1MSP")).isFalse();
+        assertThat(acl.size()).isEqualTo(2);
+        assertThat(acl.entries()).containsExactly("Org1MSP", "Org2MSP");
+    }
+
+    @Test
+    public void revokesPrincipalCompletely() {
+        AccessControlList acl = new AccessControlList(Arrays.asList("Org1MSP", "Org2MSP", "Org1MSP"));
+
+        assertThat(acl.remove("Org1MSP")).isTrue();
+        assertThat(acl.contains("Org1MSP")).isFalse();
+        assertThat(acl.remove("Org1MSP")).isFalse();
+    }
+
+    @Test
+    public void internsPrincipalNames() {
+        AccessControlList first = new AccessControlList(Arrays.asList(new String("Org7MSP")));
+        AccessControlList second = new AccessControlList(Arrays.asList(new String("Org7MSP")));
+
+        assertThat(first.entries().get(0)).isSameAs(second.entries().get(0));
+    }
+
+    @Test
+    public void rejectsEmptyAndNullPrincipals() {
+        AccessControlList acl = new AccessControlList();
+
+        assertThat(acl.add("")).isFalse();
+        assertThat(acl.add(null)).isFalse();
+        assertThat(acl.contains(null)).isFalse();
+        assertThat(acl.size()).isZero();
+    }
+
+    @Test
+    public void assetDescribesAclAsListOfStrings() throws NoSuchFieldException {
+        // the contract metadata is built from the type of the annotated field
+        Field field = Asset.class.getDeclaredField("acl");
+
+        assertThat(field.isAnnotationPresent(Property.class)).isTrue();
+        assertThat(field.getType()).isEqualTo(List.class);
+        assertThat(((ParameterizedType) field.getGenericType()).getActualTypeArguments()).containsExactly(String.class);
+    }
+
+    @Test
+    public void assetListsAclChanges() {
+        Asset asset = new Asset("pointer", "a1", "patient1", 1, "owner", "key", new ArrayList<>(Arrays.asList("Org2MSP")));
+        assertThat(asset.getAcl()).containsExactly("Org2MSP");
+
+        asset.addToAcl("Org1MSP");
+        assertThat(asset.getAcl()).containsExactly("Org1MSP", "Org2MSP");
+
+        asset.removeFromAcl("Org2MSP");
+        assertThat(asset.getAcl()).containsExactly("Org1MSP");
+        assertThat(asset.isOnAcl("Org2MSP")).isFalse();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public final class AccessCounterTest {
+
+    private static KeyValue count(final String id, final String mspId, final String txId, final long count) {
+        KeyValue kv = mock(KeyValue.class);
+        when(kv.getKey()).thenReturn(new CompositeKey(AccessCounter.OBJECT_TYPE, "PATIENT", id, mspId, txId).toString());
+        when(kv.getValue()).thenReturn(Long.toString(count).getBytes());
+        return kv;
+    }
+
+    @Test
+    public void writesTheIncrementsOfTheTransactionWithoutReading() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getTxId()).thenReturn("tx1");
+        AccessCounter counter = new AccessCounter(stub);
+
+        counter.countRead("phi1", "cbirm1", "Org1MSP");
+        counter.countRead("phi2", "cbirm1", "Org1MSP");
+        counter.flush();
+
+        verify(stub).putStringState(AccessCounter.key(AccessCounter.Scope.ASSET, "phi1", "Org1MSP", "tx1"), "1");
+        verify(stub).putStringState(AccessCounter.key(AccessCounter.Scope.ASSET, "phi2", "Org1MSP", "tx1"), "1");
+        verify(stub).putPrivateData(ASSET_COLLECTION_NAME, AccessCounter.key(AccessCounter.Scope.PATIENT, "cbirm1", "Org1MSP", "tx1"), "2".getBytes(UTF_8));
+        verify(stub, times(2)).putStringState(anyString(), anyString());
+        verify(stub, never()).putStringState(contains("cbirm1"), anyString());
+        verify(stub, never()).getStringState(anyString());
+        verify(stub, never()).getPrivateData(anyString(), anyString());
+    }
+
+    @Test
+    public void sumsCountsPerOrganization() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        // a shard counter written before counts were kept per transaction sums the same way
+        KeyValue first = count("cbirm1", "Org1MSP", "7", 3);
+        KeyValue second = count("cbirm1", "Org1MSP", "tx1", 2);
+        KeyValue third = count("cbirm1", "Org2MSP", "tx2", 4);
+        MockResultsIterator<KeyValue> counts = MockResultsIterator.of(first, second, third);
+        when(stub.getPrivateDataByPartialCompositeKey(ASSET_COLLECTION_NAME, AccessCounter.OBJECT_TYPE, "PATIENT", "cbirm1")).thenReturn(counts);
+
+        JSONObject stats = new AccessCounter(stub).stats(AccessCounter.Scope.PATIENT, "cbirm1");
+
+        assertThat(stats.getLong("total")).isEqualTo(9);
+        assertThat(stats.getJSONObject("byOrg").getLong("Org1MSP")).isEqualTo(5);
+        assertThat(stats.getJSONObject("byOrg").getLong("Org2MSP")).isEqualTo(4);
+        assertThat(counts.isClosed()).isTrue();
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class AccessJournalTest {
+
+    private static KeyValue journalEntry(final String txId, final long timestamp, final String record) {
+        KeyValue kv = mock(KeyValue.class);
+        String json = String.format("{\"txId\":\"%s\",\"timestamp\":%d,\"record\":\"%s\"}", txId, timestamp, record);
+        when(kv.getValue()).thenReturn(json.getBytes(UTF_8));
+        return kv;
+    }
+
+    private static KeyModification legacyEntry(final String txId, final long timestamp, final String record) {
+        KeyModification km = mock(KeyModification.class);
+        when(km.getTxId()).thenReturn(txId);
+        when(km.getTimestamp()).thenReturn(Instant.ofEpochMilli(timestamp));
+        when(km.getValue()).thenReturn(record.getBytes(UTF_8));
+        return km;
+    }
+
+    @Nested
+    class Append {
+
+        @Test
+        public void writesUnderTransactionScopedKey() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getTxTimestamp()).thenReturn(Instant.ofEpochMilli(1000L));
+
+            new AccessJournal(stub).append("asset1", AccessJournal.Event.READ, "Asset asset1 read by Org1MSP");
+
+            ArgumentCaptor<String> value = ArgumentCaptor.forClass(String.class);
+            verify(stub).putStringState(eq(AccessJournal.entryKey("asset1", AccessJournal.Event.READ, "tx1")), value.capture());
+            JSONObject json = new JSONObject(value.getValue());
+            assertThat(json.getString("txId")).isEqualTo("tx1");
+            assertThat(json.getLong("timestamp")).isEqualTo(1000L);
+            assertThat(json.getString("record")).isEqualTo("Asset asset1 read by Org1MSP");
+        }
+
+        @Test
+        public void differentTransactionsUseDifferentKeys() {
+            assertThat(AccessJournal.entryKey("asset1", AccessJournal.Event.READ, "tx1"))
+                    .isNotEqualTo(AccessJournal.entryKey("asset1", AccessJournal.Event.READ, "tx2"));
+        }
+    }
+
+    @Nested
+    class Read {
+
+        @Test
+        public void mergesJournalAndLegacyRecordsInTimeOrder() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            List<KeyValue> journal = Arrays.asList(journalEntry("tx3", 3000L, "third"), journalEntry("tx1", 1000L, "first"));
+            List<KeyModification> legacy = Arrays.asList(legacyEntry("tx2", 2000L, "second"));
+            when(stub.getStateByPartialCompositeKey(AccessJournal.OBJECT_TYPE, "asset1", "READ"))
+                    .thenReturn(new MockResultsIterator<>(journal));
+            when(stub.getStateByPartialCompositeKey(AccessJournal.REFERENCE_OBJECT_TYPE, "asset1", "READ")).thenReturn(MockResultsIterator.of());
+            when(stub.getHistoryForKey("asset1_read")).thenReturn(new MockResultsIterator<>(legacy));
+
+            List<String> records = new ArrayList<>();
+            for (AccessJournal.Entry entry : new AccessJournal(stub).read("asset1", AccessJournal.Event.READ)) {
+                records.add(entry.getRecord());
+            }
+
+            assertThat(records).containsExactly("first", "second", "third");
+        }
+
+        @Test
+        public void includesBatchRecordsOfTheAsset() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(stub.getTxId()).thenReturn("tx2");
+            when(stub.getTxTimestamp()).thenReturn(Instant.ofEpochMilli(2000L));
+            new AccessJournal(stub).appendBatch(Arrays.asList("asset1", "asset2"), AccessJournal.Event.CREATION, "2 assets created");
+            String batchKey = AccessJournal.batchKey(AccessJournal.Event.CREATION, "tx2");
+            ArgumentCaptor<String> value = ArgumentCaptor.forClass(String.class);
+            verify(stub).putStringState(eq(batchKey), value.capture());
+            verify(stub).putStringState(AccessJournal.referenceKey("asset1", AccessJournal.Event.CREATION, "tx2"), batchKey);
+            verify(stub).putStringState(AccessJournal.referenceKey("asset2", AccessJournal.Event.CREATION, "tx2"), batchKey);
+            KeyValue reference = mock(KeyValue.class);
+            when(reference.getValue()).thenReturn(batchKey.getBytes(UTF_8));
+            when(stub.getStringState(batchKey)).thenReturn(value.getValue());
+
+            KeyValue created = journalEntry("tx1", 1000L, "Asset asset1 created");
+
+            when(stub.getStateByPartialCompositeKey(AccessJournal.OBJECT_TYPE, "asset1", "CREATION")).thenReturn(MockResultsIterator.of(created));
+            when(stub.getStateByPartialCompositeKey(AccessJournal.REFERENCE_OBJECT_TYPE, "asset1", "CREATION")).thenReturn(MockResultsIterator.of(reference));
+            when(stub.getHistoryForKey("asset1_creation")).thenReturn(MockResultsIterator.of());
+
+            List<String> records = new ArrayList<>();
+            for (AccessJournal.Entry entry : new AccessJournal(stub).read("asset1", AccessJournal.Event.CREATION)) {
+                records.add(entry.getRecord());
+            }
+
+            assertThat(records).containsExactly("Asset asset1 created", "2 assets created");
+            verify(stub, never()).getStateByPartialCompositeKey(AccessJournal.BATCH_OBJECT_TYPE, "CREATION");
+        }
+    }
+
+    @Test
+    public void mapsRecordKeysToEvents() {
+        assertThat(AccessJournal.eventOf("asset1_read")).isEqualTo(AccessJournal.Event.READ);
+        assertThat(AccessJournal.eventOf("asset1_deletion")).isEqualTo(AccessJournal.Event.DELETION);
+        assertThat(AccessJournal.eventOf("Org1MSP_public_key")).isNull();
+        assertThat(AccessJournal.assetOf("asset1_read", AccessJournal.Event.READ)).isEqualTo("asset1");
+    }
+}
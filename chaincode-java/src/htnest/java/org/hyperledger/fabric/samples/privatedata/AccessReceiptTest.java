@@ -0,0 +1,80 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+public final class AccessReceiptTest {
+
+    private static final byte[] KEY = new byte[AccessReceipt.MIN_KEY_LENGTH];
+    private static final Asset ASSET = new Asset("pointer", "phi1", "cbirm1", 1, "owner", "key", Arrays.asList("Org1MSP"));
+
+    private static ChaincodeStub stub(final byte[] key) {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AccessReceipt.keyKey())).thenReturn(key);
+        when(stub.getTxId()).thenReturn("tx1");
+        when(stub.getTxTimestamp()).thenReturn(Instant.ofEpochMilli(1000L));
+        return stub;
+    }
+
+    private static JSONObject issue() {
+        IdentityResolver.Caller caller = new IdentityResolver.Caller("x509::CN=doctor1::CN=ca", "Org1MSP", "doctor", "doctor1");
+        return AccessReceipt.issue(stub(KEY), caller, ASSET);
+    }
+
+    @Test
+    public void issuesVerifiableReceipt() {
+        JSONObject receipt = issue();
+
+        assertThat(receipt.getString("receiptId")).isEqualTo("tx1");
+        assertThat(receipt.getString("mspId")).isEqualTo("Org1MSP");
+        assertThat(receipt.getString("reader")).isEqualTo("doctor1");
+        assertThat(receipt.getLong("timestamp")).isEqualTo(1000L);
+        assertThat(AccessReceipt.verify(KEY, receipt)).isTrue();
+    }
+
+    @Test
+    public void rejectsAlteredReceipt() {
+        JSONObject receipt = issue();
+
+        assertThat(AccessReceipt.verify(KEY, new JSONObject(receipt.toString()).put("assetID", "phi2"))).isFalse();
+        assertThat(AccessReceipt.verify(KEY, new JSONObject(receipt.toString()).put("timestamp", 2000L))).isFalse();
+        assertThat(AccessReceipt.verify(KEY, new JSONObject(receipt.toString()).put("dataSubject", "other"))).isFalse();
+        JSONObject unsigned = new JSONObject(receipt.toString());
+        unsigned.remove("mac");
+        assertThat(AccessReceipt.verify(KEY, unsigned)).isFalse();
+    }
+
+    @Test
+    public void rejectsReceiptOfOtherKey() {
+        byte[] otherKey = Arrays.copyOf(KEY, KEY.length);
+        otherKey[0] = 1;
+
+        assertThat(AccessReceipt.verify(otherKey, issue())).isFalse();
+    }
+
+    @Test
+    public void failsWithoutKey() {
+        IdentityResolver.Caller caller = new IdentityResolver.Caller("x509::CN=doctor1::CN=ca", "Org1MSP", "doctor", "doctor1");
+
+        Throwable thrown = catchThrowable(() -> {
+            AccessReceipt.issue(stub(null), caller, ASSET);
+        });
+
+        assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("RECEIPTS_DISABLED".getBytes());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class AssetAclTest {
+
+    private static Asset asset(final String... embedded) {
+        Asset asset = new Asset("pointer", "phi1", "cbirm1", 1, "owner", "key", new ArrayList<>(Arrays.asList(embedded)));
+        asset.setAclGeneration("tx0");
+        return asset;
+    }
+
+    private static KeyValue entry(final String principal, final String generation) {
+        KeyValue kv = mock(KeyValue.class);
+        when(kv.getKey()).thenReturn(AssetAcl.key("phi1", principal));
+        when(kv.getValue()).thenReturn(generation.getBytes(UTF_8));
+        return kv;
+    }
+
+    @Test
+    public void checksMembershipWithPointLookup() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetAcl.key("phi1", "Org2MSP"))).thenReturn("tx0".getBytes(UTF_8));
+        AssetAcl acl = new AssetAcl(stub);
+
+        assertThat(acl.contains(asset(), "Org2MSP")).isTrue();
+        assertThat(acl.contains(asset(), "Org3MSP")).isFalse();
+        assertThat(acl.contains(asset("Org3MSP"), "Org3MSP")).isTrue();
+    }
+
+    @Test
+    public void ignoresKeysOfAnEarlierGeneration() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetAcl.key("phi1", "Org2MSP"))).thenReturn("tx-deleted".getBytes(UTF_8));
+
+        assertThat(new AssetAcl(stub).contains(asset(), "Org2MSP")).isFalse();
+    }
+
+    @Test
+    public void grantWritesThePrincipalKeyWithoutReading() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+
+        assertThat(new AssetAcl(stub).grant(asset(), "Org2MSP")).isTrue();
+
+        verify(stub).putPrivateData(ASSET_COLLECTION_NAME, AssetAcl.key("phi1", "Org2MSP"), "tx0".getBytes(UTF_8));
+        verify(stub, never()).getPrivateData(anyString(), anyString());
+        verify(stub, never()).putPrivateData(eq(ASSET_COLLECTION_NAME), eq("phi1"), any(byte[].class));
+    }
+
+    @Test
+    public void grantOnLegacyAssetUsesTheEmptyGeneration() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        Asset legacy = new Asset("pointer", "phi1", "cbirm1", 1, "owner", "key", new ArrayList<>());
+
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetAcl.key("phi1", "Org2MSP"))).thenReturn(new byte[0]);
+
+        new AssetAcl(stub).grant(legacy, "Org2MSP");
+
+        verify(stub).putPrivateData(ASSET_COLLECTION_NAME, AssetAcl.key("phi1", "Org2MSP"), new byte[0]);
+        assertThat(new AssetAcl(stub).contains(legacy, "Org2MSP")).isTrue();
+    }
+
+    @Test
+    public void grantOfEmbeddedPrincipalChangesNothing() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+
+        assertThat(new AssetAcl(stub).grant(asset("Org2MSP"), "Org2MSP")).isFalse();
+
+        verify(stub, never()).putPrivateData(anyString(), anyString(), any(byte[].class));
+    }
+
+    @Test
+    public void revokeDeletesThePrincipalKeyWithoutReading() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+
+        new AssetAcl(stub).revoke(asset(), "Org2MSP");
+
+        verify(stub).delPrivateData(ASSET_COLLECTION_NAME, AssetAcl.key("phi1", "Org2MSP"));
+        verify(stub, never()).getPrivateData(anyString(), anyString());
+        verify(stub, never()).putPrivateData(anyString(), anyString(), any(byte[].class));
+    }
+
+    @Test
+    public void revokeOfEmbeddedPrincipalMigratesTheAsset() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        Asset legacy = asset("Org1MSP", "Org2MSP");
+        legacy.setOwnerOrg("Org1MSP");
+
+        new AssetAcl(stub).revoke(legacy, "Org2MSP");
+
+        verify(stub).putPrivateData(ASSET_COLLECTION_NAME, AssetAcl.key("phi1", "Org1MSP"), "tx0".getBytes(UTF_8));
+        verify(stub, never()).putPrivateData(eq(ASSET_COLLECTION_NAME), eq(AssetAcl.key("phi1", "Org2MSP")), any(byte[].class));
+        ArgumentCaptor<byte[]> rewritten = ArgumentCaptor.forClass(byte[].class);
+        verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME), eq("phi1"), rewritten.capture());
+        assertThat(Asset.deserialize(rewritten.getValue()).getAcl()).isEmpty();
+        assertThat(Asset.deserialize(rewritten.getValue()).getAclGeneration()).isEqualTo("tx0");
+    }
+
+    @Test
+    public void migrateSkipsAssetsWithoutEmbeddedEntries() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+
+        assertThat(new AssetAcl(stub).migrate(asset())).isFalse();
+
+        verify(stub, never()).putPrivateData(anyString(), anyString(), any(byte[].class));
+    }
+
+    @Test
+    public void listsEmbeddedAndKeyedPrincipalsOfTheCurrentGeneration() throws Exception {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        MockResultsIterator<KeyValue> entries = MockResultsIterator.of(entry("Org2MSP", "tx0"), entry("Org3MSP", "tx0"), entry("Org4MSP", "tx-deleted"));
+        when(stub.getPrivateDataByPartialCompositeKey(ASSET_COLLECTION_NAME, AssetAcl.OBJECT_TYPE, "phi1")).thenReturn(entries);
+
+        assertThat(new AssetAcl(stub).list(asset("Org1MSP", "Org2MSP"))).containsExactly("Org1MSP", "Org2MSP", "Org3MSP");
+        assertThat(entries.isClosed()).isTrue();
+    }
+
+    @Test
+    public void moveOutStartsAGenerationAndKeepsTheAclOfTheAsset() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getTxId()).thenReturn("tx1");
+        Asset asset = new Asset("pointer", "phi1", "cbirm1", 1, "owner", "key", new ArrayList<>(Arrays.asList("Org1MSP")));
+
+        new AssetAcl(stub).moveOut(asset);
+
+        verify(stub).putPrivateData(ASSET_COLLECTION_NAME, AssetAcl.key("phi1", "Org1MSP"), "tx1".getBytes(UTF_8));
+        assertThat(asset.getAclGeneration()).isEqualTo("tx1");
+        assertThat(asset.getAcl()).containsExactly("Org1MSP");
+        assertThat(Asset.deserialize(asset.serializeWithoutAcl()).getAcl()).isEmpty();
+    }
+}
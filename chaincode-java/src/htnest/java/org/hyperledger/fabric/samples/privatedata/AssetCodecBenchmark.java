@@ -0,0 +1,78 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+
+/**
+ * Compares encode/decode throughput of the asset codec with the bean serialization it
+ * replaces, and of reading a summary with decoding the whole asset. Run the main method
+ * from the test classpath; arguments are the number of ACL entries and the number of
+ * iterations (defaults 3 and 200000).
+ */
+public final class AssetCodecBenchmark {
+
+    private AssetCodecBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+        int aclSize = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        List<String> acl = new ArrayList<>();
+        for (int i = 0; i < aclSize; i++) {
+            acl.add("Org" + (i + 1) + "MSP");
+        }
+        Asset asset = new Asset("QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG", "phi_mock0", "cbirm1", 1,
+                "x509::CN=owner,OU=client,O=Hyperledger,ST=North Carolina,C=US::CN=ca.org1.example.com,O=org1.example.com,L=Durham,ST=North Carolina,C=US",
+                "Ag8fJ3k2b0ZsQ1x9vT2mL0pW8eR7uY6iO5pA4sD3fG2hJ1kL", acl);
+
+        byte[] json = AssetCodec.encode(asset);
+        System.out.printf("size: %d bytes%n", json.length);
+
+        // warm up all paths before measuring
+        run(asset, json, iterations / 10);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            new JSONObject(asset).toString().getBytes();
+        }
+        report("bean json encode", iterations, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            AssetCodec.encode(asset);
+        }
+        report("codec encode", iterations, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            AssetCodec.decode(json);
+        }
+        report("codec decode", iterations, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            AssetCodec.summarize(json);
+        }
+        report("codec summarize", iterations, System.nanoTime() - start);
+    }
+
+    private static void run(final Asset asset, final byte[] json, final int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            new JSONObject(asset).toString();
+            AssetCodec.encode(asset);
+            AssetCodec.decode(json);
+            AssetCodec.summarize(json);
+        }
+    }
+
+    private static void report(final String name, final int iterations, final long nanos) {
+        System.out.printf("%-18s %10.0f ops/s  %8.1f ns/op%n", name, iterations * 1e9 / nanos, (double) nanos / iterations);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public final class AssetCodecTest {
+
+    private static final String OWNER = "x509::CN=owner,OU=client,O=Hyperledger,ST=North Carolina,C=US::CN=ca.org1.example.com,O=org1.example.com,L=Durham,ST=North Carolina,C=US";
+
+    private static Asset sampleAsset() {
+        return new Asset("QmYwAPJzv5CZsnA625s3Xf2nemtYgPpHdWEz79ojWnPbdG", "phi_mock0", "cbirm1", 2, OWNER,
+                "Ag8fJ3k2b0Zs", new ArrayList<>(Arrays.asList("Org1MSP", "Org2MSP")));
+    }
+
+    private static void assertSameFields(final Asset actual, final Asset expected) {
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual.getPointer()).isEqualTo(expected.getPointer());
+        assertThat(actual.getFilekey()).isEqualTo(expected.getFilekey());
+        assertThat(actual.getAcl()).isEqualTo(expected.getAcl());
+    }
+
+    @Nested
+    class Json {
+
+        @Test
+        public void roundTrips() {
+            Asset asset = sampleAsset();
+
+            assertSameFields(AssetCodec.decode(AssetCodec.encode(asset)), asset);
+        }
+
+        @Test
+        public void roundTripsOwnerOrganization() {
+            Asset asset = sampleAsset();
+            asset.setOwnerOrg("Org1MSP");
+            asset.setOwnerName("owner");
+
+            Asset decoded = AssetCodec.decode(AssetCodec.encode(asset));
+
+            assertThat(decoded.getOwnerOrg()).isEqualTo("Org1MSP");
+            assertThat(decoded.getOwnerName()).isEqualTo("owner");
+            assertThat(decoded.getSchemaVersion()).isEqualTo(Asset.CURRENT_SCHEMA);
+        }
+
+        @Test
+        public void roundTripsEmptyValues() {
+            Asset asset = new Asset("", "asset1", "", 0, OWNER, "", Collections.emptyList());
+
+            Asset decoded = AssetCodec.decode(AssetCodec.encode(asset));
+
+            assertThat(decoded.getPointer()).isEmpty();
+            assertThat(decoded.getAcl()).isEmpty();
+        }
+
+        @Test
+        public void roundTripsNonAsciiValues() {
+            Asset asset = new Asset("p", "asset-\u00e9\u4e2d", "patient-\u00fc", 300, OWNER, "k",
+                    new ArrayList<>(Arrays.asList("Org1MSP")));
+
+            assertSameFields(AssetCodec.decode(AssetCodec.encode(asset)), asset);
+        }
+
+        @Test
+        public void rejectsTruncatedValue() {
+            byte[] encoded = AssetCodec.encode(sampleAsset());
+
+            Throwable thrown = catchThrowable(() -> {
+                AssetCodec.decode(Arrays.copyOf(encoded, encoded.length - 3));
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("DATA_ERROR".getBytes());
+        }
+    }
+
+    @Nested
+    class JsonFallback {
+
+        @Test
+        public void readsRecordsWrittenByBeanSerialization() {
+            Asset asset = sampleAsset();
+            // the format written by Asset.serialize() before the codec
+            byte[] legacy = new JSONObject(asset).toString().getBytes(UTF_8);
+
+            assertSameFields(AssetCodec.decode(legacy), asset);
+        }
+
+        @Test
+        public void readsJsonWithLeadingWhitespace() {
+            byte[] legacy = (" " + AssetCodec.toJson(sampleAsset()).toString()).getBytes(UTF_8);
+
+            assertSameFields(AssetCodec.decode(legacy), sampleAsset());
+        }
+
+        @Test
+        public void legacyRecordDerivesOwnerOrgUntilUpgraded() {
+            JSONObject json = AssetCodec.toJson(sampleAsset());
+            json.remove("schemaVersion");
+            json.remove("ownerOrg");
+            json.remove("ownerName");
+
+            Asset decoded = AssetCodec.decode(json.toString().getBytes(UTF_8));
+
+            assertThat(decoded.getSchemaVersion()).isEqualTo(Asset.LEGACY_SCHEMA);
+            assertThat(decoded.getOwnerOrg()).isEqualTo("Org1MSP");
+            assertThat(decoded.getOwnerName()).isEqualTo("owner");
+
+            Asset rewritten = AssetCodec.decode(decoded.serialize());
+
+            assertThat(rewritten.getSchemaVersion()).isEqualTo(Asset.CURRENT_SCHEMA);
+            assertThat(rewritten.getOwnerOrg()).isEqualTo("Org1MSP");
+        }
+
+        @Test
+        public void writesJsonDocuments() {
+            JSONObject written = new JSONObject(new String(AssetCodec.encode(sampleAsset()), UTF_8));
+
+            assertThat(written.getString("dataSubject")).isEqualTo("cbirm1");
+            assertThat(written.getString("assetID")).isEqualTo("phi_mock0");
+        }
+
+        @Test
+        public void stringDeserializeStillReadsJson() {
+            Asset asset = sampleAsset();
+
+            assertSameFields(Asset.deserialize(AssetCodec.toJson(asset).toString()), asset);
+        }
+    }
+
+    @Nested
+    class Summaries {
+
+        @Test
+        public void summarizesJsonAsset() {
+            Asset asset = sampleAsset();
+            asset.setOwnerOrg("Org2MSP");
+
+            AssetCodec.Summary summary = AssetCodec.summarize(AssetCodec.encode(asset));
+
+            assertThat(summary.getAssetID()).isEqualTo("phi_mock0");
+            assertThat(summary.getOwnerOrg()).isEqualTo("Org2MSP");
+        }
+
+        @Test
+        public void summarizesLegacyJsonFromOwnerDn() {
+            JSONObject json = AssetCodec.toJson(sampleAsset());
+            json.remove("ownerOrg");
+            // a key name inside a value must not be taken for the field
+            json.put("dataSubject", "\"assetID\":\"wrong\"");
+            json.put("assetID", "phi \"quoted\"");
+
+            AssetCodec.Summary summary = AssetCodec.summarize(json.toString().getBytes(UTF_8));
+
+            assertThat(summary.getAssetID()).isEqualTo("phi \"quoted\"");
+            assertThat(summary.getOwnerOrg()).isEqualTo("Org1MSP");
+        }
+
+        @Test
+        public void rejectsValueThatIsNotAnAsset() {
+            Throwable thrown = catchThrowable(() -> {
+                AssetCodec.summarize("{\"pointer\":\"p\"}".getBytes(UTF_8));
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("DATA_ERROR".getBytes());
+        }
+    }
+}
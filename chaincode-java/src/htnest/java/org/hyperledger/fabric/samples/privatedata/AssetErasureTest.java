@@ -0,0 +1,137 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class AssetErasureTest {
+
+    private static final IdentityResolver.Caller DOCTOR = new IdentityResolver.Caller("x509::CN=doctor1::CN=ca", "Org1MSP", "doctor", "doctor1");
+
+    private static KeyValue task(final String assetID, final String holder, final String status) {
+        KeyValue kv = mock(KeyValue.class);
+        when(kv.getKey()).thenReturn(AssetErasure.taskKey(assetID, holder));
+        when(kv.getValue()).thenReturn(new JSONObject().put("holder", holder).put("status", status).toString().getBytes());
+        return kv;
+    }
+
+    @Test
+    public void recordsDeletionUnderPointKeyWithPersonalDataInTheCollection() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getTxId()).thenReturn("tx1");
+        when(stub.getTxTimestamp()).thenReturn(Instant.ofEpochMilli(1000L));
+        Asset asset = new Asset("pointer", "phi1", "cbirm1", 1, "owner", "key", null);
+        asset.setOwnerOrg("Org1MSP");
+
+        AssetErasure.Record written = new AssetErasure(stub).recordDeletion(asset, DOCTOR);
+        ArgumentCaptor<String> record = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<byte[]> detail = ArgumentCaptor.forClass(byte[].class);
+        verify(stub).putStringState(eq(AssetErasure.deletionKey("phi1")), record.capture());
+        verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME), eq(AssetErasure.deletionDetailKey("phi1")), detail.capture());
+        when(stub.getStringState(AssetErasure.deletionKey("phi1"))).thenReturn(record.getValue());
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetErasure.deletionDetailKey("phi1"))).thenReturn(detail.getValue());
+        AssetErasure.Record deletion = new AssetErasure(stub).deletionOf("phi1");
+
+        assertThat(record.getValue()).doesNotContain("cbirm1").doesNotContain("doctor1");
+        assertThat(written.getDataSubject()).isEqualTo("cbirm1");
+        assertThat(deletion.getDataSubject()).isEqualTo("cbirm1");
+        assertThat(deletion.getOwnerOrg()).isEqualTo("Org1MSP");
+        assertThat(deletion.getIdName()).isEqualTo("doctor1");
+        assertThat(deletion.getTxId()).isEqualTo("tx1");
+        assertThat(deletion.getTimestamp()).isEqualTo(1000L);
+        verify(stub, never()).getHistoryForKey(anyString());
+    }
+
+    @Test
+    public void readsDeletionWithoutPersonalDataOncePurged() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        AssetErasure.Record written = new AssetErasure.Record("phi1", "cbirm1", "Org1MSP", "Org1MSP", "doctor1", "tx1", 0L);
+        when(stub.getStringState(AssetErasure.deletionKey("phi1"))).thenReturn(written.toPublicJson().toString());
+
+        new AssetErasure(stub).purgeDetails("phi1");
+        AssetErasure.Record deletion = new AssetErasure(stub).deletionOf("phi1");
+
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetErasure.deletionDetailKey("phi1"));
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetErasure.erasureDetailKey("phi1"));
+        assertThat(deletion.getOwnerOrg()).isEqualTo("Org1MSP");
+        assertThat(deletion.getDataSubject()).isNull();
+        assertThat(deletion.getIdName()).isNull();
+    }
+
+    @Test
+    public void recoversDeletionFromLegacyRecord() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        KeyModification older = mock(KeyModification.class);
+        when(older.getTxId()).thenReturn("tx1");
+        when(older.getTimestamp()).thenReturn(Instant.ofEpochMilli(1000L));
+        when(older.getValue()).thenReturn("Asset phi1 of someone was deleted by Org2MSP with id nurse1 from medCollection at t1".getBytes());
+        KeyModification latest = mock(KeyModification.class);
+        when(latest.getTxId()).thenReturn("tx2");
+        when(latest.getTimestamp()).thenReturn(Instant.ofEpochMilli(2000L));
+        when(latest.getValue()).thenReturn("Asset phi1 of cbirm1 was deleted by Org1MSP with id doctor1 from medCollection at t2".getBytes());
+        when(stub.getHistoryForKey("phi1_deletion")).thenReturn(MockResultsIterator.of(latest, older));
+        when(stub.getStateByPartialCompositeKey(anyString(), anyString())).thenReturn(MockResultsIterator.of());
+        when(stub.getStateByPartialCompositeKey(anyString(), anyString(), anyString())).thenReturn(MockResultsIterator.of());
+
+        AssetErasure.Record deletion = new AssetErasure(stub).deletionOf("phi1");
+
+        assertThat(deletion.getDataSubject()).isEqualTo("cbirm1");
+        assertThat(deletion.getOwnerOrg()).isEqualTo("Org1MSP");
+        assertThat(deletion.getIdName()).isEqualTo("doctor1");
+        assertThat(deletion.getTxId()).isEqualTo("tx2");
+    }
+
+    @Test
+    public void keepsConfirmedTasksWhenRequestedAgain() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getTxId()).thenReturn("tx2");
+        KeyValue confirmed = task("phi1", "Org2MSP", AssetErasure.CONFIRMED);
+        MockResultsIterator<KeyValue> tasks = MockResultsIterator.of(confirmed);
+        when(stub.getStateByPartialCompositeKey(AssetErasure.TASK_OBJECT_TYPE, "phi1")).thenReturn(tasks);
+
+        Map<String, String> requested = new AssetErasure(stub).requestTasks("phi1", Arrays.asList("Org1MSP", "Org2MSP"));
+
+        assertThat(tasks.isClosed()).isTrue();
+        assertThat(requested).containsEntry("Org1MSP", AssetErasure.PENDING).containsEntry("Org2MSP", AssetErasure.CONFIRMED);
+        verify(stub).putStringState(eq(AssetErasure.taskKey("phi1", "Org1MSP")), anyString());
+        verify(stub, never()).putStringState(eq(AssetErasure.taskKey("phi1", "Org2MSP")), anyString());
+    }
+
+    @Test
+    public void summaryListsBoundedNumberOfPendingHolders() {
+        Map<String, String> tasks = new TreeMap<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.put("Org" + i + "MSP", i == 0 ? AssetErasure.CONFIRMED : AssetErasure.PENDING);
+        }
+        AssetErasure.Record erasure = new AssetErasure.Record("phi1", "cbirm1", "Org1MSP", "Org1MSP", "doctor1", "tx1", 0L);
+
+        JSONObject summary = AssetErasure.summary(erasure, tasks, 2);
+
+        assertThat(summary.getInt("holders")).isEqualTo(5);
+        assertThat(summary.getInt("pending")).isEqualTo(4);
+        assertThat(summary.getInt("confirmed")).isEqualTo(1);
+        assertThat(summary.getJSONArray("pendingHolders").toList()).containsExactly("Org1MSP", "Org2MSP");
+        assertThat(summary.getBoolean("truncated")).isTrue();
+    }
+}
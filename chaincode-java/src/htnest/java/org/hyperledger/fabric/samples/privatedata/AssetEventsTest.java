@@ -0,0 +1,67 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class AssetEventsTest {
+
+    @Test
+    public void emitSetsAllChangesOfTheTransactionAsOneEvent() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        AssetEvents events = new AssetEvents(stub);
+        events.add(AssetEvents.Type.CREATED, "asset1", "Org1MSP", null);
+        events.add(AssetEvents.Type.ACL_GRANTED, "asset1", "Org1MSP", "Org2MSP");
+
+        events.emit();
+
+        ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+        verify(stub).setEvent(eq(AssetEvents.EVENT_NAME), payload.capture());
+        JSONArray changes = new JSONArray(new String(payload.getValue()));
+        assertThat(changes.length()).isEqualTo(2);
+        assertThat(changes.getJSONObject(0).getString("type")).isEqualTo("CREATED");
+        assertThat(changes.getJSONObject(0).has("dataSubject")).isFalse();
+        assertThat(changes.getJSONObject(1).getString("detail")).isEqualTo("Org2MSP");
+    }
+
+    @Test
+    public void changesOfOtherTransactionsAreNotEmitted() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        ChaincodeStub other = mock(ChaincodeStub.class);
+        AssetEvents events = new AssetEvents(stub);
+        AssetEvents otherEvents = new AssetEvents(other);
+        otherEvents.add(AssetEvents.Type.READ, "asset1", "Org1MSP");
+
+        events.emit();
+        otherEvents.emit();
+
+        verify(stub, never()).setEvent(anyString(), any());
+        verify(other).setEvent(eq(AssetEvents.EVENT_NAME), any());
+    }
+
+    @Test
+    public void contextsOfTheContractCollectTheirOwnChanges() {
+        Context ctx = mock(AssetContext.class);
+        AssetEvents events = new AssetEvents(mock(ChaincodeStub.class));
+        when(ctx.getStub()).thenReturn(mock(ChaincodeStub.class));
+        when(((AssetContext) ctx).getEvents()).thenReturn(events);
+
+        assertThat(AssetEvents.of(ctx)).isSameAs(events);
+        assertThat(AssetEvents.of(mock(Context.class))).isNotSameAs(events);
+    }
+}
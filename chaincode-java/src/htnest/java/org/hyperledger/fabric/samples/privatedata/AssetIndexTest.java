@@ -0,0 +1,87 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class AssetIndexTest {
+
+    private static KeyValue indexEntry(final AssetIndex.Index index, final String value, final String assetID, final String ownerOrg) {
+        KeyValue kv = mock(KeyValue.class);
+        when(kv.getKey()).thenReturn(index.key(value, assetID));
+        when(kv.getValue()).thenReturn(ownerOrg.getBytes(UTF_8));
+        return kv;
+    }
+
+    @Test
+    public void addsPatientAndOwnerOrgEntries() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        Asset asset = new Asset("pointer", "phi1", "cbirm1", 1, "owner", "key", Arrays.asList("Org1MSP"));
+        asset.setOwnerOrg("Org1MSP");
+
+        new AssetIndex(stub).add(asset);
+
+        verify(stub).putPrivateData(ASSET_COLLECTION_NAME, new CompositeKey("patient~assetID", "cbirm1", "phi1").toString(), "Org1MSP".getBytes(UTF_8));
+        verify(stub).putPrivateData(ASSET_COLLECTION_NAME, new CompositeKey("ownerOrg~assetID", "Org1MSP", "phi1").toString(), "Org1MSP".getBytes(UTF_8));
+    }
+
+    @Test
+    public void removesAndPurgesEntries() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        AssetIndex index = new AssetIndex(stub);
+
+        index.remove("cbirm1", "Org1MSP", "phi1");
+        index.purge("cbirm1", "Org1MSP", "phi1");
+
+        verify(stub).delPrivateData(ASSET_COLLECTION_NAME, AssetIndex.Index.PATIENT.key("cbirm1", "phi1"));
+        verify(stub).delPrivateData(ASSET_COLLECTION_NAME, AssetIndex.Index.OWNER_ORG.key("Org1MSP", "phi1"));
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetIndex.Index.PATIENT.key("cbirm1", "phi1"));
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetIndex.Index.OWNER_ORG.key("Org1MSP", "phi1"));
+    }
+
+    @Test
+    public void readsSummaryFromEntry() {
+        AssetCodec.Summary summary = AssetIndex.summaryOf(indexEntry(AssetIndex.Index.PATIENT, "cbirm1", "phi1", "Org2MSP"));
+
+        assertThat(summary.getAssetID()).isEqualTo("phi1");
+        assertThat(summary.getOwnerOrg()).isEqualTo("Org2MSP");
+    }
+
+    @Test
+    public void listsAssetsOfPatientByRangeScan() throws Exception {
+        AssetManagement contract = new AssetManagement();
+        Context ctx = mock(Context.class);
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(ctx.getStub()).thenReturn(stub);
+        MockResultsIterator<KeyValue> results = MockResultsIterator.of(
+                indexEntry(AssetIndex.Index.PATIENT, "cbirm1", "phi1", "Org1MSP"),
+                indexEntry(AssetIndex.Index.PATIENT, "cbirm1", "phi2", "Org2MSP"));
+        when(stub.getPrivateDataByPartialCompositeKey(eq(ASSET_COLLECTION_NAME), any(CompositeKey.class))).thenReturn(results);
+
+        String assets = contract.QueryAssetByPatientIndex(ctx, "cbirm1");
+
+        assertThat(assets).isEqualTo(" ,phi1-Org1MSP,phi2-Org2MSP");
+        assertThat(results.isClosed()).isTrue();
+        ArgumentCaptor<CompositeKey> prefix = ArgumentCaptor.forClass(CompositeKey.class);
+        verify(stub).getPrivateDataByPartialCompositeKey(eq(ASSET_COLLECTION_NAME), prefix.capture());
+        assertThat(prefix.getValue().toString()).isEqualTo(new CompositeKey("patient~assetID", "cbirm1").toString());
+    }
+}
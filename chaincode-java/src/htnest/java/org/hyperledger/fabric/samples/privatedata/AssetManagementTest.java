@@ -6,26 +6,40 @@ package org.hyperledger.fabric.samples.privatedata;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.ThrowableAssert.catchThrowable;
-// import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.charset.StandardCharsets.UTF_8;
 // import static org.hyperledger.fabric.samples.privatedata.AssetManagement.AGREEMENT_KEYPREFIX;
 import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
-// import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.cert.CertificateException;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.hyperledger.fabric.contract.ClientIdentity;
 import org.hyperledger.fabric.contract.Context;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
-// import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.util.ArrayList;
 
@@ -144,6 +158,26 @@ public final class AssetManagementTest {
             assertThat(asset).isNull();
         }
 
+        @Test
+        public void readsDataSubjectForClientsOnTheAcl() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn("x509::CN=doctor1::CN=ca");
+            when(ci.getMSPID()).thenReturn("Org2MSP");
+            Asset asset = new Asset("pointer", testAsset1ID, "patient1", 1, "owner", "key", new ArrayList<>(Arrays.asList("Org2MSP")));
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1ID)).thenReturn(asset.serialize());
+
+            assertThat(contract.ReadAssetDataSubject(ctx, testAsset1ID)).isEqualTo("patient1");
+
+            when(ci.getMSPID()).thenReturn("Org3MSP");
+            Throwable thrown = catchThrowable(() -> contract.ReadAssetDataSubject(ctx, testAsset1ID));
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_ACCESS".getBytes());
+        }
+
         @Test
         public void invokeUnknownTransaction() {
             AssetManagement contract = new AssetManagement();
@@ -162,6 +196,737 @@ public final class AssetManagementTest {
 
     }
 
+    @Nested
+    class CreateAssetsTransaction {
+
+        private JSONObject properties(final String assetID) {
+            return new JSONObject().put("assetID", assetID).put("pointer", "pointer").put("dataSubject", "patient1")
+                    .put("filekey", "key").put("version", 1).put("acl", acl);
+        }
+
+        @Test
+        public void createsValidItemsAndReportsFailures() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn(testOrg1Client);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            when(stub.getTxId()).thenReturn("tx1");
+            JSONArray items = new JSONArray().put(properties("a1")).put(properties("a1")).put(properties("a2")).put(properties("a3").put("pointer", ""));
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("assets_properties", items.toString().getBytes());
+            when(stub.getTransient()).thenReturn(m);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a2")).thenReturn(dataAsset1Bytes);
+
+            JSONObject summary = new JSONObject(contract.CreateAssets(ctx));
+
+            assertThat(summary.getInt("created")).isEqualTo(1);
+            assertThat(summary.getInt("failed")).isEqualTo(3);
+            JSONArray results = summary.getJSONArray("results");
+            assertThat(results.getJSONObject(0).getString("status")).isEqualTo("created");
+            assertThat(results.getJSONObject(1).getString("code")).isEqualTo("ASSET_ALREADY_EXISTS");
+            assertThat(results.getJSONObject(2).getString("error")).isEqualTo("Asset a2 already exists");
+            assertThat(results.getJSONObject(3).getString("code")).isEqualTo("INCOMPLETE_INPUT");
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME), eq("a1"), any(byte[].class));
+            verify(stub).putStringState(eq(new CompositeKey(AccessJournal.BATCH_OBJECT_TYPE, "CREATION", "tx1").toString()), contains("\"assets\":[\"a1\"]"));
+        }
+
+        @Test
+        public void rejectsBatchFromPatient() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getAttributeValue("role")).thenReturn("patient");
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("assets_properties", new JSONArray().put(properties("a1")).toString().getBytes());
+            when(stub.getTransient()).thenReturn(m);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.CreateAssets(ctx);
+            });
+
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_ACCESS".getBytes());
+        }
+    }
+
+    @Nested
+    class BulkAclTransaction {
+
+        private byte[] assetBytes(final String assetID, final String ownerOrg, final String... aclEntries) {
+            Asset asset = new Asset("pointer", assetID, "patient1", 1, testOrg1Client, "key", new ArrayList<>(Arrays.asList(aclEntries)));
+            asset.setOwnerOrg(ownerOrg);
+            return asset.serialize();
+        }
+
+        private Context context(final ChaincodeStub stub) {
+            Context ctx = mock(Context.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn(testOrg1Client);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(stub.getTxId()).thenReturn("tx1");
+            return ctx;
+        }
+
+        @Test
+        public void grantsOnListedAssetsAndChecksEachOne() {
+            AssetManagement contract = new AssetManagement();
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a1")).thenReturn(assetBytes("a1", testOrgOneMSP, "TestOrg1"));
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a2")).thenReturn(assetBytes("a2", testOrgOneMSP, "TestOrg1", "Org2MSP"));
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a3")).thenReturn(assetBytes("a3", "OtherOrg", "OtherOrg"));
+
+            JSONObject summary = new JSONObject(contract.bulkUpdateAclPermission(ctx, "Org2MSP", "{\"assetIDs\":[\"a1\",\"a2\",\"a3\",\"a4\"]}", ""));
+
+            assertThat(summary.getInt("updated")).isEqualTo(1);
+            assertThat(summary.getInt("unchanged")).isEqualTo(1);
+            assertThat(summary.getInt("failed")).isEqualTo(2);
+            assertThat(summary.getString("continuation")).isEmpty();
+            JSONArray results = summary.getJSONArray("results");
+            assertThat(results.getJSONObject(2).getString("code")).isEqualTo("INVALID_ACCESS");
+            assertThat(results.getJSONObject(3).getString("code")).isEqualTo("ASSET_NOT_FOUND");
+            verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME), eq(AssetAcl.key("a1", "Org2MSP")), any(byte[].class));
+            verify(stub, never()).putPrivateData(eq(ASSET_COLLECTION_NAME), eq("a1"), any(byte[].class));
+            verify(stub).putStringState(eq(new CompositeKey(AccessJournal.BATCH_OBJECT_TYPE, "ACL", "tx1").toString()), contains("\"assets\":[\"a1\"]"));
+        }
+
+        @Test
+        public void stopsAfterOneChunkOfListedAssets() {
+            AssetManagement contract = new AssetManagement();
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub);
+            JSONArray assetIDs = new JSONArray();
+            for (int i = 0; i < AssetManagement.ACL_CHUNK_SIZE + 5; i++) {
+                assetIDs.put("missing" + i);
+            }
+            String selection = new JSONObject().put("assetIDs", assetIDs).toString();
+
+            JSONObject first = new JSONObject(contract.bulkRevokeAclPermission(ctx, "Org2MSP", selection, ""));
+            JSONObject second = new JSONObject(contract.bulkRevokeAclPermission(ctx, "Org2MSP", selection, first.getString("continuation")));
+
+            assertThat(first.getJSONArray("results").length()).isEqualTo(AssetManagement.ACL_CHUNK_SIZE);
+            assertThat(first.getString("continuation")).isEqualTo(Integer.toString(AssetManagement.ACL_CHUNK_SIZE));
+            assertThat(second.getJSONArray("results").length()).isEqualTo(5);
+            assertThat(second.getString("continuation")).isEmpty();
+        }
+
+        @Test
+        public void rejectsSelectionOfDataSubjectWithoutRangeQuery() {
+            AssetManagement contract = new AssetManagement();
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub);
+
+            Throwable thrown = catchThrowable(() -> contract.bulkRevokeAclPermission(ctx, "Org2MSP", "{\"dataSubject\":\"patient1\"}", ""));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+            verify(stub, never()).getPrivateDataByPartialCompositeKey(anyString(), any(CompositeKey.class));
+        }
+    }
+
+    @Nested
+    class GetHistoryForAssetPagedTransaction {
+
+        private KeyModification modification(final String txId, final String value, final boolean deleted) {
+            KeyModification km = mock(KeyModification.class);
+            when(km.getTxId()).thenReturn(txId);
+            when(km.getTimestamp()).thenReturn(Instant.ofEpochMilli(1000L));
+            when(km.getValue()).thenReturn(value.getBytes());
+            when(km.isDeleted()).thenReturn(deleted);
+            return km;
+        }
+
+        private KeyValue journalEntry(final String txId, final String record) {
+            KeyValue kv = mock(KeyValue.class);
+            when(kv.getValue()).thenReturn(new JSONObject().put("txId", txId).put("timestamp", 1000L).put("record", record).toString().getBytes());
+            return kv;
+        }
+
+        @Test
+        public void pagesThroughJournalRecords() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            KeyValue first = journalEntry("tx1", "read by Org1MSP, for treatment");
+            KeyValue second = journalEntry("tx2", "read by Org2MSP");
+            KeyValue third = journalEntry("tx3", "read by Org3MSP");
+            MockResultsIterator<KeyModification> legacy = MockResultsIterator.of();
+            MockResultsIterator<KeyValue> journal = MockResultsIterator.of(first, second, third);
+            when(stub.getHistoryForKey("a1_read")).thenReturn(legacy);
+            when(stub.getStateByPartialCompositeKey(AccessJournal.OBJECT_TYPE, "a1", "READ")).thenReturn(journal);
+
+            JSONObject page = new JSONObject(contract.getHistoryForAssetPaged(ctx, "a1_read", 2, ""));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(2);
+            assertThat(page.getString("bookmark")).isEqualTo(AccessJournal.JOURNAL_BOOKMARK + "tx2");
+            assertThat(page.getJSONArray("records").getJSONObject(0).getString("value")).isEqualTo("read by Org1MSP, for treatment");
+            assertThat(page.getJSONArray("records").getJSONObject(0).getBoolean("isDelete")).isFalse();
+            assertThat(legacy.isClosed()).isTrue();
+            assertThat(journal.isClosed()).isTrue();
+            verify(stub, never()).getStateByPartialCompositeKey(AccessJournal.REFERENCE_OBJECT_TYPE, "a1", "READ");
+        }
+
+        @Test
+        public void resumesJournalFromBookmarkedKey() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            MockResultsIterator<KeyValue> journal = MockResultsIterator.of(journalEntry("tx2", "read by Org2MSP"), journalEntry("tx3", "read by Org3MSP"));
+            MockResultsIterator<KeyValue> references = MockResultsIterator.of();
+            String start = AccessJournal.entryKey("a1", AccessJournal.Event.READ, "tx2");
+            when(stub.getStateByPartialCompositeKeyWithPagination(any(CompositeKey.class), anyInt(), eq(start))).thenReturn(journal);
+            when(stub.getStateByPartialCompositeKey(AccessJournal.REFERENCE_OBJECT_TYPE, "a1", "READ")).thenReturn(references);
+
+            JSONObject page = new JSONObject(contract.getHistoryForAssetPaged(ctx, "a1_read", 2, AccessJournal.JOURNAL_BOOKMARK + "tx2"));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(1);
+            assertThat(page.getJSONArray("records").getJSONObject(0).getString("txId")).isEqualTo("tx3");
+            assertThat(page.getString("bookmark")).isEmpty();
+            assertThat(journal.isClosed()).isTrue();
+            verify(stub, never()).getHistoryForKey("a1_read");
+            verify(stub, never()).getStateByPartialCompositeKey(AccessJournal.OBJECT_TYPE, "a1", "READ");
+        }
+
+        @Test
+        public void stopsSkippingKeyHistoryAtSkipLimit() {
+            HistoryPage page = new HistoryPage(5, "tx9", 2);
+
+            assertThat(page.offer(new AccessJournal.Entry("tx1", Instant.ofEpochMilli(1000L), "key1"))).isTrue();
+            assertThat(page.offer(new AccessJournal.Entry("tx2", Instant.ofEpochMilli(2000L), "key2"))).isFalse();
+            assertThat(page.isResumed()).isFalse();
+        }
+
+        @Test
+        public void resumesAfterBookmarkAndReportsDeletions() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            KeyModification first = modification("tx1", "key1", false);
+            KeyModification second = modification("tx2", "", true);
+            KeyModification third = modification("tx3", "key3", false);
+            MockResultsIterator<KeyModification> history = MockResultsIterator.of(first, second, third);
+            when(stub.getHistoryForKey("Org1MSP_public_key")).thenReturn(history);
+
+            JSONObject page = new JSONObject(contract.getHistoryForAssetPaged(ctx, "Org1MSP_public_key", 5, "tx1"));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(2);
+            assertThat(page.getJSONArray("records").getJSONObject(0).getBoolean("isDelete")).isTrue();
+            assertThat(page.getJSONArray("records").getJSONObject(1).getString("txId")).isEqualTo("tx3");
+            assertThat(page.getString("bookmark")).isEmpty();
+            assertThat(history.isClosed()).isTrue();
+        }
+
+        @Test
+        public void rejectsUnknownBookmark() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            MockResultsIterator<KeyModification> history = MockResultsIterator.of();
+            when(stub.getHistoryForKey("Org1MSP_public_key")).thenReturn(history);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.getHistoryForAssetPaged(ctx, "Org1MSP_public_key", 5, "txX");
+            });
+
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INCOMPLETE_INPUT".getBytes());
+        }
+    }
+
+    @Nested
+    class ReadAssetsTransaction {
+
+        private byte[] assetBytes(final String assetID, final String dataSubject, final String... aclEntries) {
+            return new Asset("pointer", assetID, dataSubject, 1, testOrg1Client, "key", new ArrayList<>(Arrays.asList(aclEntries))).serialize();
+        }
+
+        @Test
+        public void readsEachAssetAndRecordsOneBatch() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn(testOrg1Client);
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(stub.getTxId()).thenReturn("tx1");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a1")).thenReturn(assetBytes("a1", "patient1", testOrgOneMSP));
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a2")).thenReturn(assetBytes("a2", "patient1", "TestOrg2"));
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a4")).thenReturn(assetBytes("a4", "patient2", testOrgOneMSP));
+
+            JSONObject summary = new JSONObject(contract.ReadAssets(ctx, new JSONArray(Arrays.asList("a1", "a2", "a3", "a4")).toString()));
+
+            assertThat(summary.getInt("read")).isEqualTo(2);
+            assertThat(summary.getInt("denied")).isEqualTo(1);
+            assertThat(summary.getInt("notFound")).isEqualTo(1);
+            JSONArray results = summary.getJSONArray("results");
+            assertThat(results.getJSONObject(0).getString("result")).startsWith("Asset ID: a1,");
+            assertThat(results.getJSONObject(1).getString("status")).isEqualTo("denied");
+            assertThat(results.getJSONObject(2).getString("status")).isEqualTo("notFound");
+            verify(stub).putStringState(eq(new CompositeKey(AccessJournal.BATCH_OBJECT_TYPE, "READ", "tx1").toString()), contains("\"assets\":[\"a1\",\"a4\"]"));
+        }
+
+        @Test
+        public void patientIsDeniedOtherPatientsAssets() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn("x509::CN=patient1::CN=ca");
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(ci.getAttributeValue("role")).thenReturn("patient");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a1")).thenReturn(assetBytes("a1", "patient2", testOrgOneMSP));
+
+            JSONObject summary = new JSONObject(contract.ReadAssets(ctx, "[\"a1\"]"));
+
+            assertThat(summary.getInt("denied")).isEqualTo(1);
+            verify(stub, never()).putStringState(anyString(), anyString());
+        }
+    }
+
+    @Nested
+    class AccessReceiptTransactions {
+
+        private final byte[] receiptKey = new byte[AccessReceipt.MIN_KEY_LENGTH];
+        private final byte[] assetBytes = new Asset("pointer", testAsset1ID, "patient1", 1, testOrg1Client, "key", acl).serialize();
+
+        private Context context(final ChaincodeStub stub, final String mspId) {
+            Context ctx = mock(Context.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn("x509::CN=doctor1::CN=ca");
+            when(ci.getMSPID()).thenReturn(mspId);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, AccessReceipt.keyKey())).thenReturn(receiptKey);
+            return ctx;
+        }
+
+        private JSONObject readWithReceipt() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub, "org1id");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1ID)).thenReturn(assetBytes);
+            when(stub.getTxId()).thenReturn("readTx");
+            when(stub.getTxTimestamp()).thenReturn(Instant.ofEpochMilli(1000L));
+            return new JSONObject(contract().ReadAssetWithReceipt(ctx, testAsset1ID));
+        }
+
+        private AssetManagement contract() {
+            return new AssetManagement();
+        }
+
+        @Test
+        public void readsWithoutWritingState() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub, "org1id");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1ID)).thenReturn(assetBytes);
+            when(stub.getTxId()).thenReturn("readTx");
+
+            JSONObject read = new JSONObject(contract().ReadAssetWithReceipt(ctx, testAsset1ID));
+
+            assertThat(read.getString("result")).startsWith("Asset ID: asset1,");
+            assertThat(read.getJSONObject("receipt").getString("receiptId")).isEqualTo("readTx");
+            verify(stub, never()).putStringState(anyString(), anyString());
+        }
+
+        @Test
+        public void rejectsReaderNotOnAcl() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub, "org9id");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1ID)).thenReturn(assetBytes);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract().ReadAssetWithReceipt(ctx, testAsset1ID);
+            });
+
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("INVALID_ACCESS".getBytes());
+        }
+
+        @Test
+        public void recordsValidReceiptsUnderTheReadTransaction() {
+            JSONObject receipt = readWithReceipt();
+            JSONObject forged = new JSONObject(receipt.getJSONObject("receipt").toString()).put("assetID", "asset2");
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub, "org1id");
+            when(stub.getTxId()).thenReturn("batchTx");
+            JSONArray receipts = new JSONArray().put(receipt.getJSONObject("receipt")).put(forged);
+
+            JSONObject summary = new JSONObject(contract().RecordAccessBatch(ctx, receipts.toString()));
+
+            assertThat(summary.getInt("recorded")).isEqualTo(1);
+            assertThat(summary.getInt("rejected")).isEqualTo(1);
+            assertThat(summary.getJSONArray("results").getJSONObject(1).getString("status")).isEqualTo("rejected");
+            verify(stub).putStringState(eq(AccessJournal.entryKey(testAsset1ID, AccessJournal.Event.READ, "readTx")),
+                    contains("Asset asset1 read by org1id at 1970-01-01T00:00:01Z"));
+        }
+
+        @Test
+        public void countsEachReceiptOnce() {
+            JSONObject receipt = readWithReceipt().getJSONObject("receipt");
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub, "org1id");
+            when(stub.getTxId()).thenReturn("batchTx");
+            JSONArray receipts = new JSONArray().put(receipt).put(receipt);
+
+            JSONObject summary = new JSONObject(contract().RecordAccessBatch(ctx, receipts.toString()));
+
+            assertThat(summary.getInt("recorded")).isEqualTo(1);
+            assertThat(summary.getInt("duplicate")).isEqualTo(1);
+            verify(stub).putStringState(AccessCounter.key(AccessCounter.Scope.ASSET, testAsset1ID, "org1id", "batchTx"), "1");
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, AccessCounter.key(AccessCounter.Scope.PATIENT, "patient1", "org1id", "batchTx"), "1".getBytes());
+        }
+
+        @Test
+        public void rejectsReceiptOfOtherOrganization() {
+            JSONObject receipt = readWithReceipt();
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub, "org2id");
+
+            JSONObject summary = new JSONObject(contract().RecordAccessBatch(ctx, new JSONArray().put(receipt.getJSONObject("receipt")).toString()));
+
+            assertThat(summary.getInt("recorded")).isEqualTo(0);
+            verify(stub, never()).putStringState(anyString(), anyString());
+        }
+    }
+
+    @Nested
+    class ErasureTransactions {
+
+        private Context context(final ChaincodeStub stub, final String mspId) {
+            Context ctx = mock(Context.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn("x509::CN=doctor1::CN=ca");
+            when(ci.getMSPID()).thenReturn(mspId);
+            return ctx;
+        }
+
+        @Test
+        public void erasesDeletedAssetFromEveryReader() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(stub.getTxId()).thenReturn("tx2");
+            AssetErasure.Record deletion = new AssetErasure.Record(testAsset1ID, "patient1", "Org1MSP", "Org1MSP", "doctor1", "tx1", 0L);
+            when(stub.getStringState(AssetErasure.deletionKey(testAsset1ID))).thenReturn(deletion.toJson().toString());
+            KeyValue reads = mock(KeyValue.class);
+            when(reads.getKey()).thenReturn(new CompositeKey(AccessCounter.OBJECT_TYPE, "ASSET", testAsset1ID, "Org2MSP", "3").toString());
+            when(reads.getValue()).thenReturn("2".getBytes());
+            MockResultsIterator<KeyValue> counters = MockResultsIterator.of(reads);
+            when(stub.getStateByPartialCompositeKey(AccessCounter.OBJECT_TYPE, "ASSET", testAsset1ID)).thenReturn(counters);
+            when(stub.getStateByPartialCompositeKey(AssetErasure.TASK_OBJECT_TYPE, testAsset1ID)).thenReturn(MockResultsIterator.of());
+            Context ctx = context(stub, "Org1MSP");
+
+            JSONObject summary = new JSONObject(new AssetManagement().eraseDataRequest(ctx, testAsset1ID));
+
+            assertThat(summary.getString("dataSubject")).isEqualTo("patient1");
+            assertThat(summary.getInt("holders")).isEqualTo(2);
+            assertThat(summary.getJSONArray("pendingHolders").toList()).containsExactly("Org1MSP", "Org2MSP");
+            verify(stub).putStringState(eq(AssetErasure.taskKey(testAsset1ID, "Org2MSP")), contains("\"status\":\"pending\""));
+            verify(stub).putStringState(eq(AssetErasure.erasureKey(testAsset1ID)), anyString());
+            verify(stub, never()).getHistoryForKey(anyString());
+        }
+
+        @Test
+        public void holderConfirmsItsOwnTask() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(stub.getTxId()).thenReturn("tx3");
+            when(stub.getStringState(AssetErasure.taskKey(testAsset1ID, "Org2MSP"))).thenReturn("{\"status\":\"pending\"}");
+            Context ctx = context(stub, "Org2MSP");
+
+            JSONObject task = new JSONObject(new AssetManagement().ConfirmErasure(ctx, testAsset1ID));
+
+            assertThat(task.getString("status")).isEqualTo(AssetErasure.CONFIRMED);
+            verify(stub).putStringState(eq(AssetErasure.taskKey(testAsset1ID, "Org2MSP")), contains("\"status\":\"confirmed\""));
+        }
+
+        @Test
+        public void bulkPurgeErasesAChunkWithOneJournalRecord() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(stub.getTxId()).thenReturn("tx4");
+            when(stub.getMspId()).thenReturn("Org1MSP");
+            Asset live = new Asset("pointer", "a1", "patient1", 1, "owner", "key", null);
+            live.setOwnerOrg("Org1MSP");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a1")).thenReturn(live.serialize());
+            AssetErasure.Record deletion = new AssetErasure.Record("a2", "patient1", "Org1MSP", "Org1MSP", "doctor1", "tx1", 0L);
+            when(stub.getStringState(AssetErasure.deletionKey("a2"))).thenReturn(deletion.toJson().toString());
+            MockResultsIterator<KeyValue> counters = MockResultsIterator.of();
+            MockResultsIterator<KeyValue> tasks = MockResultsIterator.of();
+            when(stub.getStateByPartialCompositeKey(AccessCounter.OBJECT_TYPE, "ASSET", "a1")).thenReturn(counters);
+            when(stub.getStateByPartialCompositeKey(AssetErasure.TASK_OBJECT_TYPE, "a1")).thenReturn(tasks);
+            Context ctx = context(stub, "Org1MSP");
+
+            JSONObject summary = new JSONObject(new AssetManagement().bulkEraseAssets(ctx, "{\"assetIDs\":[\"a1\",\"a2\"]}", "purge", ""));
+
+            assertThat(summary.getInt("erased")).isEqualTo(2);
+            assertThat(summary.getString("continuation")).isEmpty();
+            verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, "a1");
+            verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, "a2");
+            verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetErasure.deletionDetailKey("a1"));
+            verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetErasure.erasureDetailKey("a2"));
+            verify(stub).putStringState(eq(AssetErasure.deletionKey("a1")), anyString());
+            verify(stub).putStringState(eq(AssetErasure.taskKey("a1", "Org1MSP")), anyString());
+            verify(stub).putStringState(eq(new CompositeKey(AccessJournal.BATCH_OBJECT_TYPE, "DELETION", "tx4").toString()), contains("\"assets\":[\"a1\",\"a2\"]"));
+            verify(stub).putStringState(eq(new CompositeKey(AccessJournal.BATCH_OBJECT_TYPE, "ERASURE", "tx4").toString()), contains("\"assets\":[\"a1\"]"));
+            verify(stub, never()).getPrivateDataByPartialCompositeKey(anyString(), any(CompositeKey.class));
+        }
+
+        @Test
+        public void bulkEraseSkipsAssetsOfOtherOrganizations() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(stub.getMspId()).thenReturn("Org2MSP");
+            Asset asset = new Asset("pointer", "a1", "patient1", 1, "owner", "key", null);
+            asset.setOwnerOrg("Org1MSP");
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, "a1")).thenReturn(asset.serialize());
+            MockResultsIterator<KeyModification> history = MockResultsIterator.of();
+            MockResultsIterator<KeyValue> journal = MockResultsIterator.of();
+            MockResultsIterator<KeyValue> batches = MockResultsIterator.of();
+            when(stub.getHistoryForKey("a3_deletion")).thenReturn(history);
+            when(stub.getStateByPartialCompositeKey(AccessJournal.OBJECT_TYPE, "a3", "DELETION")).thenReturn(journal);
+            when(stub.getStateByPartialCompositeKey(AccessJournal.REFERENCE_OBJECT_TYPE, "a3", "DELETION")).thenReturn(batches);
+            Context ctx = context(stub, "Org2MSP");
+
+            JSONObject summary = new JSONObject(new AssetManagement().bulkEraseAssets(ctx, "{\"assetIDs\":[\"a1\",\"a3\"]}", "delete", ""));
+
+            assertThat(summary.getInt("failed")).isEqualTo(2);
+            assertThat(summary.getJSONArray("results").getJSONObject(0).getString("code")).isEqualTo("INVALID_ACCESS");
+            assertThat(summary.getJSONArray("results").getJSONObject(1).getString("code")).isEqualTo("ASSET_NOT_FOUND");
+            verify(stub, never()).delPrivateData(anyString(), anyString());
+            verify(stub, never()).putStringState(anyString(), anyString());
+        }
+
+        @Test
+        public void organizationWithoutTaskCannotConfirm() {
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            Context ctx = context(stub, "Org3MSP");
+
+            Throwable thrown = catchThrowable(() -> new AssetManagement().ConfirmErasure(ctx, testAsset1ID));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("ASSET_NOT_FOUND".getBytes());
+        }
+    }
+
+    @Nested
+    class AssetVersionTransactions {
+
+        @Test
+        public void updateReplacesTheHeadWithTheNextVersion() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn("x509::CN=doctor1::CN=ca");
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            when(stub.getTxId()).thenReturn("tx2");
+            Asset head = new Asset("pointer1", testAsset1ID, "patient1", 1, testOrg1Client, "key1", null);
+            head.setOwnerOrg(testOrgOneMSP);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1ID)).thenReturn(head.serialize());
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("asset_version", "{\"assetID\":\"asset1\",\"pointer\":\"pointer2\",\"filekey\":\"key2\"}".getBytes());
+            when(stub.getTransient()).thenReturn(m);
+
+            JSONObject result = new JSONObject(contract.UpdateAssetVersion(ctx));
+
+            assertThat(result.getInt("version")).isEqualTo(2);
+            assertThat(result.getInt("previous")).isEqualTo(1);
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, AssetVersions.dataKey(testAsset1ID, 1), head.serialize());
+            Asset next = new Asset("pointer2", testAsset1ID, "patient1", 2, testOrg1Client, "key2", null);
+            next.setOwnerOrg(testOrgOneMSP);
+            next.setOwnerName(head.getOwnerName());
+            verify(stub).putPrivateData(ASSET_COLLECTION_NAME, testAsset1ID, next.serialize());
+        }
+
+        @Test
+        public void updateEmitsTheNewVersionAfterTheTransaction() {
+            AssetManagement contract = new AssetManagement();
+            AssetContext ctx = mock(AssetContext.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ctx.getEvents()).thenReturn(new AssetEvents(stub));
+            when(ci.getId()).thenReturn("x509::CN=doctor1::CN=ca");
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            when(stub.getTxId()).thenReturn("tx2");
+            Asset head = new Asset("pointer1", testAsset1ID, "patient1", 1, testOrg1Client, "key1", null);
+            head.setOwnerOrg(testOrgOneMSP);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1ID)).thenReturn(head.serialize());
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("asset_version", "{\"assetID\":\"asset1\",\"pointer\":\"pointer2\",\"filekey\":\"key2\"}".getBytes());
+            when(stub.getTransient()).thenReturn(m);
+
+            String result = contract.UpdateAssetVersion(ctx);
+            verify(stub, never()).setEvent(anyString(), any());
+            contract.afterTransaction(ctx, result);
+
+            ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+            verify(stub).setEvent(eq(AssetEvents.EVENT_NAME), payload.capture());
+            JSONObject change = new JSONArray(new String(payload.getValue())).getJSONObject(0);
+            assertThat(change.getString("type")).isEqualTo("VERSION_ADDED");
+            assertThat(change.getString("assetID")).isEqualTo(testAsset1ID);
+            assertThat(change.getInt("detail")).isEqualTo(2);
+            assertThat(change.has("dataSubject")).isFalse();
+        }
+
+        @Test
+        public void latestVersionCannotBePurgedOnItsOwn() {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            ClientIdentity ci = mock(ClientIdentity.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(ctx.getClientIdentity()).thenReturn(ci);
+            when(ci.getId()).thenReturn("x509::CN=doctor1::CN=ca");
+            when(ci.getMSPID()).thenReturn(testOrgOneMSP);
+            when(stub.getMspId()).thenReturn(testOrgOneMSP);
+            Asset head = new Asset("pointer2", testAsset1ID, "patient1", 2, testOrg1Client, "key2", null);
+            head.setOwnerOrg(testOrgOneMSP);
+            when(stub.getPrivateData(ASSET_COLLECTION_NAME, testAsset1ID)).thenReturn(head.serialize());
+            Map<String, byte[]> m = new HashMap<String, byte[]>();
+            m.put("asset_purge", "{\"assetID\":\"asset1\",\"version\":2}".getBytes());
+            when(stub.getTransient()).thenReturn(m);
+
+            Throwable thrown = catchThrowable(() -> contract.PurgeAssetVersion(ctx));
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class);
+            verify(stub, never()).purgePrivateData(anyString(), anyString());
+        }
+    }
+
+    @Nested
+    class QueryAssetByPatientTransaction {
+
+        private KeyValue assetValue(final String assetID) {
+            KeyValue kv = mock(KeyValue.class);
+            Asset asset = new Asset("pointer", assetID, "patient1", 1, testOrg1Client, "key", acl);
+            asset.setOwnerOrg(testOrgOneMSP);
+            when(kv.getValue()).thenReturn(asset.serialize());
+            return kv;
+        }
+
+        @Test
+        public void listsAssetsWithOwnerOrg() throws Exception {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            MockResultsIterator<KeyValue> results = MockResultsIterator.of(assetValue("a1"), assetValue("a2"));
+            when(stub.getPrivateDataQueryResult(eq(ASSET_COLLECTION_NAME), anyString())).thenReturn(results);
+
+            String assets = contract.QueryAssetByPatient(ctx, "patient1");
+
+            assertThat(assets).isEqualTo(" ,a1-TestOrg1,a2-TestOrg1");
+            assertThat(results.isClosed()).isTrue();
+        }
+
+        @Test
+        public void failsWhenResultExceedsLimit() throws Exception {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            MockResultsIterator<KeyValue> results = MockResultsIterator.of(assetValue("a1"), assetValue("a2"), assetValue("a3"));
+            when(stub.getPrivateDataQueryResult(eq(ASSET_COLLECTION_NAME), anyString())).thenReturn(results);
+
+            Throwable thrown = catchThrowable(() -> {
+                contract.getQueryResult(ctx, "{}", 2);
+            });
+
+            assertThat(thrown).isInstanceOf(ChaincodeException.class).hasNoCause()
+                    .hasMessage("Query matches more than 2 assets");
+            assertThat(((ChaincodeException) thrown).getPayload()).isEqualTo("RESULT_LIMIT_EXCEEDED".getBytes());
+            assertThat(results.isClosed()).isTrue();
+        }
+    }
+
+    @Nested
+    class QueryAssetByPatientPagedTransaction {
+
+        private KeyValue assetValue(final String assetID) {
+            KeyValue kv = mock(KeyValue.class);
+            Asset asset = new Asset("pointer", assetID, "patient1", 1, testOrg1Client, "key", acl);
+            asset.setOwnerOrg(testOrgOneMSP);
+            when(kv.getValue()).thenReturn(asset.serialize());
+            return kv;
+        }
+
+        @Test
+        public void returnsBookmarkWhenMoreRecordsExist() throws Exception {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            MockResultsIterator<KeyValue> results = MockResultsIterator.of(assetValue("a1"), assetValue("a2"), assetValue("a3"));
+            when(stub.getPrivateDataQueryResult(eq(ASSET_COLLECTION_NAME), anyString())).thenReturn(results);
+
+            JSONObject page = new JSONObject(contract.QueryAssetByPatientPaged(ctx, "patient1", 2, ""));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(2);
+            assertThat(page.getString("bookmark")).isEqualTo("a2");
+            assertThat(page.getJSONArray("records").getJSONObject(1).getString("ownerOrg")).isEqualTo(testOrgOneMSP);
+            assertThat(results.isClosed()).isTrue();
+        }
+
+        @Test
+        public void lastPageHasEmptyBookmark() throws Exception {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            MockResultsIterator<KeyValue> results = MockResultsIterator.of(assetValue("a3"));
+            when(stub.getPrivateDataQueryResult(eq(ASSET_COLLECTION_NAME), anyString())).thenReturn(results);
+
+            JSONObject page = new JSONObject(contract.QueryAssetByPatientPaged(ctx, "patient1", 2, "a2"));
+
+            assertThat(page.getInt("fetchedRecordsCount")).isEqualTo(1);
+            assertThat(page.getString("bookmark")).isEmpty();
+            verify(stub).getPrivateDataQueryResult(eq(ASSET_COLLECTION_NAME), contains("\"$gt\":\"a2\""));
+        }
+
+        @Test
+        public void usesPackagedDataSubjectIndex() throws Exception {
+            AssetManagement contract = new AssetManagement();
+            Context ctx = mock(Context.class);
+            ChaincodeStub stub = mock(ChaincodeStub.class);
+            when(ctx.getStub()).thenReturn(stub);
+            when(stub.getPrivateDataQueryResult(eq(ASSET_COLLECTION_NAME), anyString())).thenReturn(MockResultsIterator.of());
+            ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+
+            contract.QueryAssetByPatientPaged(ctx, "patient1", 2, "");
+
+            verify(stub).getPrivateDataQueryResult(eq(ASSET_COLLECTION_NAME), captor.capture());
+            JSONObject query = new JSONObject(captor.getValue());
+            JSONObject index = new JSONObject(new String(Files.readAllBytes(
+                    Paths.get("META-INF/statedb/couchdb/collections/medCollection/indexes/dataSubject_index.json")), UTF_8));
+            JSONArray sort = query.getJSONArray("sort");
+            JSONArray fields = index.getJSONObject("index").getJSONArray("fields");
+            assertThat(query.getJSONArray("use_index").getString(0)).isEqualTo("_design/" + index.getString("ddoc"));
+            assertThat(query.getJSONArray("use_index").getString(1)).isEqualTo(index.getString("name"));
+            assertThat(sort.length()).isEqualTo(fields.length());
+            for (int i = 0; i < fields.length(); i++) {
+                assertThat(sort.getJSONObject(i).keySet()).containsExactly(fields.getString(i));
+            }
+        }
+    }
+
     private static String testOrgOneMSP = "TestOrg1";
     private static String testOrg1Client = "testOrg1User";
 
@@ -0,0 +1,119 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public final class AssetVersionsTest {
+
+    private static Asset version(final int version) {
+        return new Asset("pointer" + version, "phi1", "cbirm1", version, "owner", "key" + version, Arrays.asList("Org1MSP"));
+    }
+
+    private static byte[] link(final int version, final int previous) {
+        return new JSONObject().put("version", version).put("previous", previous).put("txId", "tx" + version).put("timestamp", 0L)
+                .toString().getBytes();
+    }
+
+    @Test
+    public void appendMovesTheHeadUnderItsVersionAndLinksTheNewVersion() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getTxId()).thenReturn("tx2");
+        when(stub.getTxTimestamp()).thenReturn(Instant.ofEpochMilli(1000L));
+        Asset head = version(1);
+
+        new AssetVersions(stub).append(head, version(2));
+
+        verify(stub).putPrivateData(ASSET_COLLECTION_NAME, AssetVersions.dataKey("phi1", 1), head.serialize());
+        ArgumentCaptor<byte[]> link = ArgumentCaptor.forClass(byte[].class);
+        verify(stub).putPrivateData(eq(ASSET_COLLECTION_NAME), eq(AssetVersions.linkKey("phi1", 2)), link.capture());
+        JSONObject json = new JSONObject(new String(link.getValue()));
+        assertThat(json.getInt("previous")).isEqualTo(1);
+        assertThat(json.getString("txId")).isEqualTo("tx2");
+    }
+
+    @Test
+    public void keysSortNumerically() {
+        assertThat(AssetVersions.dataKey("phi1", 9).compareTo(AssetVersions.dataKey("phi1", 10))).isNegative();
+    }
+
+    @Test
+    public void listFollowsLinksAndReportsPurgedVersions() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetVersions.linkKey("phi1", 3))).thenReturn(link(3, 2));
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetVersions.linkKey("phi1", 2))).thenReturn(link(2, 1));
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetVersions.dataKey("phi1", 1))).thenReturn(version(1).serialize());
+        AssetVersions versions = new AssetVersions(stub);
+
+        JSONObject first = versions.list(version(3), 2, "");
+        JSONObject second = versions.list(version(3), 2, first.getString("bookmark"));
+
+        JSONArray page = first.getJSONArray("versions");
+        assertThat(page.getJSONObject(0).getInt("version")).isEqualTo(3);
+        assertThat(page.getJSONObject(0).getBoolean("purged")).isFalse();
+        assertThat(page.getJSONObject(1).getInt("version")).isEqualTo(2);
+        assertThat(page.getJSONObject(1).getBoolean("purged")).isTrue();
+        assertThat(first.getString("bookmark")).isEqualTo("1");
+        assertThat(second.getJSONArray("versions").getJSONObject(0).getInt("version")).isEqualTo(1);
+        assertThat(second.getJSONArray("versions").getJSONObject(0).has("previous")).isFalse();
+        assertThat(second.getString("bookmark")).isEmpty();
+    }
+
+    @Test
+    public void purgeKeepsTheLink() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+
+        new AssetVersions(stub).purge("phi1", 1);
+
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetVersions.dataKey("phi1", 1));
+        verify(stub, never()).purgePrivateData(eq(ASSET_COLLECTION_NAME), eq(AssetVersions.linkKey("phi1", 1)));
+        verify(stub, never()).delPrivateData(anyString(), anyString());
+    }
+
+    @Test
+    public void purgeAllFollowsLinksFromTheHead() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetVersions.linkKey("phi1", 3))).thenReturn(link(3, 2));
+        when(stub.getPrivateData(ASSET_COLLECTION_NAME, AssetVersions.linkKey("phi1", 2))).thenReturn(link(2, 1));
+
+        new AssetVersions(stub).purgeAll("phi1", 3);
+
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetVersions.linkKey("phi1", 3));
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetVersions.dataKey("phi1", 2));
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetVersions.linkKey("phi1", 2));
+        verify(stub).purgePrivateData(ASSET_COLLECTION_NAME, AssetVersions.dataKey("phi1", 1));
+        verify(stub, times(4)).purgePrivateData(anyString(), anyString());
+        verify(stub, never()).getPrivateDataByPartialCompositeKey(anyString(), any(CompositeKey.class));
+    }
+
+    @Test
+    public void removeAllOfDeletedHeadReadsNothing() {
+        ChaincodeStub stub = mock(ChaincodeStub.class);
+
+        new AssetVersions(stub).removeAll("phi1", AssetVersions.NONE);
+
+        verify(stub, never()).getPrivateData(anyString(), anyString());
+        verify(stub, never()).delPrivateData(anyString(), anyString());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.hyperledger.fabric.contract.ClientIdentity;
+import org.hyperledger.fabric.contract.Context;
+import org.junit.jupiter.api.Test;
+
+public final class IdentityResolverTest {
+
+    private static final String ORG1_OWNER = "x509::CN=owner,OU=client,O=Hyperledger,ST=North Carolina,C=US::CN=ca.org1.example.com,O=org1.example.com,L=Durham,ST=North Carolina,C=US";
+    private static final String ORG2_PATIENT = "x509::CN=cbirm1,OU=client,O=Hyperledger,ST=North Carolina,C=US::CN=ca.org2.example.com,O=org2.example.com,L=Hursley,ST=Hampshire,C=UK";
+
+    @Test
+    public void resolvesOwnerOrgFromIssuer() {
+        assertThat(IdentityResolver.ownerOrg(ORG1_OWNER)).isEqualTo("Org1MSP");
+        assertThat(IdentityResolver.ownerOrg(ORG2_PATIENT)).isEqualTo("Org2MSP");
+        // second lookup is served from the cache
+        assertThat(IdentityResolver.ownerOrg(ORG1_OWNER)).isEqualTo("Org1MSP");
+    }
+
+    @Test
+    public void ownerWithoutOrganizationHasNoOrg() {
+        assertThat(IdentityResolver.ownerOrg("testOrg1User")).isNull();
+        assertThat(IdentityResolver.ownerOrg("")).isNull();
+        assertThat(IdentityResolver.ownerOrg(null)).isNull();
+    }
+
+    @Test
+    public void extractsFirstCommonName() {
+        assertThat(IdentityResolver.commonName(ORG2_PATIENT)).isEqualTo("cbirm1");
+        assertThat(IdentityResolver.commonName("testOrg1User")).isEmpty();
+    }
+
+    @Test
+    public void resolvesCaller() {
+        Context ctx = mock(Context.class);
+        ClientIdentity ci = mock(ClientIdentity.class);
+        when(ctx.getClientIdentity()).thenReturn(ci);
+        when(ci.getId()).thenReturn(ORG2_PATIENT);
+        when(ci.getMSPID()).thenReturn("Org2MSP");
+        when(ci.getAttributeValue("role")).thenReturn("patient");
+
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+
+        assertThat(caller.getMspId()).isEqualTo("Org2MSP");
+        assertThat(caller.getIdName()).isEqualTo("cbirm1");
+        assertThat(caller.isPatient()).isTrue();
+    }
+}
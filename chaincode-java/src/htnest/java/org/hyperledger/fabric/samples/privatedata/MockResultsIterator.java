@@ -0,0 +1,50 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+final class MockResultsIterator<T> implements QueryResultsIterator<T>, QueryResultsIteratorWithMetadata<T> {
+
+    private final List<T> results;
+    private boolean closed;
+
+    MockResultsIterator(final List<T> results) {
+        this.results = results;
+    }
+
+    @SafeVarargs
+    static <T> MockResultsIterator<T> of(final T... results) {
+        return new MockResultsIterator<>(Arrays.asList(results));
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return results.iterator();
+    }
+
+    /**
+     * The metadata of the last page of a paginated query: every result fetched, no bookmark.
+     */
+    @Override
+    public QueryResponseMetadata getMetadata() {
+        return QueryResponseMetadata.newBuilder().setFetchedRecordsCount(results.size()).setBookmark("").build();
+    }
+
+    @Override
+    public void close() throws Exception {
+        closed = true;
+    }
+}
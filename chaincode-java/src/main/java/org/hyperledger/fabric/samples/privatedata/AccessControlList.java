@@ -0,0 +1,108 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The principals allowed to read an asset, such as organization MSP IDs.
+ *
+ * Entries are kept in a hash set, so membership checks take constant time however many
+ * principals are granted, and granting a principal twice or revoking it removes every trace
+ * of it. Principal names are interned in a bounded pool shared by all assets decoded by this
+ * chaincode process, so the few organizations that appear on most ACLs are held once.
+ *
+ * {@link #entries()} returns the principals in sorted order, which is the order they are
+ * stored in, so encoding an ACL does not depend on the order of grants.
+ */
+final class AccessControlList {
+
+    private static final Map<String, String> PRINCIPALS = IdentityResolver.lruCache(IdentityResolver.CACHE_SIZE);
+
+    private final Set<String> principals;
+
+    AccessControlList() {
+        this.principals = new HashSet<>();
+    }
+
+    AccessControlList(final Collection<String> entries) {
+        this.principals = new HashSet<>(entries == null ? 0 : entries.size() * 2);
+        if (entries != null) {
+            for (String entry : entries) {
+                add(entry);
+            }
+        }
+    }
+
+    boolean contains(final String principal) {
+        return principal != null && principals.contains(principal);
+    }
+
+    /**
+     * Grants a principal.
+     *
+     * @param principal the principal to grant
+     * @return false if the principal was already granted
+     */
+    boolean add(final String principal) {
+        if (principal == null || principal.isEmpty()) {
+            return false;
+        }
+        return principals.add(intern(principal));
+    }
+
+    /**
+     * Revokes a principal.
+     *
+     * @param principal the principal to revoke
+     * @return false if the principal was not granted
+     */
+    boolean remove(final String principal) {
+        return principal != null && principals.remove(principal);
+    }
+
+    void clear() {
+        principals.clear();
+    }
+
+    int size() {
+        return principals.size();
+    }
+
+    /**
+     * The granted principals in sorted order.
+     */
+    List<String> entries() {
+        List<String> entries = new ArrayList<>(principals);
+        Collections.sort(entries);
+        return Collections.unmodifiableList(entries);
+    }
+
+    private static String intern(final String principal) {
+        String interned = PRINCIPALS.putIfAbsent(principal, principal);
+        return interned != null ? interned : principal;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof AccessControlList && principals.equals(((AccessControlList) obj).principals);
+    }
+
+    @Override
+    public int hashCode() {
+        return principals.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return entries().toString();
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Append-only journal for the public access records of an asset.
+ *
+ * Every record is written under its own composite key (asset, event, txId) instead of
+ * overwriting a single "assetID_event" key, so concurrent transactions touching the same
+ * asset never read or write a common key and cannot invalidate each other with
+ * MVCC_READ_CONFLICT. Records written under the legacy single key are still returned by
+ * {@link #read(String, Event)}, merged with the journal entries in time order.
+ *
+ * Batch transactions write a single aggregated record for all assets they touch under
+ * (batch, event, txId), and for each of those assets a reference to it under
+ * (reference, asset, event, txId). {@link #read(String, Event)} follows the references of the
+ * asset, so reading its history costs the same however many batches the ledger holds.
+ */
+final class AccessJournal {
+
+    static final String OBJECT_TYPE = "journal";
+    static final String BATCH_OBJECT_TYPE = "journalBatch";
+    static final String REFERENCE_OBJECT_TYPE = "journalRef";
+
+    // prefixes of the bookmarks of journal and batch records, see Entry#getBookmark
+    static final String JOURNAL_BOOKMARK = "journal:";
+    static final String REFERENCE_BOOKMARK = "journalRef:";
+
+    // the number of keys fetched at a time by a scan that resumes from a bookmark
+    private static final int RESUME_PAGE_SIZE = 100;
+
+    enum Event {
+        CREATION("_creation"),
+        READ("_read"),
+        ACL("_acl"),
+        REQUEST("_request"),
+        DELETION("_deletion"),
+        ERASURE("_erasure"),
+        VERSION("_version");
+
+        private final String suffix;
+
+        Event(final String suffix) {
+            this.suffix = suffix;
+        }
+
+        /**
+         * The suffix of the legacy record key, e.g. "_read" for "asset1_read".
+         */
+        String getSuffix() {
+            return suffix;
+        }
+
+        String recordKey(final String assetID) {
+            return assetID + suffix;
+        }
+    }
+
+    /**
+     * A single journal record.
+     */
+    static final class Entry {
+
+        private final String txId;
+        private final Instant timestamp;
+        private final String record;
+        private final boolean deleted;
+        private final String bookmark;
+
+        Entry(final String txId, final Instant timestamp, final String record) {
+            this(txId, timestamp, record, false);
+        }
+
+        Entry(final String txId, final Instant timestamp, final String record, final boolean deleted) {
+            this(txId, timestamp, record, deleted, txId);
+        }
+
+        private Entry(final String txId, final Instant timestamp, final String record, final boolean deleted, final String bookmark) {
+            this.txId = txId;
+            this.timestamp = timestamp;
+            this.record = record;
+            this.deleted = deleted;
+            this.bookmark = bookmark;
+        }
+
+        String getTxId() {
+            return txId;
+        }
+
+        Instant getTimestamp() {
+            return timestamp;
+        }
+
+        String getRecord() {
+            return record;
+        }
+
+        /**
+         * Whether the entry is the deletion of a key rather than a record. Only plain key
+         * histories contain deletions; journal records are never deleted.
+         */
+        boolean isDeleted() {
+            return deleted;
+        }
+
+        /**
+         * Where a scan resumes after this entry: the txId for a key history, prefixed with
+         * {@link #JOURNAL_BOOKMARK} or {@link #REFERENCE_BOOKMARK} for journal and batch
+         * records.
+         */
+        String getBookmark() {
+            return bookmark;
+        }
+    }
+
+    private static final Comparator<Entry> TIME_ORDER = Comparator
+            .comparing(Entry::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Entry::getTxId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final ChaincodeStub stub;
+
+    AccessJournal(final ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    /**
+     * Appends a record for the asset under a key that is unique to the current transaction.
+     *
+     * @param assetID the ID of the asset
+     * @param event   the kind of access being recorded
+     * @param record  the human readable record
+     */
+    void append(final String assetID, final Event event, final String record) {
+        append(assetID, event, record, stub.getTxId(), stub.getTxTimestamp());
+    }
+
+    /**
+     * Appends a record for an access that happened in another transaction, such as a read
+     * that was evaluated and is recorded later. Appending the same txId again overwrites the
+     * entry, so recording an access twice leaves a single record.
+     *
+     * @param assetID   the ID of the asset
+     * @param event     the kind of access being recorded
+     * @param record    the human readable record
+     * @param txId      the ID of the transaction that accessed the asset
+     * @param timestamp the time of the access
+     */
+    void append(final String assetID, final Event event, final String record, final String txId, final Instant timestamp) {
+        JSONObject json = new JSONObject();
+        json.put("txId", txId);
+        json.put("timestamp", timestamp == null ? 0L : timestamp.toEpochMilli());
+        json.put("record", record);
+        stub.putStringState(entryKey(assetID, event, txId), json.toString());
+    }
+
+    /**
+     * Appends one record for a set of assets changed by the current transaction, and a
+     * reference to it for each of the assets.
+     *
+     * @param assetIDs the IDs of the assets
+     * @param event    the kind of access being recorded
+     * @param record   the human readable record
+     */
+    void appendBatch(final List<String> assetIDs, final Event event, final String record) {
+        String txId = stub.getTxId();
+        Instant timestamp = stub.getTxTimestamp();
+        JSONObject json = new JSONObject();
+        json.put("txId", txId);
+        json.put("timestamp", timestamp == null ? 0L : timestamp.toEpochMilli());
+        json.put("record", record);
+        json.put("assets", new JSONArray(assetIDs));
+        String batchKey = batchKey(event, txId);
+        stub.putStringState(batchKey, json.toString());
+        for (String assetID : assetIDs) {
+            stub.putStringState(referenceKey(assetID, event, txId), batchKey);
+        }
+    }
+
+    /**
+     * Returns all records of the given event for the asset, oldest first.
+     *
+     * @param assetID the ID of the asset
+     * @param event   the kind of access to read
+     * @return the records found in the journal and under the legacy key
+     */
+    List<Entry> read(final String assetID, final Event event) {
+        List<Entry> entries = new ArrayList<>();
+        scan(assetID, event, entries::add);
+        entries.sort(TIME_ORDER);
+        return entries;
+    }
+
+    /**
+     * Passes the records of the given event for the asset to a visitor one at a time, until
+     * the visitor returns false. The records come in a fixed order, which is not time order:
+     * records under the legacy key, then journal records and then the batch records the asset
+     * has references to, each by transaction ID. Only the current record is held in memory
+     * and every iterator is closed before this returns.
+     *
+     * @param assetID the ID of the asset
+     * @param event   the kind of access to read
+     * @param visitor called with each record, returns whether to continue
+     */
+    void scan(final String assetID, final Event event, final Predicate<Entry> visitor) {
+        scan(assetID, event, "", visitor);
+    }
+
+    /**
+     * Like {@link #scan(String, Event, Predicate)}, but starting at the record a bookmark of
+     * the journal or of the batch references points to, which is passed to the visitor first.
+     * Those parts of the journal are range scanned from the bookmarked key, so resuming costs
+     * the same however many records come before it. Any other bookmark, a txId of the legacy
+     * key history, starts at the beginning. A bookmarked scan uses paginated queries, which a
+     * peer only runs in read-only transactions.
+     *
+     * @param assetID  the ID of the asset
+     * @param event    the kind of access to read
+     * @param bookmark the {@link Entry#getBookmark()} of the record to start at, or empty
+     * @param visitor  called with each record, returns whether to continue
+     */
+    void scan(final String assetID, final Event event, final String bookmark, final Predicate<Entry> visitor) {
+        try {
+            boolean fromJournal = bookmark.startsWith(JOURNAL_BOOKMARK);
+            boolean fromReferences = bookmark.startsWith(REFERENCE_BOOKMARK);
+            if (!fromJournal && !fromReferences && !scanHistory(stub, event.recordKey(assetID), false, visitor)) {
+                return;
+            }
+            if (!fromReferences) {
+                Function<String, Entry> journalEntry = value -> entryOf(new JSONObject(value), JOURNAL_BOOKMARK);
+                boolean more = fromJournal
+                        ? scanFrom(OBJECT_TYPE, entryKey(assetID, event, bookmark.substring(JOURNAL_BOOKMARK.length())), assetID, event, journalEntry, visitor)
+                        : scanAll(OBJECT_TYPE, assetID, event, journalEntry, visitor);
+                if (!more) {
+                    return;
+                }
+            }
+            if (fromReferences) {
+                scanFrom(REFERENCE_OBJECT_TYPE, referenceKey(assetID, event, bookmark.substring(REFERENCE_BOOKMARK.length())), assetID, event, this::batchOf, visitor);
+            } else {
+                scanAll(REFERENCE_OBJECT_TYPE, assetID, event, this::batchOf, visitor);
+            }
+        } catch (ChaincodeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ChaincodeException("Journal read error: " + e.getMessage(), "DATA_ERROR");
+        }
+    }
+
+    /**
+     * Passes all entries of an object type for the asset and event to a visitor, until the
+     * visitor returns false.
+     *
+     * @param entries reads the entry from the value of a key, null to skip it
+     * @return false if the visitor stopped the scan
+     */
+    private boolean scanAll(final String objectType, final String assetID, final Event event, final Function<String, Entry> entries,
+            final Predicate<Entry> visitor) throws Exception {
+        try (QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(objectType, assetID, event.name())) {
+            for (KeyValue result : results) {
+                Entry entry = entries.apply(new String(result.getValue(), UTF_8));
+                if (entry != null && !visitor.test(entry)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Like {@link #scanAll}, but from a start key on, fetching a page of keys at a time.
+     */
+    private boolean scanFrom(final String objectType, final String startKey, final String assetID, final Event event,
+            final Function<String, Entry> entries, final Predicate<Entry> visitor) throws Exception {
+        CompositeKey prefix = new CompositeKey(objectType, assetID, event.name());
+        String bookmark = startKey;
+        while (!bookmark.isEmpty()) {
+            int fetched = 0;
+            try (QueryResultsIteratorWithMetadata<KeyValue> results = stub.getStateByPartialCompositeKeyWithPagination(prefix, RESUME_PAGE_SIZE, bookmark)) {
+                for (KeyValue result : results) {
+                    fetched++;
+                    Entry entry = entries.apply(new String(result.getValue(), UTF_8));
+                    if (entry != null && !visitor.test(entry)) {
+                        return false;
+                    }
+                }
+                bookmark = fetched < RESUME_PAGE_SIZE || results.getMetadata() == null ? "" : results.getMetadata().getBookmark();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the batch record a reference points to.
+     *
+     * @return the record, or null if there is none under the key
+     */
+    private Entry batchOf(final String batchKey) {
+        String batch = stub.getStringState(batchKey);
+        return batch == null || batch.isEmpty() ? null : entryOf(new JSONObject(batch), REFERENCE_BOOKMARK);
+    }
+
+    /**
+     * Passes the history of a plain key to a visitor one modification at a time, until the
+     * visitor returns false, and closes the history iterator.
+     *
+     * @param stub          the chaincode stub
+     * @param key           the key to read the history of
+     * @param withDeletions whether to pass deletions of the key to the visitor
+     * @param visitor       called with each modification, returns whether to continue
+     * @return false if the visitor stopped the scan
+     */
+    static boolean scanHistory(final ChaincodeStub stub, final String key, final boolean withDeletions, final Predicate<Entry> visitor) {
+        try (QueryResultsIterator<KeyModification> history = stub.getHistoryForKey(key)) {
+            for (KeyModification modification : history) {
+                if (modification.isDeleted() && !withDeletions) {
+                    continue;
+                }
+                byte[] value = modification.getValue();
+                Entry entry = new Entry(modification.getTxId(), modification.getTimestamp(),
+                        value == null ? "" : new String(value, UTF_8), modification.isDeleted());
+                if (!visitor.test(entry)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            throw new ChaincodeException("History read error: " + e.getMessage(), "DATA_ERROR");
+        }
+    }
+
+    private static Entry entryOf(final JSONObject json, final String bookmarkPrefix) {
+        String txId = json.getString("txId");
+        return new Entry(txId, Instant.ofEpochMilli(json.getLong("timestamp")), json.getString("record"), false, bookmarkPrefix + txId);
+    }
+
+    /**
+     * Maps a legacy record key such as "asset1_read" to the journal event it belongs to.
+     *
+     * @param recordKey the legacy record key
+     * @return the event, or null if the key is not a journaled record
+     */
+    static Event eventOf(final String recordKey) {
+        for (Event event : Event.values()) {
+            if (recordKey.length() > event.getSuffix().length() && recordKey.endsWith(event.getSuffix())) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    static String assetOf(final String recordKey, final Event event) {
+        return recordKey.substring(0, recordKey.length() - event.getSuffix().length());
+    }
+
+    static String entryKey(final String assetID, final Event event, final String txId) {
+        return new CompositeKey(OBJECT_TYPE, assetID, event.name(), txId).toString();
+    }
+
+    static String batchKey(final Event event, final String txId) {
+        return new CompositeKey(BATCH_OBJECT_TYPE, event.name(), txId).toString();
+    }
+
+    static String referenceKey(final String assetID, final Event event, final String txId) {
+        return new CompositeKey(REFERENCE_OBJECT_TYPE, assetID, event.name(), txId).toString();
+    }
+}
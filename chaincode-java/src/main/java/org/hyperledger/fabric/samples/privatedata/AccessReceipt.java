@@ -0,0 +1,109 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.json.JSONObject;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Receipts for asset reads that are evaluated rather than submitted.
+ *
+ * A receipt names the read (the ID of the evaluated proposal, the asset and its data subject,
+ * the reader and the time) and carries an HMAC-SHA256 tag over those fields. The tag key is kept in the asset
+ * collection, so only peers of the collection members can issue or check receipts. The
+ * reader later submits its receipts in a batch; each one is checked and written to the
+ * access journal under the ID of the read, which makes recording the same receipt twice
+ * harmless.
+ */
+final class AccessReceipt {
+
+    static final String KEY_OBJECT_TYPE = "receiptKey";
+    static final int MIN_KEY_LENGTH = 32;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String VERSION = "v1";
+
+    private AccessReceipt() {
+    }
+
+    static String keyKey() {
+        return new CompositeKey(KEY_OBJECT_TYPE).toString();
+    }
+
+    /**
+     * Reads the receipt key from the asset collection.
+     *
+     * @param stub the chaincode stub
+     * @return the key
+     * @throws ChaincodeException if no key has been set with SetReceiptKey
+     */
+    static byte[] key(final ChaincodeStub stub) {
+        byte[] key = stub.getPrivateData(ASSET_COLLECTION_NAME, keyKey());
+        if (key == null || key.length == 0) {
+            throw new ChaincodeException("Access receipts are not enabled, no receipt key has been set", "RECEIPTS_DISABLED");
+        }
+        return key;
+    }
+
+    /**
+     * Issues a receipt for a read by the current proposal.
+     *
+     * @param stub    the chaincode stub
+     * @param caller  the reader
+     * @param asset   the asset read
+     * @return the receipt
+     */
+    static JSONObject issue(final ChaincodeStub stub, final IdentityResolver.Caller caller, final Asset asset) {
+        Instant timestamp = stub.getTxTimestamp();
+        JSONObject receipt = new JSONObject();
+        receipt.put("receiptId", stub.getTxId());
+        receipt.put("assetID", asset.getAssetID());
+        receipt.put("dataSubject", asset.getDataSubject());
+        receipt.put("mspId", caller.getMspId());
+        receipt.put("reader", caller.getIdName());
+        receipt.put("timestamp", timestamp == null ? 0L : timestamp.toEpochMilli());
+        receipt.put("mac", mac(key(stub), receipt));
+        return receipt;
+    }
+
+    /**
+     * Checks that a receipt was issued with the given key and has not been altered.
+     *
+     * @param key     the receipt key
+     * @param receipt the receipt
+     * @return whether the tag matches the receipt
+     */
+    static boolean verify(final byte[] key, final JSONObject receipt) {
+        byte[] expected = mac(key, receipt).getBytes(UTF_8);
+        byte[] actual = receipt.optString("mac", "").getBytes(UTF_8);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private static String mac(final byte[] key, final JSONObject receipt) {
+        // fields are joined with a separator that cannot occur in IDs or MSP IDs
+        String signed = String.join("\n", VERSION, receipt.getString("receiptId"), receipt.getString("assetID"),
+                receipt.getString("dataSubject"), receipt.getString("mspId"), receipt.getString("reader"), Long.toString(receipt.getLong("timestamp")));
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+            return Base64.getEncoder().encodeToString(mac.doFinal(signed.getBytes(UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new ChaincodeException("Receipt error: " + e.getMessage(), "DATA_ERROR");
+        }
+    }
+}
@@ -6,23 +6,30 @@ package org.hyperledger.fabric.samples.privatedata;
 
 import java.util.Objects;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import org.hyperledger.fabric.contract.annotation.DataType;
 import org.hyperledger.fabric.contract.annotation.Property;
 
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import org.json.JSONArray;
 
 
 
 @DataType()
 public final class Asset {
 
+    /**
+     * Schema of records written before the owner organization was stored with the asset.
+     */
+    static final int LEGACY_SCHEMA = 1;
+
+    /**
+     * Current schema: carries the owner's MSP ID and common name next to the owner DN.
+     */
+    static final int CURRENT_SCHEMA = 2;
+
     @Property()
     private final String assetID;
 
@@ -38,12 +45,29 @@ public final class Asset {
     @Property()
     private String owner;
 
+    @Property()
+    private String ownerOrg;
+
+    @Property()
+    private String ownerName;
+
+    @Property()
+    private int schemaVersion = CURRENT_SCHEMA;
+
     @Property()
     private final String filekey;
 
+    // the sorted entries of the ACL, as in the contract metadata and the JSON of the asset;
+    // null after a change until getAcl() is called again
     @Property()
     private List<String> acl;
 
+    // the ACL itself, a set with constant time lookups
+    private final AccessControlList principals;
+
+    // the ACL generation of the asset, see AssetAcl; null for assets created before it
+    private String aclGeneration;
+
     public String getAssetID() {
         return assetID;
     }
@@ -60,6 +84,22 @@ public final class Asset {
         return owner;
     }
 
+    /**
+     * The MSP ID of the owner's organization. Records written before the schema carried it
+     * derive it from the owner DN until they are upgraded.
+     */
+    public String getOwnerOrg() {
+        return ownerOrg != null ? ownerOrg : IdentityResolver.ownerOrg(owner);
+    }
+
+    public String getOwnerName() {
+        return ownerName != null ? ownerName : IdentityResolver.commonName(owner);
+    }
+
+    public int getSchemaVersion() {
+        return schemaVersion;
+    }
+
     public String getPointer() {
         return pointer;
     }
@@ -68,20 +108,94 @@ public final class Asset {
         return filekey;
     }
 
+    /**
+     * The principals on the ACL in sorted order.
+     */
     public List<String> getAcl() {
+        if (acl == null) {
+            acl = Collections.unmodifiableList(principals.entries());
+        }
         return acl;
     }
 
+    /**
+     * Checks whether a principal is on the ACL, in constant time.
+     */
+    boolean isOnAcl(final String principal) {
+        return principals.contains(principal);
+    }
+
+    int getAclSize() {
+        return principals.size();
+    }
+
+    String getAclGeneration() {
+        return aclGeneration;
+    }
+
     public void setOwner(final String newowner) {
         owner = newowner;
     }
 
-    public void addToAcl(final String newEntry) {
-        acl.add(newEntry);
+    void setOwnerOrg(final String newOwnerOrg) {
+        ownerOrg = newOwnerOrg;
+    }
+
+    void setOwnerName(final String newOwnerName) {
+        ownerName = newOwnerName;
+    }
+
+    void setSchemaVersion(final int newSchemaVersion) {
+        schemaVersion = newSchemaVersion;
+    }
+
+    void setAclGeneration(final String newAclGeneration) {
+        aclGeneration = newAclGeneration;
     }
 
-    public void removeFromAcl(final String entry) {
-        acl.remove(entry);
+    /**
+     * Brings a record read in an older schema up to date, so that it is stored in the
+     * current schema the next time it is written.
+     *
+     * @return true if the asset was changed
+     */
+    boolean upgrade() {
+        if (schemaVersion >= CURRENT_SCHEMA) {
+            return false;
+        }
+        ownerOrg = getOwnerOrg();
+        ownerName = getOwnerName();
+        schemaVersion = CURRENT_SCHEMA;
+        return true;
+    }
+
+    /**
+     * Adds a principal to the ACL.
+     *
+     * @return false if the principal was already on the ACL
+     */
+    public boolean addToAcl(final String newEntry) {
+        acl = null;
+        return principals.add(newEntry);
+    }
+
+    /**
+     * Removes a principal from the ACL.
+     *
+     * @return false if the principal was not on the ACL
+     */
+    public boolean removeFromAcl(final String entry) {
+        acl = null;
+        return principals.remove(entry);
+    }
+
+    /**
+     * Removes all principals from the ACL embedded in the asset record, once they are kept
+     * under their own keys, see {@link AssetAcl}.
+     */
+    void clearAcl() {
+        acl = null;
+        principals.clear();
     }
 
     public Asset(final String pointer,
@@ -94,37 +208,34 @@ public final class Asset {
         this.version = version;
         this.owner = owner;
         this.filekey = filekey;
-        this.acl = acl;
+        this.principals = new AccessControlList(acl);
     }
 
+    /**
+     * Encodes the asset for storage. Records read in an older schema are upgraded first, so
+     * every write stores the current schema.
+     */
     public byte[] serialize() {
-        String jsonStr = new JSONObject(this).toString();
-        return jsonStr.getBytes(UTF_8);
+        upgrade();
+        return AssetCodec.encode(this);
+    }
+
+    /**
+     * Encodes the asset for storage without the ACL entries embedded in it, once they are
+     * kept under their own keys, see {@link AssetAcl}. The asset itself keeps them.
+     */
+    byte[] serializeWithoutAcl() {
+        upgrade();
+        return AssetCodec.encodeWithoutAcl(this);
     }
 
     public static Asset deserialize(final byte[] assetJSON) {
-        return deserialize(new String(assetJSON, UTF_8));
+        return AssetCodec.decode(assetJSON);
     }
 
     public static Asset deserialize(final String assetJSON) {
         try {
-            JSONObject json = new JSONObject(assetJSON);
-            String jsonString = json.toString();
-            System.out.printf("check1: ", jsonString);
-            final String id = json.getString("assetID");
-            System.out.printf("check2: ", id);
-            final String pointer = json.getString("pointer");
-            System.out.printf("check3: ", pointer);
-            final String dataSubject = json.getString("dataSubject");
-            final String owner = json.getString("owner");
-            final int version = json.getInt("version");
-            final String filekey = json.getString("filekey");
-            final JSONArray aclJsonArray = json.getJSONArray("acl");
-            List<String> acl = new ArrayList<>();
-            for (int i = 0; i < aclJsonArray.length(); i++) {
-                acl.add(aclJsonArray.getString(i));
-            }
-            return new Asset(pointer, id, dataSubject, version, owner, filekey, acl);
+            return AssetCodec.fromJson(new JSONObject(assetJSON));
         } catch (Exception e) {
             throw new ChaincodeException("Deserialize error: " + e.getMessage(), "DATA_ERROR");
         }
@@ -153,14 +264,15 @@ public final class Asset {
 
     @Override
     public int hashCode() {
-        return Objects.hash(getPointer(), getAssetID(), getDataSubject(), getVersion(), getOwner(), getFilekey(), getAcl());
+        return Objects.hash(getPointer(), getAssetID(), getDataSubject(), getVersion(), getOwner(), getFilekey(), principals);
     }
 
     @Override
     public String toString() {
         return this.getClass().getSimpleName() + "@" + Integer.toHexString(hashCode())
                 + " [assetID=" + assetID + ", dataSubject="
-                + dataSubject + ", version=" + version + ", owner=" + owner + ", filekey=" + filekey + ", acl=" + acl + "]";
+                + dataSubject + ", version=" + version + ", owner=" + owner + ", ownerOrg=" + ownerOrg
+                + ", filekey=" + filekey + ", acl=" + principals + ", schemaVersion=" + schemaVersion + "]";
     }
 
 
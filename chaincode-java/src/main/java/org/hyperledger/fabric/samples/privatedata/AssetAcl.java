@@ -0,0 +1,164 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ACL of an asset kept as one key per principal next to the asset.
+ *
+ * Each grant is a composite key "acl~assetID~principal" in the asset collection. Granting
+ * or revoking a principal puts or deletes its key without reading anything, so ACL changes
+ * never rewrite the asset and only conflict with a concurrent change of the same principal
+ * of the same asset. Checking a principal is a single point lookup.
+ *
+ * The value of a principal key is the ACL generation of the asset it was granted for, the
+ * ID of the transaction that created the asset. A key only grants access while it matches
+ * the generation of the asset, so deleting or purging an asset revokes its whole ACL
+ * without touching the principal keys, which a transaction that writes could not search
+ * for. Their stale keys are ignored, and overwritten by grants of an asset created again
+ * under the same ID. Only {@link #list(Asset)}, which is for evaluate transactions, scans
+ * the principal keys of an asset.
+ *
+ * Assets written before this change still carry their ACL in the asset record. Their
+ * embedded entries keep granting access until the asset is migrated, which moves them to
+ * per-principal keys and rewrites the asset once without them. Revoking an embedded entry
+ * migrates the asset first.
+ */
+final class AssetAcl {
+
+    static final String OBJECT_TYPE = "acl~assetID~principal";
+
+    private final ChaincodeStub stub;
+
+    AssetAcl(final ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    static String key(final String assetID, final String principal) {
+        return new CompositeKey(OBJECT_TYPE, assetID, principal).toString();
+    }
+
+    /**
+     * The ACL generation of an asset; assets created before it was stored have the empty one.
+     */
+    private static byte[] generation(final Asset asset) {
+        String generation = asset.getAclGeneration();
+        return (generation == null ? "" : generation).getBytes(UTF_8);
+    }
+
+    /**
+     * Checks whether a principal is on the ACL of an asset.
+     *
+     * @param asset     the asset
+     * @param principal the principal, e.g. an MSP ID
+     * @return true if the principal was granted access
+     */
+    boolean contains(final Asset asset, final String principal) {
+        if (principal == null || principal.isEmpty()) {
+            return false;
+        }
+        if (asset.isOnAcl(principal)) {
+            return true;
+        }
+        byte[] entry = stub.getPrivateData(ASSET_COLLECTION_NAME, key(asset.getAssetID(), principal));
+        return entry != null && Arrays.equals(entry, generation(asset));
+    }
+
+    /**
+     * Grants a principal access to an asset.
+     *
+     * @return false if the principal is embedded in the asset record already
+     */
+    boolean grant(final Asset asset, final String principal) {
+        if (asset.isOnAcl(principal)) {
+            return false;
+        }
+        stub.putPrivateData(ASSET_COLLECTION_NAME, key(asset.getAssetID(), principal), generation(asset));
+        return true;
+    }
+
+    /**
+     * Revokes the access of a principal to an asset. If the principal is embedded in a
+     * legacy asset record, the asset is migrated first.
+     */
+    void revoke(final Asset asset, final String principal) {
+        if (asset.isOnAcl(principal)) {
+            migrate(asset, principal);
+            return;
+        }
+        stub.delPrivateData(ASSET_COLLECTION_NAME, key(asset.getAssetID(), principal));
+    }
+
+    /**
+     * Moves the entries embedded in an asset record to per-principal keys and rewrites the
+     * asset without them.
+     *
+     * @param asset the asset
+     * @return false if the asset had no embedded entries
+     */
+    boolean migrate(final Asset asset) {
+        return migrate(asset, null);
+    }
+
+    private boolean migrate(final Asset asset, final String except) {
+        if (asset.getAclSize() == 0) {
+            return false;
+        }
+        putEntries(asset, except);
+        stub.putPrivateData(ASSET_COLLECTION_NAME, asset.getAssetID(), asset.serializeWithoutAcl());
+        asset.clearAcl();
+        return true;
+    }
+
+    /**
+     * Starts the ACL generation of a new asset and writes its ACL as per-principal keys. The
+     * caller then writes the asset with {@link Asset#serializeWithoutAcl()}.
+     *
+     * @param asset the asset about to be written
+     */
+    void moveOut(final Asset asset) {
+        asset.setAclGeneration(stub.getTxId());
+        putEntries(asset, null);
+    }
+
+    private void putEntries(final Asset asset, final String except) {
+        byte[] generation = generation(asset);
+        for (String principal : asset.getAcl()) {
+            if (!principal.equals(except)) {
+                stub.putPrivateData(ASSET_COLLECTION_NAME, key(asset.getAssetID(), principal), generation);
+            }
+        }
+    }
+
+    /**
+     * Lists the principals on the ACL of an asset in sorted order. This scans the principal
+     * keys of the asset, which a peer only allows in transactions that do not write.
+     *
+     * @param asset the asset
+     * @return the principals granted in the asset record and under per-principal keys
+     */
+    List<String> list(final Asset asset) throws Exception {
+        AccessControlList acl = new AccessControlList(asset.getAcl());
+        byte[] generation = generation(asset);
+        try (QueryResultsIterator<KeyValue> entries = stub.getPrivateDataByPartialCompositeKey(ASSET_COLLECTION_NAME, OBJECT_TYPE, asset.getAssetID())) {
+            for (KeyValue entry : entries) {
+                if (Arrays.equals(entry.getValue(), generation)) {
+                    acl.add(CompositeKey.parseCompositeKey(entry.getKey()).getAttributes().get(1));
+                }
+            }
+        }
+        return acl.entries();
+    }
+}
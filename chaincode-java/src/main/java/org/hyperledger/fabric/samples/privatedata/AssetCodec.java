@@ -0,0 +1,188 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes {@link Asset} values stored in the asset collection.
+ *
+ * Assets are stored as flat JSON documents, written field by field rather than by reflecting
+ * over the bean. CouchDB can only index and query JSON documents, so the patient queries and
+ * the indexes of the asset collection depend on it. Documents written by the bean
+ * serialization of earlier versions of this chaincode read the same way.
+ *
+ * Records without a schema version decode as {@link Asset#LEGACY_SCHEMA}; the current
+ * schema adds the owner's organization and common name.
+ *
+ * Queries that only list assets read a {@link Summary} instead of the full asset, which
+ * finds the two fields they need in the document rather than parsing all of it.
+ */
+final class AssetCodec {
+
+    /**
+     * The asset ID and owner organization of an encoded asset.
+     */
+    static final class Summary {
+
+        private final String assetID;
+        private final String ownerOrg;
+
+        Summary(final String assetID, final String ownerOrg) {
+            this.assetID = assetID;
+            this.ownerOrg = ownerOrg;
+        }
+
+        String getAssetID() {
+            return assetID;
+        }
+
+        String getOwnerOrg() {
+            return ownerOrg;
+        }
+    }
+
+    private AssetCodec() {
+    }
+
+    static byte[] encode(final Asset asset) {
+        return toJson(asset).toString().getBytes(UTF_8);
+    }
+
+    static byte[] encodeWithoutAcl(final Asset asset) {
+        return toJson(asset).put("acl", new JSONArray()).toString().getBytes(UTF_8);
+    }
+
+    static Asset decode(final byte[] value) {
+        try {
+            return fromJson(new JSONObject(new String(value, UTF_8)));
+        } catch (ChaincodeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ChaincodeException("Deserialize error: " + e.getMessage(), "DATA_ERROR");
+        }
+    }
+
+    /**
+     * Reads only the asset ID and owner organization of an encoded asset. The owner
+     * organization of records written before it was stored is derived from the owner DN.
+     *
+     * @param value the encoded asset
+     * @return the summary of the asset
+     */
+    static Summary summarize(final byte[] value) {
+        try {
+            final String json = new String(value, UTF_8);
+            final String id = jsonField(json, "assetID");
+            if (id == null) {
+                // not a flat asset document, let the full decoder report what is wrong with it
+                Asset asset = decode(value);
+                return new Summary(asset.getAssetID(), asset.getOwnerOrg());
+            }
+            String ownerOrg = jsonField(json, "ownerOrg");
+            if (ownerOrg == null) {
+                ownerOrg = IdentityResolver.ownerOrg(jsonField(json, "owner"));
+            }
+            return new Summary(id, ownerOrg);
+        } catch (ChaincodeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ChaincodeException("Deserialize error: " + e.getMessage(), "DATA_ERROR");
+        }
+    }
+
+    static JSONObject toJson(final Asset asset) {
+        JSONObject json = new JSONObject();
+        json.put("assetID", asset.getAssetID());
+        json.put("pointer", asset.getPointer());
+        json.put("dataSubject", asset.getDataSubject());
+        json.put("version", asset.getVersion());
+        json.put("owner", asset.getOwner());
+        json.put("ownerOrg", asset.getOwnerOrg());
+        json.put("ownerName", asset.getOwnerName());
+        json.put("filekey", asset.getFilekey());
+        json.put("acl", new JSONArray(asset.getAcl()));
+        json.put("schemaVersion", asset.getSchemaVersion());
+        json.put("aclGeneration", asset.getAclGeneration());
+        return json;
+    }
+
+    static Asset fromJson(final JSONObject json) {
+        final String id = json.getString("assetID");
+        final String pointer = json.getString("pointer");
+        final String dataSubject = json.getString("dataSubject");
+        final String owner = json.getString("owner");
+        final int version = json.getInt("version");
+        final String filekey = json.getString("filekey");
+        final JSONArray aclJsonArray = json.getJSONArray("acl");
+        List<String> acl = new ArrayList<>(aclJsonArray.length());
+        for (int i = 0; i < aclJsonArray.length(); i++) {
+            acl.add(aclJsonArray.getString(i));
+        }
+        Asset asset = new Asset(pointer, id, dataSubject, version, owner, filekey, acl);
+        asset.setSchemaVersion(json.optInt("schemaVersion", Asset.LEGACY_SCHEMA));
+        asset.setOwnerOrg(json.optString("ownerOrg", null));
+        asset.setOwnerName(json.optString("ownerName", null));
+        asset.setAclGeneration(json.optString("aclGeneration", null));
+        return asset;
+    }
+
+    /**
+     * Finds the string value of a field of a JSON object without parsing the rest of it.
+     * A key is only matched where it is not itself inside a string value, which for the flat
+     * asset documents means it is preceded by an unescaped quote and followed by a colon.
+     */
+    private static String jsonField(final String json, final String name) {
+        final String key = "\"" + name + "\"";
+        int from = 0;
+        while (true) {
+            int at = json.indexOf(key, from);
+            if (at < 0) {
+                return null;
+            }
+            from = at + key.length();
+            if (at > 0 && json.charAt(at - 1) == '\\') {
+                continue;
+            }
+            int pos = skipWhitespace(json, from);
+            if (pos >= json.length() || json.charAt(pos) != ':') {
+                continue;
+            }
+            pos = skipWhitespace(json, pos + 1);
+            if (pos >= json.length() || json.charAt(pos) != '"') {
+                return null; // null or a non-string value
+            }
+            int end = pos + 1;
+            boolean escaped = false;
+            while (end < json.length() && json.charAt(end) != '"') {
+                if (json.charAt(end) == '\\') {
+                    escaped = true;
+                    end++;
+                }
+                end++;
+            }
+            if (end >= json.length()) {
+                throw new IllegalArgumentException("unterminated string for " + name);
+            }
+            return escaped ? new JSONTokener(json.substring(pos + 1, end + 1)).nextString('"') : json.substring(pos + 1, end);
+        }
+    }
+
+    private static int skipWhitespace(final String s, final int from) {
+        int pos = from;
+        while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * The context of a transaction of {@link AssetManagement}, created for each transaction by
+ * {@link AssetManagement#createContext}. It carries the state that lives as long as the
+ * transaction, such as the asset changes to emit when it ends.
+ */
+final class AssetContext extends Context {
+
+    private final AssetEvents events;
+
+    AssetContext(final ChaincodeStub stub) {
+        super(stub);
+        this.events = new AssetEvents(stub);
+    }
+
+    AssetEvents getEvents() {
+        return events;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Structured deletion and erasure records of assets and the erasure tasks of their holders.
+ *
+ * The latest deletion and the latest erasure request of an asset are each kept as a JSON
+ * value under a public key of their own, so they are found with a single point lookup instead
+ * of scanning the journal and parsing its human readable records, which are still written for
+ * {@link AssetManagement#getHistoryForAsset}. The public record only names the asset, its
+ * owner organization and the organization of the client. The data subject and the name of
+ * the client are personal data, kept under a key of their own in the asset collection and
+ * purged with the asset, see {@link #purgeDetails(String)}.
+ *
+ * An erasure request creates one task per organization holding a copy of the asset, a public
+ * key (erasureTask, assetID, holder). Each holder confirms its own task, so confirmations
+ * never conflict with each other, and requesting the erasure again keeps the tasks that were
+ * confirmed already.
+ *
+ * Assets deleted before these records were introduced only have a journal record. Their
+ * deletion is recovered from the latest of those records when no structured record exists.
+ */
+final class AssetErasure {
+
+    static final String DELETION_OBJECT_TYPE = "deletion";
+    static final String ERASURE_OBJECT_TYPE = "erasure";
+    static final String TASK_OBJECT_TYPE = "erasureTask";
+    static final String DELETION_DETAIL_OBJECT_TYPE = "deletionDetail";
+    static final String ERASURE_DETAIL_OBJECT_TYPE = "erasureDetail";
+
+    static final String PENDING = "pending";
+    static final String CONFIRMED = "confirmed";
+
+    /**
+     * A deletion or an erasure request of an asset.
+     */
+    static final class Record {
+
+        private final String assetID;
+        private final String dataSubject;
+        private final String ownerOrg;
+        private final String mspId;
+        private final String idName;
+        private final String txId;
+        private final long timestamp;
+
+        Record(final String assetID, final String dataSubject, final String ownerOrg, final String mspId, final String idName,
+                final String txId, final long timestamp) {
+            this.assetID = assetID;
+            this.dataSubject = dataSubject;
+            this.ownerOrg = ownerOrg;
+            this.mspId = mspId;
+            this.idName = idName;
+            this.txId = txId;
+            this.timestamp = timestamp;
+        }
+
+        String getAssetID() {
+            return assetID;
+        }
+
+        /**
+         * The data subject of the asset, or null once the asset has been purged.
+         */
+        String getDataSubject() {
+            return dataSubject;
+        }
+
+        String getOwnerOrg() {
+            return ownerOrg;
+        }
+
+        /**
+         * The organization of the client that deleted the asset or requested its erasure.
+         */
+        String getMspId() {
+            return mspId;
+        }
+
+        /**
+         * The name of the client, or null once the asset has been purged.
+         */
+        String getIdName() {
+            return idName;
+        }
+
+        String getTxId() {
+            return txId;
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = toPublicJson();
+            json.put("dataSubject", dataSubject);
+            json.put("idName", idName);
+            return json;
+        }
+
+        /**
+         * The part of the record kept in public state, without personal data.
+         */
+        JSONObject toPublicJson() {
+            JSONObject json = new JSONObject();
+            json.put("assetID", assetID);
+            json.put("ownerOrg", ownerOrg);
+            json.put("mspId", mspId);
+            json.put("txId", txId == null ? "" : txId);
+            json.put("timestamp", timestamp);
+            return json;
+        }
+
+        /**
+         * The part of the record kept in the asset collection.
+         */
+        JSONObject toDetailJson() {
+            JSONObject json = new JSONObject();
+            json.put("dataSubject", dataSubject);
+            json.put("idName", idName);
+            return json;
+        }
+
+        /**
+         * Reads a public record, with the personal data from its detail if that still exists.
+         * Records written before the details were split off carry them themselves.
+         */
+        static Record fromJson(final JSONObject json, final JSONObject detail) {
+            JSONObject personal = detail == null ? json : detail;
+            return new Record(json.getString("assetID"), personal.optString("dataSubject", null), json.getString("ownerOrg"),
+                    json.getString("mspId"), personal.optString("idName", null), json.optString("txId"), json.optLong("timestamp"));
+        }
+    }
+
+    private final ChaincodeStub stub;
+
+    AssetErasure(final ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    static String deletionKey(final String assetID) {
+        return new CompositeKey(DELETION_OBJECT_TYPE, assetID).toString();
+    }
+
+    static String erasureKey(final String assetID) {
+        return new CompositeKey(ERASURE_OBJECT_TYPE, assetID).toString();
+    }
+
+    static String taskKey(final String assetID, final String holder) {
+        return new CompositeKey(TASK_OBJECT_TYPE, assetID, holder).toString();
+    }
+
+    static String deletionDetailKey(final String assetID) {
+        return new CompositeKey(DELETION_DETAIL_OBJECT_TYPE, assetID).toString();
+    }
+
+    static String erasureDetailKey(final String assetID) {
+        return new CompositeKey(ERASURE_DETAIL_OBJECT_TYPE, assetID).toString();
+    }
+
+    /**
+     * Records the deletion of an asset by the current transaction.
+     *
+     * @param asset  the deleted asset
+     * @param caller the client that deleted it
+     * @return the record written
+     */
+    Record recordDeletion(final Asset asset, final IdentityResolver.Caller caller) {
+        Record record = newRecord(asset.getAssetID(), asset.getDataSubject(), asset.getOwnerOrg(), caller);
+        put(deletionKey(asset.getAssetID()), deletionDetailKey(asset.getAssetID()), record);
+        return record;
+    }
+
+    /**
+     * Records an erasure request of a deleted asset by the current transaction.
+     *
+     * @param deletion the deletion of the asset
+     * @param caller   the client that requested the erasure
+     * @return the record written
+     */
+    Record recordErasure(final Record deletion, final IdentityResolver.Caller caller) {
+        Record record = newRecord(deletion.getAssetID(), deletion.getDataSubject(), deletion.getOwnerOrg(), caller);
+        put(erasureKey(deletion.getAssetID()), erasureDetailKey(deletion.getAssetID()), record);
+        return record;
+    }
+
+    private void put(final String key, final String detailKey, final Record record) {
+        stub.putStringState(key, record.toPublicJson().toString());
+        stub.putPrivateData(ASSET_COLLECTION_NAME, detailKey, record.toDetailJson().toString().getBytes(UTF_8));
+    }
+
+    private Record get(final String key, final String detailKey) {
+        String json = stub.getStringState(key);
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        byte[] detail = stub.getPrivateData(ASSET_COLLECTION_NAME, detailKey);
+        return Record.fromJson(new JSONObject(json), detail == null || detail.length == 0 ? null : new JSONObject(new String(detail, UTF_8)));
+    }
+
+    /**
+     * Purges the data subject and client names of the deletion and erasure records of an
+     * asset together with their history. The public records stay.
+     *
+     * @param assetID the ID of the asset
+     */
+    void purgeDetails(final String assetID) {
+        stub.purgePrivateData(ASSET_COLLECTION_NAME, deletionDetailKey(assetID));
+        stub.purgePrivateData(ASSET_COLLECTION_NAME, erasureDetailKey(assetID));
+    }
+
+    private Record newRecord(final String assetID, final String dataSubject, final String ownerOrg, final IdentityResolver.Caller caller) {
+        Instant timestamp = stub.getTxTimestamp();
+        return new Record(assetID, dataSubject, ownerOrg, caller.getMspId(), caller.getIdName(), stub.getTxId(),
+                timestamp == null ? 0L : timestamp.toEpochMilli());
+    }
+
+    /**
+     * Looks up the latest deletion of an asset.
+     *
+     * @param assetID the ID of the asset
+     * @return the deletion, or null if the asset has never been deleted
+     */
+    Record deletionOf(final String assetID) {
+        Record deletion = get(deletionKey(assetID), deletionDetailKey(assetID));
+        return deletion != null ? deletion : legacyDeletionOf(assetID);
+    }
+
+    /**
+     * Looks up the latest erasure request of an asset.
+     *
+     * @param assetID the ID of the asset
+     * @return the erasure request, or null if the erasure of the asset has never been requested
+     */
+    Record erasureOf(final String assetID) {
+        return get(erasureKey(assetID), erasureDetailKey(assetID));
+    }
+
+    /**
+     * Recovers a deletion from the latest journal record written before structured records,
+     * "Asset <id> of <dataSubject> was deleted by <mspId> with id <idName> from ...". The
+     * deleting organization was always the owner organization.
+     */
+    private Record legacyDeletionOf(final String assetID) {
+        AccessJournal.Entry[] latest = new AccessJournal.Entry[1];
+        new AccessJournal(stub).scan(assetID, AccessJournal.Event.DELETION, entry -> {
+            if (latest[0] == null || entry.getTimestamp() != null
+                    && (latest[0].getTimestamp() == null || entry.getTimestamp().isAfter(latest[0].getTimestamp()))) {
+                latest[0] = entry;
+            }
+            return true;
+        });
+        if (latest[0] == null) {
+            return null;
+        }
+        String[] words = latest[0].getRecord().split(" ");
+        if (words.length < 11 || !"Asset".equals(words[0]) || !assetID.equals(words[1]) || !"deleted".equals(words[5])) {
+            return null;
+        }
+        Instant timestamp = latest[0].getTimestamp();
+        return new Record(assetID, words[3], words[7], words[7], words[10], latest[0].getTxId(), timestamp == null ? 0L : timestamp.toEpochMilli());
+    }
+
+    /**
+     * Creates a pending erasure task for each holder of an asset that has none yet. Tasks of
+     * earlier requests are kept, whether pending or confirmed.
+     *
+     * @param assetID the ID of the asset
+     * @param holders the organizations holding a copy of the asset
+     * @return the status of every task of the asset by holder, sorted by holder
+     */
+    Map<String, String> requestTasks(final String assetID, final Collection<String> holders) {
+        Map<String, String> tasks = tasks(assetID);
+        for (String holder : holders) {
+            if (holder == null || holder.isEmpty() || tasks.containsKey(holder)) {
+                continue;
+            }
+            stub.putStringState(taskKey(assetID, holder), taskJson(assetID, holder, PENDING).toString());
+            tasks.put(holder, PENDING);
+        }
+        return tasks;
+    }
+
+    /**
+     * Looks up the erasure task of a holder.
+     *
+     * @return the task, or null if the holder has none
+     */
+    JSONObject task(final String assetID, final String holder) {
+        String json = stub.getStringState(taskKey(assetID, holder));
+        return json == null || json.isEmpty() ? null : new JSONObject(json);
+    }
+
+    /**
+     * Marks the erasure task of a holder as confirmed by the current transaction.
+     *
+     * @return the confirmed task
+     */
+    JSONObject confirm(final String assetID, final String holder) {
+        JSONObject task = taskJson(assetID, holder, CONFIRMED);
+        stub.putStringState(taskKey(assetID, holder), task.toString());
+        return task;
+    }
+
+    private JSONObject taskJson(final String assetID, final String holder, final String status) {
+        Instant timestamp = stub.getTxTimestamp();
+        JSONObject task = new JSONObject();
+        task.put("assetID", assetID);
+        task.put("holder", holder);
+        task.put("status", status);
+        task.put("txId", stub.getTxId());
+        task.put("timestamp", timestamp == null ? 0L : timestamp.toEpochMilli());
+        return task;
+    }
+
+    /**
+     * Reads the status of the erasure tasks of an asset.
+     *
+     * @param assetID the ID of the asset
+     * @return the status of every task by holder, sorted by holder
+     */
+    Map<String, String> tasks(final String assetID) {
+        Map<String, String> tasks = new TreeMap<>();
+        try (QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(TASK_OBJECT_TYPE, assetID)) {
+            for (KeyValue result : results) {
+                List<String> attributes = CompositeKey.parseCompositeKey(result.getKey()).getAttributes();
+                tasks.put(attributes.get(attributes.size() - 1), new JSONObject(new String(result.getValue(), UTF_8)).getString("status"));
+            }
+        } catch (Exception e) {
+            throw new ChaincodeException("Erasure task read error: " + e.getMessage(), "DATA_ERROR");
+        }
+        return tasks;
+    }
+
+    /**
+     * Summarizes an erasure request. The summary lists at most limit of the holders that have
+     * not confirmed yet, so its size does not grow with the number of holders.
+     *
+     * @param erasure the erasure request
+     * @param tasks   the status of the tasks by holder
+     * @param limit   the maximum number of pending holders to list
+     * @return a JSON object with the erasure request, the number of holders, pending and
+     *         confirmed tasks, the pending holders and whether that list was cut off
+     */
+    static JSONObject summary(final Record erasure, final Map<String, String> tasks, final int limit) {
+        JSONArray pendingHolders = new JSONArray();
+        int pending = 0;
+        for (Map.Entry<String, String> task : tasks.entrySet()) {
+            if (PENDING.equals(task.getValue())) {
+                if (pending < limit) {
+                    pendingHolders.put(task.getKey());
+                }
+                pending++;
+            }
+        }
+        JSONObject summary = erasure.toJson();
+        summary.put("holders", tasks.size());
+        summary.put("pending", pending);
+        summary.put("confirmed", tasks.size() - pending);
+        summary.put("pendingHolders", pendingHolders);
+        summary.put("truncated", pending > limit);
+        return summary;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Chaincode events describing the changes a transaction makes to assets.
+ *
+ * Fabric keeps a single chaincode event per transaction, the last one set, so the changes
+ * are collected in the {@link AssetContext} of the transaction while it runs and set as one
+ * "AssetEvents" event, a JSON array with one compact object per change, by
+ * {@link AssetManagement#afterTransaction}. A transaction that fails emits nothing. Each
+ * object names the type of the change and the asset, and where they apply the organization
+ * of the client and a detail such as the principal of an ACL change or a version number.
+ * Events are public like the access journal, so they carry no pointers, file keys or data
+ * subjects; a client that indexes assets by patient asks for the data subject of an asset
+ * with {@link AssetManagement#ReadAssetDataSubject}.
+ */
+final class AssetEvents {
+
+    static final String EVENT_NAME = "AssetEvents";
+
+    enum Type {
+        CREATED,
+        READ,
+        ACL_GRANTED,
+        ACL_REVOKED,
+        ACCESS_REQUESTED,
+        DELETED,
+        PURGED,
+        ERASURE_REQUESTED,
+        ERASURE_CONFIRMED,
+        VERSION_ADDED,
+        VERSION_PURGED
+    }
+
+    private final ChaincodeStub stub;
+    private final JSONArray changes = new JSONArray();
+
+    AssetEvents(final ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    /**
+     * The changes of the transaction of a context. A context not created by
+     * {@link AssetManagement#createContext}, such as one built by hand in a test, gets an
+     * empty list that is never emitted.
+     */
+    static AssetEvents of(final Context ctx) {
+        return ctx instanceof AssetContext ? ((AssetContext) ctx).getEvents() : new AssetEvents(ctx.getStub());
+    }
+
+    /**
+     * Adds a change to the event of the current transaction.
+     *
+     * @param type    the type of the change
+     * @param assetID the ID of the asset
+     * @param mspId   the organization of the client, or null
+     * @param detail  a detail of the change, or null
+     */
+    void add(final Type type, final String assetID, final String mspId, final Object detail) {
+        JSONObject change = new JSONObject();
+        change.put("type", type.name());
+        change.put("assetID", assetID);
+        change.putOpt("org", mspId);
+        change.putOpt("detail", detail);
+        changes.put(change);
+    }
+
+    void add(final Type type, final String assetID, final String mspId) {
+        add(type, assetID, mspId, null);
+    }
+
+    /**
+     * Sets the changes collected for the current transaction as its chaincode event.
+     */
+    void emit() {
+        if (changes.length() > 0) {
+            stub.setEvent(EVENT_NAME, changes.toString().getBytes(UTF_8));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.util.List;
+
+/**
+ * Secondary indexes of the asset collection kept as composite keys next to the assets.
+ *
+ * Each asset has an entry "patient~assetID" under its data subject and an entry
+ * "ownerOrg~assetID" under its owner organization. The value of both entries is the owner
+ * organization, so listing the assets of a patient or an organization is a range scan over
+ * the index keys that never reads the assets themselves. Unlike rich queries this works the
+ * same on LevelDB and CouchDB peers.
+ */
+final class AssetIndex {
+
+    enum Index {
+        PATIENT("patient~assetID"),
+        OWNER_ORG("ownerOrg~assetID");
+
+        private final String objectType;
+
+        Index(final String objectType) {
+            this.objectType = objectType;
+        }
+
+        String getObjectType() {
+            return objectType;
+        }
+
+        String key(final String value, final String assetID) {
+            return new CompositeKey(objectType, value, assetID).toString();
+        }
+    }
+
+    private final ChaincodeStub stub;
+
+    AssetIndex(final ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    /**
+     * Adds the index entries of an asset.
+     *
+     * @param asset the asset being written
+     */
+    void add(final Asset asset) {
+        byte[] ownerOrg = asset.getOwnerOrg().getBytes(UTF_8);
+        stub.putPrivateData(ASSET_COLLECTION_NAME, Index.PATIENT.key(asset.getDataSubject(), asset.getAssetID()), ownerOrg);
+        stub.putPrivateData(ASSET_COLLECTION_NAME, Index.OWNER_ORG.key(asset.getOwnerOrg(), asset.getAssetID()), ownerOrg);
+    }
+
+    /**
+     * Removes the index entries of an asset.
+     *
+     * @param dataSubject the data subject of the asset
+     * @param ownerOrg    the owner organization of the asset
+     * @param assetID     the ID of the asset
+     */
+    void remove(final String dataSubject, final String ownerOrg, final String assetID) {
+        stub.delPrivateData(ASSET_COLLECTION_NAME, Index.PATIENT.key(dataSubject, assetID));
+        stub.delPrivateData(ASSET_COLLECTION_NAME, Index.OWNER_ORG.key(ownerOrg, assetID));
+    }
+
+    /**
+     * Removes the index entries of an asset together with their history.
+     *
+     * @param dataSubject the data subject of the asset
+     * @param ownerOrg    the owner organization of the asset
+     * @param assetID     the ID of the asset
+     */
+    void purge(final String dataSubject, final String ownerOrg, final String assetID) {
+        // the data subject of an asset that was purged before is no longer known
+        if (dataSubject != null) {
+            stub.purgePrivateData(ASSET_COLLECTION_NAME, Index.PATIENT.key(dataSubject, assetID));
+        }
+        stub.purgePrivateData(ASSET_COLLECTION_NAME, Index.OWNER_ORG.key(ownerOrg, assetID));
+    }
+
+    /**
+     * Scans the entries of an index for one value, in asset ID order.
+     * The caller is responsible for closing the iterator.
+     *
+     * @param index the index to scan
+     * @param value the data subject or owner organization to look up
+     * @return the index entries, to be read with {@link #summaryOf(KeyValue)}
+     */
+    QueryResultsIterator<KeyValue> scan(final Index index, final String value) {
+        return stub.getPrivateDataByPartialCompositeKey(ASSET_COLLECTION_NAME, new CompositeKey(index.getObjectType(), value));
+    }
+
+    static AssetCodec.Summary summaryOf(final KeyValue entry) {
+        List<String> attributes = CompositeKey.parseCompositeKey(entry.getKey()).getAttributes();
+        return new AssetCodec.Summary(attributes.get(attributes.size() - 1), new String(entry.getValue(), UTF_8));
+    }
+}
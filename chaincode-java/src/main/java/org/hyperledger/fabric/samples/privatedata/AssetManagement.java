@@ -20,16 +20,20 @@ import org.hyperledger.fabric.shim.ChaincodeStub;
 
 import org.hyperledger.fabric.shim.ledger.KeyValue;
 import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
-import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Base64;
 // import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.time.Instant;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 /**
  * Main Chaincode class. A ContractInterface gets converted to Chaincode internally.
@@ -67,11 +71,78 @@ public final class AssetManagement implements ContractInterface {
     static final String ASSET_COLLECTION_NAME = "medCollection";
     static final String AGREEMENT_KEYPREFIX = "transferAgreement";
 
+    /**
+     * The maximum number of assets a query returns, set with the QUERY_RESULT_LIMIT
+     * environment variable. A query that matches more fails with RESULT_LIMIT_EXCEEDED
+     * rather than returning part of the assets.
+     */
+    static final int QUERY_RESULT_LIMIT = envInt("QUERY_RESULT_LIMIT", 1000);
+
+    /**
+     * The maximum number of assets CreateAssets accepts in one transaction, set with the
+     * MAX_BATCH_SIZE environment variable.
+     */
+    static final int MAX_BATCH_SIZE = envInt("MAX_BATCH_SIZE", 500);
+
+    /**
+     * The maximum number of assets a bulk ACL transaction changes, set with the
+     * ACL_CHUNK_SIZE environment variable.
+     */
+    static final int ACL_CHUNK_SIZE = envInt("ACL_CHUNK_SIZE", 100);
+
+    /**
+     * The maximum number of assets a bulkEraseAssets transaction erases, set with the
+     * ERASE_CHUNK_SIZE environment variable.
+     */
+    static final int ERASE_CHUNK_SIZE = envInt("ERASE_CHUNK_SIZE", 50);
+
+    /**
+     * The maximum number of records in a page of history, set with the HISTORY_PAGE_LIMIT
+     * environment variable.
+     */
+    static final int HISTORY_PAGE_LIMIT = envInt("HISTORY_PAGE_LIMIT", 100);
+
+    /**
+     * The maximum number of records a page of a key history skips to reach its bookmark, set
+     * with the HISTORY_SKIP_LIMIT environment variable, see {@link #getHistoryForAssetPaged}.
+     */
+    static final int HISTORY_SKIP_LIMIT = envInt("HISTORY_SKIP_LIMIT", 10_000);
+
+    /**
+     * The maximum number of pending holders eraseDataRequest lists in its summary, set with
+     * the ERASURE_SUMMARY_LIMIT environment variable.
+     */
+    static final int ERASURE_SUMMARY_LIMIT = envInt("ERASURE_SUMMARY_LIMIT", 20);
+
     private enum AssetTransferErrors {
         INCOMPLETE_INPUT,
         INVALID_ACCESS,
         ASSET_NOT_FOUND,
-        ASSET_ALREADY_EXISTS
+        ASSET_ALREADY_EXISTS,
+        RESULT_LIMIT_EXCEEDED
+    }
+
+    /**
+     * Creates the context of a transaction, which collects its asset changes.
+     *
+     * @param stub the stub of the transaction
+     * @return the context
+     */
+    @Override
+    public Context createContext(final ChaincodeStub stub) {
+        return new AssetContext(stub);
+    }
+
+    /**
+     * Sets the asset changes of a successful transaction as its chaincode event, see
+     * {@link AssetEvents}.
+     *
+     * @param ctx    the transaction context
+     * @param result the result of the transaction
+     */
+    @Override
+    public void afterTransaction(final Context ctx, final Object result) {
+        AssetEvents.of(ctx).emit();
     }
 
     /**
@@ -85,6 +156,306 @@ public final class AssetManagement implements ContractInterface {
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public String ReadAsset(final Context ctx, final String assetID) {
         ChaincodeStub stub = ctx.getStub();
+        Asset asset = readAsset(stub, assetID);
+        if (asset == null) {
+            return null;
+        }
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        checkReadAccess(stub, caller, asset);
+
+        // Record the asset read on the public ledger
+        String assetReadRecord = String.format("Asset %s read by %s at %s", assetID, caller.getMspId(), stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.READ, assetReadRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.READ, assetID, caller.getMspId());
+        AccessCounter counter = new AccessCounter(stub);
+        counter.countRead(assetID, asset.getDataSubject(), caller.getMspId());
+        counter.flush();
+        // return asset;
+        return describe(asset);
+    }
+
+    /**
+     * Reads several assets in one transaction, applying the checks of
+     * {@link #ReadAsset(Context, String)} to each of them. A single access record naming all
+     * assets that were read is written to the public ledger.
+     *
+     * @param ctx      the transaction context
+     * @param assetIDs a JSON array of asset IDs
+     * @return a JSON object with the number of assets read, denied and not found, and per
+     *         asset in input order its status and either the ReadAsset result or the error
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String ReadAssets(final Context ctx, final String assetIDs) {
+        ChaincodeStub stub = ctx.getStub();
+        final JSONArray items;
+        try {
+            items = new JSONArray(assetIDs);
+        } catch (Exception err) {
+            String errorMessage = String.format("Invalid asset IDs: %s", err.getMessage());
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        if (items.isEmpty() || items.length() > MAX_BATCH_SIZE) {
+            String errorMessage = String.format("ReadAssets must read 1 to %d assets, got %d", MAX_BATCH_SIZE, items.length());
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        AccessCounter counter = new AccessCounter(stub);
+        JSONArray results = new JSONArray();
+        Set<String> read = new LinkedHashSet<>();
+        int denied = 0;
+        int notFound = 0;
+        for (int i = 0; i < items.length(); i++) {
+            String assetID = items.optString(i, "");
+            JSONObject result = new JSONObject().put("index", i).put("assetID", assetID);
+            try {
+                Asset asset = readAsset(stub, assetID);
+                if (asset == null) {
+                    notFound++;
+                    result.put("status", "notFound");
+                } else {
+                    checkReadAccess(stub, caller, asset);
+                    if (read.add(assetID)) {
+                        counter.countRead(assetID, asset.getDataSubject(), caller.getMspId());
+                    }
+                    result.put("status", "read");
+                    result.put("result", describe(asset));
+                }
+            } catch (ChaincodeException e) {
+                denied++;
+                result.put("status", "denied");
+                result.put("error", e.getMessage());
+            }
+            results.put(result);
+        }
+
+        // Record the reads of the whole batch on the public ledger
+        if (!read.isEmpty()) {
+            String assetReadRecord = String.format("%d assets read by %s at %s", read.size(), caller.getMspId(), stub.getTxTimestamp());
+            new AccessJournal(stub).appendBatch(new ArrayList<>(read), AccessJournal.Event.READ, assetReadRecord);
+            AssetEvents events = AssetEvents.of(ctx);
+            for (String assetID : read) {
+                events.add(AssetEvents.Type.READ, assetID, caller.getMspId());
+            }
+            counter.flush();
+        }
+
+        JSONObject summary = new JSONObject();
+        summary.put("read", items.length() - denied - notFound);
+        summary.put("denied", denied);
+        summary.put("notFound", notFound);
+        summary.put("results", results);
+        return summary.toString();
+    }
+
+    /**
+     * Reads an asset like {@link #ReadAsset(Context, String)} without writing the access
+     * record, so the read needs a single peer round trip. Instead the result carries a signed
+     * receipt of the read, which the client must pass to RecordAccessBatch to put the access
+     * record on the public ledger.
+     *
+     * @param ctx     the transaction context
+     * @param assetID the ID of the asset
+     * @return a JSON object with the ReadAsset result as "result" and the receipt as
+     *         "receipt", or null if the asset does not exist
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ReadAssetWithReceipt(final Context ctx, final String assetID) {
+        ChaincodeStub stub = ctx.getStub();
+        Asset asset = readAsset(stub, assetID);
+        if (asset == null) {
+            return null;
+        }
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        checkReadAccess(stub, caller, asset);
+
+        JSONObject read = new JSONObject();
+        read.put("result", describe(asset));
+        read.put("receipt", AccessReceipt.issue(stub, caller, asset));
+        return read.toString();
+    }
+
+    /**
+     * Records the reads made with ReadAssetWithReceipt. Each receipt must be unaltered, have
+     * been issued with the current receipt key and name the caller's organization; the others
+     * are reported and skipped. Every accepted read is written to the access journal under
+     * the ID of the read and counted in the access counters. Receipts whose read is in the
+     * journal already are reported as duplicate, so submitting a receipt again does not
+     * record or count the read twice.
+     *
+     * @param ctx      the transaction context
+     * @param receipts a JSON array of receipts
+     * @return a JSON object with the number of recorded, duplicate and rejected receipts and
+     *         the status of each receipt in input order
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String RecordAccessBatch(final Context ctx, final String receipts) {
+        ChaincodeStub stub = ctx.getStub();
+        final JSONArray items;
+        try {
+            items = new JSONArray(receipts);
+        } catch (Exception err) {
+            String errorMessage = String.format("Invalid receipts: %s", err.getMessage());
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        if (items.length() > MAX_BATCH_SIZE) {
+            String errorMessage = String.format("RecordAccessBatch accepts at most %d receipts, got %d", MAX_BATCH_SIZE, items.length());
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        String clientMspId = IdentityResolver.caller(ctx).getMspId();
+        byte[] key = AccessReceipt.key(stub);
+        AccessJournal journal = new AccessJournal(stub);
+        AccessCounter counter = new AccessCounter(stub);
+        Set<String> seen = new HashSet<>();
+        JSONArray results = new JSONArray();
+        int recorded = 0;
+        int duplicate = 0;
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject result = new JSONObject().put("index", i);
+            try {
+                JSONObject receipt = items.getJSONObject(i);
+                String receiptId = receipt.getString("receiptId");
+                result.put("receiptId", receiptId);
+                if (!AccessReceipt.verify(key, receipt)) {
+                    throw new ChaincodeException(String.format("Receipt %s is not valid", receiptId), AssetTransferErrors.INVALID_ACCESS.toString());
+                }
+                if (!clientMspId.equals(receipt.getString("mspId"))) {
+                    throw new ChaincodeException(String.format("Client %s cannot record a read by %s", clientMspId, receipt.getString("mspId")), AssetTransferErrors.INVALID_ACCESS.toString());
+                }
+                String assetID = receipt.getString("assetID");
+                String entryKey = AccessJournal.entryKey(assetID, AccessJournal.Event.READ, receiptId);
+                boolean isDuplicate = !seen.add(entryKey);
+                if (!isDuplicate) {
+                    byte[] existing = stub.getState(entryKey);
+                    isDuplicate = existing != null && existing.length > 0;
+                }
+                if (isDuplicate) {
+                    duplicate++;
+                    result.put("status", "duplicate");
+                    results.put(result);
+                    continue;
+                }
+                Instant readAt = Instant.ofEpochMilli(receipt.getLong("timestamp"));
+                String assetReadRecord = String.format("Asset %s read by %s at %s", assetID, clientMspId, readAt);
+                journal.append(assetID, AccessJournal.Event.READ, assetReadRecord, receiptId, readAt);
+                AssetEvents.of(ctx).add(AssetEvents.Type.READ, assetID, clientMspId);
+                counter.countRead(assetID, receipt.getString("dataSubject"), clientMspId);
+                recorded++;
+                result.put("status", "recorded");
+            } catch (ChaincodeException e) {
+                System.err.printf("RecordAccessBatch: receipt %d rejected: %s\n", i, e.getMessage());
+                result.put("status", "rejected");
+                result.put("error", e.getMessage());
+            } catch (Exception e) {
+                System.err.printf("RecordAccessBatch: receipt %d rejected: %s\n", i, e);
+                result.put("status", "rejected");
+                result.put("error", String.format("Invalid receipt: %s", e.getMessage()));
+            }
+            results.put(result);
+        }
+
+        counter.flush();
+
+        JSONObject summary = new JSONObject();
+        summary.put("recorded", recorded);
+        summary.put("duplicate", duplicate);
+        summary.put("rejected", items.length() - recorded - duplicate);
+        summary.put("results", results);
+        return summary.toString();
+    }
+
+    /**
+     * Returns how often an asset, or all assets of a data subject, have been read, in total
+     * and per reading organization, by summing the access counters. Patients can only see
+     * the statistics of their own data.
+     *
+     * @param ctx   the transaction context
+     * @param scope "asset" or "patient"
+     * @param id    the asset ID or the data subject
+     * @return a JSON object with the scope, the id, the total and the count per organization
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAccessStats(final Context ctx, final String scope, final String id) {
+        ChaincodeStub stub = ctx.getStub();
+        final AccessCounter.Scope counterScope;
+        try {
+            counterScope = AccessCounter.Scope.valueOf(scope.toUpperCase());
+        } catch (Exception e) {
+            String errorMessage = String.format("Unknown scope %s, expected asset or patient", scope);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        if (caller.isPatient()) {
+            String dataSubject = id;
+            if (counterScope == AccessCounter.Scope.ASSET) {
+                Asset asset = readAsset(stub, id);
+                dataSubject = asset == null ? null : asset.getDataSubject();
+            }
+            if (!caller.getIdName().equals(dataSubject)) {
+                String errorMessage = String.format("Patient with id %s is not authorized to read access statistics of %s", caller.getIdName(), id);
+                System.err.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
+            }
+        }
+
+        return new AccessCounter(stub).stats(counterScope, id).toString();
+    }
+
+    /**
+     * Sets the key that access receipts are signed with. Input in transient map: receipt_key,
+     * a JSON object with the base64 encoded key of at least 32 bytes as "key". Receipts signed
+     * with an earlier key can no longer be recorded, so flush them before changing the key.
+     *
+     * @param ctx the transaction context
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void SetReceiptKey(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+        Map<String, byte[]> transientMap = stub.getTransient();
+        if (!transientMap.containsKey("receipt_key")) {
+            String errorMessage = "SetReceiptKey call must specify receipt_key in Transient map input";
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        final byte[] key;
+        try {
+            JSONObject json = new JSONObject(new String(transientMap.get("receipt_key"), UTF_8));
+            key = Base64.getDecoder().decode(json.getString("key"));
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        if (key.length < AccessReceipt.MIN_KEY_LENGTH) {
+            String errorMessage = String.format("Receipt key must have at least %d bytes", AccessReceipt.MIN_KEY_LENGTH);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        if (caller.isPatient()) {
+            String errorMessage = String.format("Client with role %s is not authorized to set the receipt key", caller.getRole());
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
+        }
+        verifyClientOrgMatchesPeerOrg(ctx);
+
+        stub.putPrivateData(ASSET_COLLECTION_NAME, AccessReceipt.keyKey(), key);
+    }
+
+    /**
+     * Reads an asset from the asset collection.
+     *
+     * @return the asset, or null if it does not exist
+     */
+    private Asset readAsset(final ChaincodeStub stub, final String assetID) {
         System.out.printf("ReadAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, assetID);
         byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, assetID);
 
@@ -93,46 +464,57 @@ public final class AssetManagement implements ContractInterface {
             return null;
         }
 
-        Asset asset = Asset.deserialize(assetJSON);
+        return Asset.deserialize(assetJSON);
+    }
+
+    /**
+     * Reads an asset that must exist from the asset collection.
+     */
+    private Asset existingAsset(final ChaincodeStub stub, final String assetID) {
+        Asset asset = readAsset(stub, assetID);
+        if (asset == null) {
+            String errorMessage = String.format("Asset %s does not exist", assetID);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+        return asset;
+    }
+
+    /**
+     * Checks that the caller may read an asset: the caller's organization must be on the
+     * ACL, and a patient may only read their own assets.
+     */
+    private void checkReadAccess(final ChaincodeStub stub, final IdentityResolver.Caller caller, final Asset asset) {
+        String assetID = asset.getAssetID();
 
         // Get the client's ID and role
-        // String clientID = ctx.getClientIdentity().getId();
-        String clientMspId = ctx.getClientIdentity().getMSPID();
-        String clientRole = ctx.getClientIdentity().getAttributeValue("role");
-        String idName = extractId(ctx.getClientIdentity().getId());
+        String clientMspId = caller.getMspId();
+        String clientRole = caller.getRole();
+        String idName = caller.getIdName();
 
         // Check if the client's ID is in the asset's acl list and if the client's role is not 'patient'
-        if (!asset.getAcl().contains(clientMspId)) {
+        if (!new AssetAcl(stub).contains(asset, clientMspId)) {
             String errorMessage = String.format("Client %s with role %s is not authorized to read asset %s", clientMspId, clientRole, assetID);
             System.err.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
         }
 
-        String dataSubject = asset.getDataSubject();
-        int version = asset.getVersion();
-        String owner = asset.getOwner();
-        String filekey = asset.getFilekey();
-        String pointer = asset.getPointer();
-        String result = String.format("Asset ID: %s,  Data Subject: %s,  Version: %d,  Owner: %s,  File Key: %s,  Pointer: %s", assetID, dataSubject, version, owner, filekey, pointer);
-
         // prevent a patient to read another patient's data within the same hospital
+        String dataSubject = asset.getDataSubject();
         if ("patient".equals(clientRole) && !idName.equals(dataSubject)) {
             String errorMessage = String.format("Patient with id %s is not authorized to read asset of %s", idName, dataSubject);
             System.err.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
         }
+    }
 
-        // Record the asset read on the public ledger
-        String assetReadRecord = String.format("Asset %s read by %s at %s", assetID, clientMspId, Instant.now());
-        String assetReadRecordId = assetID + "_read";
-
-        stub.putStringState(assetReadRecordId, assetReadRecord);
-        // return asset;
-        return result;
+    private static String describe(final Asset asset) {
+        return String.format("Asset ID: %s,  Data Subject: %s,  Version: %d,  Owner: %s,  File Key: %s,  Pointer: %s", asset.getAssetID(),
+                asset.getDataSubject(), asset.getVersion(), asset.getOwner(), asset.getFilekey(), asset.getPointer());
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public String ReadAcl(final Context ctx, final String assetID) {
+    public String ReadAcl(final Context ctx, final String assetID) throws Exception {
         ChaincodeStub stub = ctx.getStub();
         System.out.printf("ReadAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, assetID);
         byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, assetID);
@@ -145,23 +527,14 @@ public final class AssetManagement implements ContractInterface {
         Asset asset = Asset.deserialize(assetJSON);
 
         // Get the client's ID and role
-        String clientMspId = ctx.getClientIdentity().getMSPID();
-        String clientRole = ctx.getClientIdentity().getAttributeValue("role");
-        String idName = extractId(ctx.getClientIdentity().getId());
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        String clientMspId = caller.getMspId();
+        String clientRole = caller.getRole();
+        String idName = caller.getIdName();
 
-        // Extract the organization from the owner's certificate
-        String owner = asset.getOwner();
+        // The organization of the owner is stored with the asset
         String dataSubject = asset.getDataSubject();
-        String ownerOrg = null;
-        String[] parts = owner.split(",");
-        for (String part : parts) {
-            if (part.trim().startsWith("O=")) {
-                String orgDomain = part.trim().substring(2); // This will give"org1.example.com"
-                String orgName = orgDomain.split("\\.")[0]; // This will give "org1"
-                String orgNameCapitalized = orgName.substring(0, 1).toUpperCase() + orgName.substring(1); // This will give "Org1"
-                ownerOrg = orgNameCapitalized + "MSP"; // This will give "Org1MSP"
-            }
-        }
+        String ownerOrg = asset.getOwnerOrg();
         // Check if the client is from the owner's organization
         if (!clientMspId.equals(ownerOrg)) {
             String errorMessage = String.format("Client %s with role %s is not authorized to read ACL from %s", clientMspId, clientRole, ownerOrg);
@@ -175,11 +548,28 @@ public final class AssetManagement implements ContractInterface {
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
         }
 
-        List<String> acl = asset.getAcl();
+        List<String> acl = new AssetAcl(stub).list(asset);
 
         return acl.toString();
     }
 
+    /**
+     * Returns the data subject of an asset. AssetEvents do not name data subjects, so a
+     * client that indexes assets by patient from them asks for the data subject of each new
+     * asset here. Only clients that may read the asset get an answer.
+     *
+     * @param ctx     the transaction context
+     * @param assetID the ID of the asset
+     * @return the data subject of the asset
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ReadAssetDataSubject(final Context ctx, final String assetID) {
+        ChaincodeStub stub = ctx.getStub();
+        Asset asset = existingAsset(stub, assetID);
+        checkReadAccess(stub, IdentityResolver.caller(ctx), asset);
+        return asset.getDataSubject();
+    }
+
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public void updateAclPermission(final Context ctx, final String assetID, final String newOrg) {
         ChaincodeStub stub = ctx.getStub();
@@ -192,38 +582,16 @@ public final class AssetManagement implements ContractInterface {
         }
         Asset asset = Asset.deserialize(assetJSON);
 
-        String clientMspId = ctx.getClientIdentity().getMSPID();
-        String clientRole = ctx.getClientIdentity().getAttributeValue("role");
-
-        // Extract the organization from the owner's certificate
-        String owner = asset.getOwner();
-        String ownerOrg = null;
-        String[] parts = owner.split(",");
-        for (String part : parts) {
-            if (part.trim().startsWith("O=")) {
-                String orgDomain = part.trim().substring(2); // This will give"org1.example.com"
-                String orgName = orgDomain.split("\\.")[0]; // This will give "org1"
-                String orgNameCapitalized = orgName.substring(0, 1).toUpperCase() + orgName.substring(1); // This will give "Org1"
-                ownerOrg = orgNameCapitalized + "MSP"; // This will give "Org1MSP"
-            }
-        }
-
-        // Check if the client is from the owner's organization
-        if (!clientMspId.equals(ownerOrg) || "patient".equals(clientRole)) {
-            String errorMessage = String.format("Client %s with role %s is not authorized to update asset from %s", clientMspId, clientRole, ownerOrg);
-            System.err.println(errorMessage);
-            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
-        }
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        checkAclGrant(caller, asset);
 
         // If both signatures are valid, perform the update
-        asset.addToAcl(newOrg);
-        stub.putPrivateData(ASSET_COLLECTION_NAME, assetID, asset.serialize());
+        new AssetAcl(stub).grant(asset, newOrg);
 
         // Record the asset read on the public ledger
-        String aclUpdateRecord = String.format("ACL of asset %s added user %s at %s", assetID, newOrg, Instant.now());
-        String aclUpdateRecordId = assetID + "_acl";
-
-        stub.putStringState(aclUpdateRecordId, aclUpdateRecord);
+        String aclUpdateRecord = String.format("ACL of asset %s added user %s at %s", assetID, newOrg, stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.ACL, aclUpdateRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.ACL_GRANTED, assetID, caller.getMspId(), newOrg);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -238,24 +606,205 @@ public final class AssetManagement implements ContractInterface {
         }
         Asset asset = Asset.deserialize(assetJSON);
 
-        String clientMspId = ctx.getClientIdentity().getMSPID();
-        String clientRole = ctx.getClientIdentity().getAttributeValue("role");
-        String idName = extractId(ctx.getClientIdentity().getId());
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        checkAclRevoke(caller, asset);
 
-        // Extract the organization from the owner's certificate
-        String owner = asset.getOwner();
-        String ownerOrg = null;
-        String dataSubject = asset.getDataSubject();
-        String[] parts = owner.split(",");
-        for (String part : parts) {
-            if (part.trim().startsWith("O=")) {
-                String orgDomain = part.trim().substring(2); // This will give"org1.example.com"
-                String orgName = orgDomain.split("\\.")[0]; // This will give "org1"
-                String orgNameCapitalized = orgName.substring(0, 1).toUpperCase() + orgName.substring(1); // This will give "Org1"
-                ownerOrg = orgNameCapitalized + "MSP"; // This will give "Org1MSP"
+        // If both signatures are valid, perform the update
+        new AssetAcl(stub).revoke(asset, targetOrg);
+
+        // Record the asset read on the public ledger
+        String aclUpdateRecord = String.format("ACL of asset %s deleted user %s at %s", assetID, targetOrg, stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.ACL, aclUpdateRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.ACL_REVOKED, assetID, caller.getMspId(), targetOrg);
+        }
+
+    /**
+     * Grants an organization access to many assets, applying the rules of
+     * {@link #updateAclPermission(Context, String, String)} to each of them.
+     *
+     * @param ctx          the transaction context
+     * @param newOrg       the organization to add to the ACLs
+     * @param selection    a JSON object naming the assets, {"assetIDs": [...]}, see
+     *                     {@link AssetSelection}
+     * @param continuation the continuation returned by the previous call, or empty to start
+     * @return the outcome of the chunk, see {@link #bulkAcl}
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String bulkUpdateAclPermission(final Context ctx, final String newOrg, final String selection, final String continuation) {
+        return bulkAcl(ctx, true, newOrg, selection, continuation);
+    }
+
+    /**
+     * Revokes the access of an organization to many assets, applying the rules of
+     * {@link #revokeAclPermission(Context, String, String)} to each of them.
+     *
+     * @param ctx          the transaction context
+     * @param targetOrg    the organization to remove from the ACLs
+     * @param selection    a JSON object naming the assets, {"assetIDs": [...]}, see
+     *                     {@link AssetSelection}
+     * @param continuation the continuation returned by the previous call, or empty to start
+     * @return the outcome of the chunk, see {@link #bulkAcl}
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String bulkRevokeAclPermission(final Context ctx, final String targetOrg, final String selection, final String continuation) {
+        return bulkAcl(ctx, false, targetOrg, selection, continuation);
+    }
+
+    /**
+     * Applies an ACL change to at most {@link #ACL_CHUNK_SIZE} assets of the selection, in
+     * selection order. If assets remain, the result carries a continuation to pass to the next
+     * call; it is empty once the selection is exhausted. Every asset is checked on its own,
+     * and one ACL record for all changed assets is added to the public ledger.
+     *
+     * @return a JSON object with the number of updated, unchanged and failed assets, the
+     *         status of each processed asset and the continuation
+     */
+    private String bulkAcl(final Context ctx, final boolean grant, final String org, final String selection, final String continuation) {
+        if (org == null || org.isEmpty()) {
+            String errorMessage = "Empty input: organization";
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        ChaincodeStub stub = ctx.getStub();
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+
+        AssetSelection chunk = AssetSelection.select(selection, continuation, ACL_CHUNK_SIZE);
+        AssetAcl acl = new AssetAcl(stub);
+
+        JSONArray results = new JSONArray();
+        List<String> updated = new ArrayList<>(chunk.size());
+        int unchanged = 0;
+        for (String assetID : chunk.getAssetIDs()) {
+            JSONObject result = new JSONObject().put("assetID", assetID);
+            try {
+                byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, assetID);
+                if (assetJSON == null || assetJSON.length == 0) {
+                    throw new ChaincodeException(String.format("Asset not found: ID %s", assetID), AssetTransferErrors.ASSET_NOT_FOUND.toString());
+                }
+                Asset asset = Asset.deserialize(assetJSON);
+                if (grant) {
+                    checkAclGrant(caller, asset);
+                } else {
+                    checkAclRevoke(caller, asset);
+                }
+                if (!grant) {
+                    acl.revoke(asset, org);
+                }
+                if (!grant || acl.grant(asset, org)) {
+                    updated.add(assetID);
+                    result.put("status", "updated");
+                } else {
+                    unchanged++;
+                    result.put("status", "unchanged");
+                }
+            } catch (ChaincodeException e) {
+                result.put("status", "failed");
+                result.put("error", e.getMessage());
+                result.put("code", e.getPayload() == null ? "" : new String(e.getPayload(), UTF_8));
+            }
+            results.put(result);
+        }
+
+        // Record the change of all assets on the public ledger
+        if (!updated.isEmpty()) {
+            String aclUpdateRecord = String.format("ACL of %d assets %s user %s by %s at %s", updated.size(), grant ? "added" : "deleted", org, caller.getMspId(), stub.getTxTimestamp());
+            new AccessJournal(stub).appendBatch(updated, AccessJournal.Event.ACL, aclUpdateRecord);
+            AssetEvents events = AssetEvents.of(ctx);
+            for (String assetID : updated) {
+                events.add(grant ? AssetEvents.Type.ACL_GRANTED : AssetEvents.Type.ACL_REVOKED, assetID, caller.getMspId(), org);
+            }
+        }
+
+        JSONObject summary = new JSONObject();
+        summary.put("updated", updated.size());
+        summary.put("unchanged", unchanged);
+        summary.put("failed", chunk.size() - updated.size() - unchanged);
+        summary.put("results", results);
+        summary.put("continuation", chunk.getContinuation());
+        return summary.toString();
+    }
+
+    /**
+     * Moves the ACL entries embedded in legacy asset records to per-principal keys, see
+     * {@link AssetAcl}, for at most {@link #ACL_CHUNK_SIZE} assets of the selection. Only
+     * clients of the owner organization can migrate an asset. Assets created since ACLs are
+     * kept under their own keys have nothing to migrate and are reported as unchanged.
+     *
+     * @param ctx          the transaction context
+     * @param selection    the assets, as for {@link #bulkUpdateAclPermission}; the assets of
+     *                     an organization are listed with {@link #QueryAssetByOwnerOrg}
+     * @param continuation empty for the first call, otherwise the continuation returned by
+     *                     the previous call
+     * @return a JSON object with the number of migrated, unchanged and failed assets, the
+     *         status of each processed asset and the continuation
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String MigrateAcls(final Context ctx, final String selection, final String continuation) {
+        ChaincodeStub stub = ctx.getStub();
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        AssetSelection chunk = AssetSelection.select(selection, continuation, ACL_CHUNK_SIZE);
+        AssetAcl acl = new AssetAcl(stub);
+
+        JSONArray results = new JSONArray();
+        int migrated = 0;
+        int unchanged = 0;
+        for (String assetID : chunk.getAssetIDs()) {
+            JSONObject result = new JSONObject().put("assetID", assetID);
+            try {
+                byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, assetID);
+                if (assetJSON == null || assetJSON.length == 0) {
+                    throw new ChaincodeException(String.format("Asset not found: ID %s", assetID), AssetTransferErrors.ASSET_NOT_FOUND.toString());
+                }
+                Asset asset = Asset.deserialize(assetJSON);
+                checkAclGrant(caller, asset);
+                if (acl.migrate(asset)) {
+                    migrated++;
+                    result.put("status", "migrated");
+                } else {
+                    unchanged++;
+                    result.put("status", "unchanged");
+                }
+            } catch (ChaincodeException e) {
+                result.put("status", "failed");
+                result.put("error", e.getMessage());
+                result.put("code", e.getPayload() == null ? "" : new String(e.getPayload(), UTF_8));
             }
+            results.put(result);
         }
 
+        JSONObject summary = new JSONObject();
+        summary.put("migrated", migrated);
+        summary.put("unchanged", unchanged);
+        summary.put("failed", chunk.size() - migrated - unchanged);
+        summary.put("results", results);
+        summary.put("continuation", chunk.getContinuation());
+        return summary.toString();
+    }
+
+    private void checkAclGrant(final IdentityResolver.Caller caller, final Asset asset) {
+        String clientMspId = caller.getMspId();
+        String clientRole = caller.getRole();
+
+        // The organization of the owner is stored with the asset
+        String ownerOrg = asset.getOwnerOrg();
+
+        // Check if the client is from the owner's organization
+        if (!clientMspId.equals(ownerOrg) || caller.isPatient()) {
+            String errorMessage = String.format("Client %s with role %s is not authorized to update asset from %s", clientMspId, clientRole, ownerOrg);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
+        }
+    }
+
+    private void checkAclRevoke(final IdentityResolver.Caller caller, final Asset asset) {
+        String clientMspId = caller.getMspId();
+        String clientRole = caller.getRole();
+        String idName = caller.getIdName();
+
+        // The organization of the owner is stored with the asset
+        String dataSubject = asset.getDataSubject();
+        String ownerOrg = asset.getOwnerOrg();
+
         // Check if the client is from the owner's organization
         if (!clientMspId.equals(ownerOrg)) {
             String errorMessage = String.format("Client %s with role %s is not authorized to revoke access rights from %s", clientMspId, clientRole, ownerOrg);
@@ -264,22 +813,12 @@ public final class AssetManagement implements ContractInterface {
         }
 
         // prevent a patient to change another patient's data acl within the same hospital
-        if ("patient".equals(clientRole) && !idName.equals(dataSubject)) {
+        if (caller.isPatient() && !idName.equals(dataSubject)) {
             String errorMessage = String.format("Patient with id %s is not authorized to evoke access rights of %s", idName, dataSubject);
             System.err.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
         }
-
-        // If both signatures are valid, perform the update
-        asset.removeFromAcl(targetOrg);
-        stub.putPrivateData(ASSET_COLLECTION_NAME, assetID, asset.serialize());
-
-        // Record the asset read on the public ledger
-        String aclUpdateRecord = String.format("ACL of asset %s deleted user %s at %s", assetID, targetOrg, Instant.now());
-        String aclUpdateRecordId = assetID + "_acl";
-
-        stub.putStringState(aclUpdateRecordId, aclUpdateRecord);
-        }
+    }
 
     /**
      * GetAssetByRange performs a range query based on the start and end keys provided. Range
@@ -301,11 +840,11 @@ public final class AssetManagement implements ContractInterface {
         // retrieve asset with keys between startKey (inclusive) and endKey(exclusive) in lexical order.
         try (QueryResultsIterator<KeyValue> results = stub.getPrivateDataByRange(ASSET_COLLECTION_NAME, startKey, endKey)) {
             for (KeyValue result : results) {
-                if (result.getStringValue() == null || result.getStringValue().length() == 0) {
-                    System.err.printf("Invalid Asset json: %s\n", result.getStringValue());
+                if (result.getValue() == null || result.getValue().length == 0) {
+                    System.err.printf("Invalid Asset value: %s\n", result.getKey());
                     continue;
                 }
-                Asset asset = Asset.deserialize(result.getStringValue());
+                Asset asset = Asset.deserialize(result.getValue());
                 queryResults.add(asset);
                 System.out.println("QueryResult: " + asset.toString());
             }
@@ -317,9 +856,10 @@ public final class AssetManagement implements ContractInterface {
     public void requestPermission(final Context ctx, final String assetID, final String purpose) {
         ChaincodeStub stub = ctx.getStub();
 
-        String clientMspId = ctx.getClientIdentity().getMSPID();
-        String clientRole = ctx.getClientIdentity().getAttributeValue("role");
-        String idName = ctx.getClientIdentity().getId();
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        String clientMspId = caller.getMspId();
+        String clientRole = caller.getRole();
+        String idName = caller.getId();
 
         // patients are not allowed to request permissions
         if ("patient".equals(clientRole)) {
@@ -329,10 +869,9 @@ public final class AssetManagement implements ContractInterface {
         }
 
         // Record the request on the public ledger
-        String assetRequestRecord = String.format("User %s requested access to asset %s for organization %s at %s, for the strict usage purpose: %s.", idName, assetID, clientMspId, Instant.now(), purpose);
-        String assetRequestRecordId = assetID + "_request";
-
-        stub.putStringState(assetRequestRecordId, assetRequestRecord);
+        String assetRequestRecord = String.format("User %s requested access to asset %s for organization %s at %s, for the strict usage purpose: %s.", idName, assetID, clientMspId, stub.getTxTimestamp(), purpose);
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.REQUEST, assetRequestRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.ACCESS_REQUESTED, assetID, clientMspId);
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
@@ -340,16 +879,68 @@ public final class AssetManagement implements ContractInterface {
         ChaincodeStub stub = ctx.getStub();
 
         List<String> assetHistory = new ArrayList<>();
-        QueryResultsIterator<KeyModification> results = stub.getHistoryForKey(assetId);
 
-        for (KeyModification modification : results) {
-            String value = new String(modification.getValue(), UTF_8);
-            assetHistory.add(value);
+        // access records such as "asset1_read" live in the journal
+        AccessJournal.Event event = AccessJournal.eventOf(assetId);
+        if (event != null) {
+            for (AccessJournal.Entry entry : new AccessJournal(stub).read(AccessJournal.assetOf(assetId, event), event)) {
+                assetHistory.add(entry.getRecord());
+            }
+            return String.join(",", assetHistory);
         }
 
+        AccessJournal.scanHistory(stub, assetId, false, entry -> assetHistory.add(entry.getRecord()));
+
         return String.join(",", assetHistory);
     }
 
+    /**
+     * getHistoryForAssetPaged returns one page of the history of a key, such as an access
+     * record key like "asset1_read" or a key like "Org1MSP_public_key". Unlike
+     * getHistoryForAsset it holds at most one page in memory and keeps values that contain
+     * commas intact.
+     *
+     * The pages of an access record key resume from their bookmark in the journal and the
+     * batch references, so each costs about the same. The legacy key of such a record and any
+     * other key have only their history, which a peer reads from the start, so a page of it
+     * skips every record before its bookmark: walking a history of n records costs O(n^2 /
+     * limit) on the peer, and a bookmark more than {@link #HISTORY_SKIP_LIMIT} records in is
+     * rejected.
+     *
+     * @param ctx         the transaction context
+     * @param assetId     the key to read the history of
+     * @param limit       the maximum number of records to return, at most {@link #HISTORY_PAGE_LIMIT}
+     * @param resumeAfter the bookmark returned with the previous page, or empty for the first page
+     * @return a JSON object with the records of the page, each with its txId, timestamp,
+     *         isDelete flag and value, their count and the bookmark of the next page, which
+     *         is empty once the last page has been returned
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String getHistoryForAssetPaged(final Context ctx, final String assetId, final int limit, final String resumeAfter) {
+        if (limit <= 0) {
+            String errorMessage = String.format("Invalid page size %d", limit);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        return readHistoryPage(ctx.getStub(), assetId, Math.min(limit, HISTORY_PAGE_LIMIT), resumeAfter).toString();
+    }
+
+    private JSONObject readHistoryPage(final ChaincodeStub stub, final String assetId, final int limit, final String resumeAfter) {
+        HistoryPage page = new HistoryPage(limit, resumeAfter, HISTORY_SKIP_LIMIT);
+        AccessJournal.Event event = AccessJournal.eventOf(assetId);
+        if (event != null) {
+            new AccessJournal(stub).scan(AccessJournal.assetOf(assetId, event), event, resumeAfter == null ? "" : resumeAfter, page::offer);
+        } else {
+            AccessJournal.scanHistory(stub, assetId, true, page::offer);
+        }
+        if (!page.isResumed()) {
+            String errorMessage = String.format("Unknown bookmark %s for %s, or more than %d records before it", resumeAfter, assetId, HISTORY_SKIP_LIMIT);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        return page.toJson();
+    }
+
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public void uploadKey(final Context ctx) {
         ChaincodeStub stub = ctx.getStub();
@@ -378,92 +969,289 @@ public final class AssetManagement implements ContractInterface {
         stub.putStringState(keyId, key);
     }
 
+    /**
+     * Deletes an asset, if it has not been deleted already, and requests its erasure from every
+     * organization holding a copy, on request of its owner organization or data subject. The
+     * holders are the owner organization and the organizations that have read the asset, as
+     * counted by the access counters. Each of them gets an erasure task, which it completes
+     * with {@link #ConfirmErasure(Context, String)}.
+     *
+     * @param ctx     the transaction context
+     * @param assetId the ID of the asset
+     * @return a summary of the erasure request, see {@link #GetErasureStatus(Context, String)},
+     *         listing at most {@link #ERASURE_SUMMARY_LIMIT} pending holders
+     */
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public String eraseDataRequest(final Context ctx, final String assetId) {
         ChaincodeStub stub = ctx.getStub();
 
-        String clientMspId = ctx.getClientIdentity().getMSPID();
-        String clientRole = ctx.getClientIdentity().getAttributeValue("role");
-        String idName = extractId(ctx.getClientIdentity().getId());
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        String clientMspId = caller.getMspId();
+        String idName = caller.getIdName();
 
         // Retrieve the asset from the ledger
         byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, assetId);
+        final AssetErasure.Record deletion;
         if (assetJSON == null || assetJSON.length == 0) {
-            String errorMessage = String.format("Asset not found: ID %s\n", assetId);
-            System.err.println(errorMessage);
-            // throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
-            String assetDeletionRecordId = assetId + "_deletion";
-            String assetDeletionRecord = getHistoryForAsset(ctx, assetDeletionRecordId);
-            if (assetDeletionRecord == null || assetDeletionRecord.length() == 0) {
+            // the asset may have been deleted already
+            deletion = new AssetErasure(stub).deletionOf(assetId);
+            if (deletion == null) {
+                String errorMessage = String.format("Asset not found: ID %s\n", assetId);
+                System.err.println(errorMessage);
                 throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
             }
-            String[] parts = assetDeletionRecord.split(" ");
-            String deletedAssetId = parts[1];
-            String dataSubjectId = parts[3];
-            String clientMspIdId = parts[7];
-            if (deletedAssetId.equals(assetId)) {
-                if (!clientMspId.equals(clientMspIdId)) {
-                    String errorMessage2 = String.format("Client %s with role %s is not authorized to erase asset %s.", idName, clientRole, assetId);
-                    System.err.println(errorMessage2);
-                    throw new ChaincodeException(errorMessage2, AssetTransferErrors.INVALID_ACCESS.toString());
-                }
-                if ("patient".equals(clientRole) && !idName.equals(dataSubjectId)) {
-                    String errorMessage2 = String.format("Patient with id %s is not authorized to erase asset %s of %s", idName, assetId, dataSubjectId);
-                    System.err.println(errorMessage2);
-                    throw new ChaincodeException(errorMessage2, AssetTransferErrors.INVALID_ACCESS.toString());
+            checkErase(caller, assetId, deletion.getDataSubject(), deletion.getOwnerOrg());
+        } else {
+            Asset asset = Asset.deserialize(assetJSON);
+            // The organization of the owner is stored with the asset
+            checkErase(caller, assetId, asset.getDataSubject(), asset.getOwnerOrg());
+            deletion = deleteAsset(ctx, asset, caller);
+        }
+
+        JSONObject summary = requestErasure(stub, deletion, caller, ERASURE_SUMMARY_LIMIT);
+
+        // Record the erasure request on the public ledger
+        String dataErasureRecord = String.format("Erasure of asset %s was requested by %s with id %s from %d holders at %s", assetId, clientMspId, idName, summary.getInt("holders"), stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetId, AccessJournal.Event.ERASURE, dataErasureRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.ERASURE_REQUESTED, assetId, clientMspId, summary.getInt("holders"));
+
+        return summary.toString();
+    }
+
+    /**
+     * Erases many assets, for example all assets of a data subject exercising the right to be
+     * forgotten, applying the rules of {@link #eraseDataRequest(Context, String)} to each of
+     * them. At most {@link #ERASE_CHUNK_SIZE} assets are processed per transaction; call again
+     * with the returned continuation until it is empty. Each erased asset gets a deletion
+     * record, an erasure request and erasure tasks for its holders, while the journal gets one
+     * deletion and one erasure record for the whole chunk.
+     *
+     * In purge mode the assets, their index entries, older versions and the personal data of
+     * their deletion and erasure records are purged together with their history, as by
+     * {@link #PurgeAsset(Context)}, and assets of the selection that were deleted before are
+     * purged as well. In delete mode those are reported as unchanged.
+     *
+     * @param ctx          the transaction context
+     * @param selection    the assets, {"assetIDs": [...]}; the assets of a data subject are
+     *                     listed with {@link #QueryAssetByPatientIndex}
+     * @param mode         "delete" or "purge"
+     * @param continuation empty for the first call, otherwise the continuation returned by
+     *                     the previous call
+     * @return a JSON object with the number of erased, unchanged and failed assets, the
+     *         status of each processed asset and the continuation
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String bulkEraseAssets(final Context ctx, final String selection, final String mode, final String continuation) {
+        if (!"delete".equals(mode) && !"purge".equals(mode)) {
+            String errorMessage = String.format("Unknown erase mode %s, expected delete or purge", mode);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        boolean purge = "purge".equals(mode);
+        ChaincodeStub stub = ctx.getStub();
+        verifyClientOrgMatchesPeerOrg(ctx);
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+
+        AssetSelection chunk = AssetSelection.select(selection, continuation, ERASE_CHUNK_SIZE);
+        AssetErasure erasure = new AssetErasure(stub);
+        AssetEvents events = AssetEvents.of(ctx);
+
+        JSONArray results = new JSONArray();
+        List<String> erased = new ArrayList<>(chunk.size());
+        List<String> requested = new ArrayList<>(chunk.size());
+        int unchanged = 0;
+        for (String assetID : chunk.getAssetIDs()) {
+            JSONObject result = new JSONObject().put("assetID", assetID);
+            try {
+                byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, assetID);
+                if (assetJSON != null && assetJSON.length > 0) {
+                    Asset asset = Asset.deserialize(assetJSON);
+                    checkErase(caller, assetID, asset.getDataSubject(), asset.getOwnerOrg());
+                    // recorded first, so that a purge also purges the details of the records
+                    JSONObject summary = requestErasure(stub, erasure.recordDeletion(asset, caller), caller, 0);
+                    removeAsset(stub, assetID, asset.getDataSubject(), asset.getOwnerOrg(), asset.getVersion(), purge);
+                    erased.add(assetID);
+                    requested.add(assetID);
+                    events.add(purge ? AssetEvents.Type.PURGED : AssetEvents.Type.DELETED, assetID, caller.getMspId(), null);
+                    events.add(AssetEvents.Type.ERASURE_REQUESTED, assetID, caller.getMspId(), summary.getInt("holders"));
+                    result.put("status", purge ? "purged" : "deleted");
+                    result.put("holders", summary.getInt("holders"));
+                } else {
+                    AssetErasure.Record deletion = erasure.deletionOf(assetID);
+                    if (deletion == null) {
+                        throw new ChaincodeException(String.format("Asset not found: ID %s", assetID), AssetTransferErrors.ASSET_NOT_FOUND.toString());
+                    }
+                    checkErase(caller, assetID, deletion.getDataSubject(), deletion.getOwnerOrg());
+                    if (purge) {
+                        removeAsset(stub, assetID, deletion.getDataSubject(), deletion.getOwnerOrg(), AssetVersions.NONE, true);
+                        erased.add(assetID);
+                        events.add(AssetEvents.Type.PURGED, assetID, caller.getMspId(), null);
+                        result.put("status", "purged");
+                    } else {
+                        unchanged++;
+                        result.put("status", "unchanged");
+                    }
                 }
-                // Record the asset erasure on the public ledger
-                String dataErasureRecord = String.format("Asset %s was erased by %s with id %s from %s at %s", assetId, clientMspId, idName, ASSET_COLLECTION_NAME, Instant.now());
-                String dataErasureRecordId = assetId + "_erasure";
-                stub.putStringState(dataErasureRecordId, dataErasureRecord);
-                String assetReadRecordId = assetId + "_read";
-                return getHistoryForAsset(ctx, assetReadRecordId);
-            } else {
-                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+            } catch (ChaincodeException e) {
+                result.put("status", "failed");
+                result.put("error", e.getMessage());
+                result.put("code", e.getPayload() == null ? "" : new String(e.getPayload(), UTF_8));
             }
+            results.put(result);
         }
-        Asset asset = Asset.deserialize(assetJSON);
-        // Extract the organization from the owner's certificate
-        String owner = asset.getOwner();
-        String dataSubject = asset.getDataSubject();
-        String ownerOrg = null;
-        String[] parts = owner.split(",");
-        for (String part : parts) {
-            if (part.trim().startsWith("O=")) {
-                String orgDomain = part.trim().substring(2); // This will give"org1.example.com"
-                String orgName = orgDomain.split("\\.")[0]; // This will give "org1"
-                String orgNameCapitalized = orgName.substring(0, 1).toUpperCase() + orgName.substring(1); // This will give "Org1"
-                ownerOrg = orgNameCapitalized + "MSP"; // This will give "Org1MSP"
-            }
+
+        // Record the erasure of all assets on the public ledger
+        AccessJournal journal = new AccessJournal(stub);
+        if (!erased.isEmpty()) {
+            String assetDeletionRecord = String.format("%d assets were %s by %s with id %s from %s at %s", erased.size(), purge ? "purged" : "deleted", caller.getMspId(), caller.getIdName(), ASSET_COLLECTION_NAME, stub.getTxTimestamp());
+            journal.appendBatch(erased, AccessJournal.Event.DELETION, assetDeletionRecord);
+        }
+        if (!requested.isEmpty()) {
+            String dataErasureRecord = String.format("Erasure of %d assets was requested by %s with id %s at %s", requested.size(), caller.getMspId(), caller.getIdName(), stub.getTxTimestamp());
+            journal.appendBatch(requested, AccessJournal.Event.ERASURE, dataErasureRecord);
         }
+
+        JSONObject summary = new JSONObject();
+        summary.put("erased", erased.size());
+        summary.put("unchanged", unchanged);
+        summary.put("failed", chunk.size() - erased.size() - unchanged);
+        summary.put("results", results);
+        summary.put("continuation", chunk.getContinuation());
+        return summary.toString();
+    }
+
+    private void checkErase(final IdentityResolver.Caller caller, final String assetID, final String dataSubject, final String ownerOrg) {
         // Check if the client is from the owner's organization
-        if (!clientMspId.equals(ownerOrg)) {
-            String errorMessage2 = String.format("Client %s with role %s is not authorized to erase asset from %s", clientMspId, clientRole, ownerOrg);
-            System.err.println(errorMessage2);
-            throw new ChaincodeException(errorMessage2, AssetTransferErrors.INVALID_ACCESS.toString());
+        if (!caller.getMspId().equals(ownerOrg)) {
+            String errorMessage = String.format("Client %s with role %s is not authorized to erase asset from %s", caller.getMspId(), caller.getRole(), ownerOrg);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
+        }
+        if (caller.isPatient() && !caller.getIdName().equals(dataSubject)) {
+            String errorMessage = String.format("Patient with id %s is not authorized to erase asset %s of %s", caller.getIdName(), assetID, dataSubject);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
+        }
+    }
+
+    /**
+     * Records an erasure request for a deleted asset and creates the erasure tasks of its
+     * holders: the owner organization and every organization that has read the asset. The
+     * readers come from the public access counters of the asset, which unlike private data
+     * can be scanned in a transaction that writes.
+     *
+     * @return the summary of the request, listing at most limit pending holders
+     */
+    private JSONObject requestErasure(final ChaincodeStub stub, final AssetErasure.Record deletion, final IdentityResolver.Caller caller, final int limit) {
+        Set<String> holders = new TreeSet<>(new AccessCounter(stub).byOrg(AccessCounter.Scope.ASSET, deletion.getAssetID()).keySet());
+        holders.add(deletion.getOwnerOrg());
+        AssetErasure erasure = new AssetErasure(stub);
+        AssetErasure.Record request = erasure.recordErasure(deletion, caller);
+        return AssetErasure.summary(request, erasure.requestTasks(deletion.getAssetID(), holders), limit);
+    }
+
+    /**
+     * Confirms that the organization of the caller has erased its copies of a deleted asset,
+     * which completes its erasure task. Confirming a task twice changes nothing.
+     *
+     * @param ctx     the transaction context
+     * @param assetID the ID of the asset
+     * @return the erasure task of the organization
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String ConfirmErasure(final Context ctx, final String assetID) {
+        ChaincodeStub stub = ctx.getStub();
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        if (caller.isPatient()) {
+            String errorMessage = String.format("Patient with id %s is not authorized to confirm the erasure of asset %s", caller.getIdName(), assetID);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
+        }
+
+        AssetErasure erasure = new AssetErasure(stub);
+        JSONObject task = erasure.task(assetID, caller.getMspId());
+        if (task == null) {
+            String errorMessage = String.format("No erasure of asset %s was requested from %s", assetID, caller.getMspId());
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+        if (AssetErasure.CONFIRMED.equals(task.getString("status"))) {
+            return task.toString();
+        }
+
+        JSONObject confirmed = erasure.confirm(assetID, caller.getMspId());
+        String dataErasureRecord = String.format("Asset %s was erased by %s with id %s at %s", assetID, caller.getMspId(), caller.getIdName(), stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.ERASURE, dataErasureRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.ERASURE_CONFIRMED, assetID, caller.getMspId());
+        return confirmed.toString();
+    }
+
+    /**
+     * Reports the progress of the latest erasure request of an asset. Patients can only see
+     * the erasure of their own assets.
+     *
+     * @param ctx     the transaction context
+     * @param assetID the ID of the asset
+     * @return a JSON object with the erasure request, the number of holders, pending and
+     *         confirmed tasks, all pending holders and the status of each task as "tasks"
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetErasureStatus(final Context ctx, final String assetID) {
+        AssetErasure erasure = new AssetErasure(ctx.getStub());
+        AssetErasure.Record request = erasure.erasureOf(assetID);
+        if (request == null) {
+            String errorMessage = String.format("No erasure of asset %s was requested", assetID);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
-        if ("patient".equals(clientRole) && !idName.equals(asset.getDataSubject())) {
-            String errorMessage2 = String.format("Patient with id %s is not authorized to erase asset %s of %s", idName, assetId, dataSubject);
-            System.err.println(errorMessage2);
-            throw new ChaincodeException(errorMessage2, AssetTransferErrors.INVALID_ACCESS.toString());
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        if (caller.isPatient() && !caller.getIdName().equals(request.getDataSubject())) {
+            String errorMessage = String.format("Patient with id %s is not authorized to read the erasure of asset %s", caller.getIdName(), assetID);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
         }
 
-        // also delete the key from asset collection
-        System.out.printf("DeleteAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, assetId);
-        stub.delPrivateData(ASSET_COLLECTION_NAME, assetId);
+        Map<String, String> tasks = erasure.tasks(assetID);
+        JSONObject status = AssetErasure.summary(request, tasks, Integer.MAX_VALUE);
+        status.put("tasks", tasks);
+        return status.toString();
+    }
 
-        // Record the asset deletion on the public ledger
-        String assetDeletionRecord = String.format("Asset %s of %s was deleted by %s with id %s from %s at %s", assetId, dataSubject, clientMspId, idName, ASSET_COLLECTION_NAME, Instant.now());
-        String assetDeletionRecordId = assetId + "_deletion";
-        stub.putStringState(assetDeletionRecordId, assetDeletionRecord);
+    /**
+     * Deletes an asset with its index entries and ACL and records the deletion.
+     */
+    private AssetErasure.Record deleteAsset(final Context ctx, final Asset asset, final IdentityResolver.Caller caller) {
+        ChaincodeStub stub = ctx.getStub();
+        String assetID = asset.getAssetID();
+        removeAsset(stub, assetID, asset.getDataSubject(), asset.getOwnerOrg(), asset.getVersion(), false);
 
-        // Record the asset erasure on the public ledger
-        String dataErasureRecord = String.format("Asset %s was erased by %s with id %s from %s at %s", assetId, clientMspId, idName, ASSET_COLLECTION_NAME, Instant.now());
-        String dataErasureRecordId = assetId + "_erasure";
-        stub.putStringState(dataErasureRecordId, dataErasureRecord);
+        // Record the asset deletion on the public ledger
+        String assetDeletionRecord = String.format("Asset %s of %s was deleted by %s with id %s from %s at %s", assetID, asset.getDataSubject(), caller.getMspId(), caller.getIdName(), ASSET_COLLECTION_NAME, stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.DELETION, assetDeletionRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.DELETED, assetID, caller.getMspId(), null);
+        return new AssetErasure(stub).recordDeletion(asset, caller);
+    }
 
-        String assetReadRecordId = assetId + "_read";
-        return getHistoryForAsset(ctx, assetReadRecordId);
+    /**
+     * Deletes or purges an asset with its index entries and older versions; a purge also
+     * purges the personal data of its deletion and erasure records. Its ACL keys lapse with
+     * the asset, see {@link AssetAcl}. The versions are found from the version of the head,
+     * {@link AssetVersions#NONE} once the asset has been deleted, which deleted its versions too.
+     */
+    private static void removeAsset(final ChaincodeStub stub, final String assetID, final String dataSubject, final String ownerOrg, final int version,
+                                    final boolean purge) {
+        if (purge) {
+            System.out.printf("PurgeAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, assetID);
+            new AssetIndex(stub).purge(dataSubject, ownerOrg, assetID);
+            new AssetVersions(stub).purgeAll(assetID, version);
+            new AssetErasure(stub).purgeDetails(assetID);
+            stub.purgePrivateData(ASSET_COLLECTION_NAME, assetID);
+        } else {
+            System.out.printf("DeleteAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, assetID);
+            stub.delPrivateData(ASSET_COLLECTION_NAME, assetID);
+            new AssetIndex(stub).remove(dataSubject, ownerOrg, assetID);
+            new AssetVersions(stub).removeAll(assetID, version);
+        }
     }
 
     // =======Rich queries =========================================================================
@@ -501,46 +1289,163 @@ public final class AssetManagement implements ContractInterface {
         return getQueryResult(ctx, queryString);
     }
 
+    /**
+     * QueryAssetByPatientPaged returns one page of the assets of a data subject, ordered by
+     * asset ID, using the dataSubject-index of the asset collection.
+     * Fabric does not support paginated rich queries on private data, so the page is cut off
+     * in the chaincode: the query selects asset IDs after the bookmark and the iterator is
+     * closed as soon as the page is full.
+     *
+     * @param ctx      the transaction context
+     * @param patient  the data subject to query for
+     * @param pageSize the maximum number of records to return
+     * @param bookmark the bookmark returned with the previous page, or empty for the first page
+     * @return a JSON object with the records of the page, their count and the next bookmark,
+     *         which is empty once the last page has been returned
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAssetByPatientPaged(final Context ctx, final String patient, final int pageSize, final String bookmark) throws Exception {
+        if (pageSize <= 0) {
+            String errorMessage = String.format("Invalid page size %d", pageSize);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        ChaincodeStub stub = ctx.getStub();
+
+        JSONObject selector = new JSONObject();
+        selector.put("dataSubject", patient);
+        selector.put("assetID", new JSONObject().put("$gt", bookmark == null ? "" : bookmark));
+        JSONObject query = new JSONObject();
+        query.put("selector", selector);
+        query.put("sort", new JSONArray().put(new JSONObject().put("dataSubject", "asc")).put(new JSONObject().put("assetID", "asc")));
+        query.put("use_index", new JSONArray().put("_design/dataSubjectDoc").put("dataSubject-index"));
+        System.out.printf("QueryAssetByPatientPaged: %s\n", query);
+
+        JSONArray records = new JSONArray();
+        String nextBookmark = "";
+        try (QueryResultsIterator<KeyValue> results = stub.getPrivateDataQueryResult(ASSET_COLLECTION_NAME, query.toString())) {
+            for (KeyValue result : results) {
+                if (result.getValue() == null || result.getValue().length == 0) {
+                    continue;
+                }
+                if (records.length() == pageSize) {
+                    // there is at least one more record, resume after the last one returned
+                    nextBookmark = records.getJSONObject(pageSize - 1).getString("assetID");
+                    break;
+                }
+                AssetCodec.Summary asset = AssetCodec.summarize(result.getValue());
+                records.put(new JSONObject().put("assetID", asset.getAssetID()).put("ownerOrg", asset.getOwnerOrg()));
+            }
+        }
+
+        JSONObject page = new JSONObject();
+        page.put("records", records);
+        page.put("fetchedRecordsCount", records.length());
+        page.put("bookmark", nextBookmark);
+        return page.toString();
+    }
+
+    /**
+     * QueryAssetByPatientIndex lists the assets of a data subject from the patient~assetID
+     * index instead of a rich query, so it works on LevelDB peers and its cost depends only
+     * on the number of assets of the patient. The result has the same format as
+     * {@link #QueryAssetByPatient(Context, String)}.
+     *
+     * @param ctx     the transaction context
+     * @param patient the data subject to query for
+     * @return the assets of the data subject
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAssetByPatientIndex(final Context ctx, final String patient) throws Exception {
+        System.out.printf("QueryAssetByPatientIndex: %s\n", patient);
+        return getIndexResult(ctx, AssetIndex.Index.PATIENT, patient, QUERY_RESULT_LIMIT);
+    }
+
+    /**
+     * QueryAssetByOwnerOrg lists the assets owned by an organization from the
+     * ownerOrg~assetID index. The result has the same format as
+     * {@link #QueryAssetByPatient(Context, String)}.
+     *
+     * @param ctx      the transaction context
+     * @param ownerOrg the MSP ID of the owner organization
+     * @return the assets owned by the organization
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAssetByOwnerOrg(final Context ctx, final String ownerOrg) throws Exception {
+        System.out.printf("QueryAssetByOwnerOrg: %s\n", ownerOrg);
+        return getIndexResult(ctx, AssetIndex.Index.OWNER_ORG, ownerOrg, QUERY_RESULT_LIMIT);
+    }
+
+    String getIndexResult(final Context ctx, final AssetIndex.Index index, final String value, final int limit) throws Exception {
+        if (value == null || value.isEmpty()) {
+            String errorMessage = "Empty input: index value";
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        try (QueryResultsIterator<KeyValue> results = new AssetIndex(ctx.getStub()).scan(index, value)) {
+            return formatResults(results, AssetIndex::summaryOf, limit);
+        }
+    }
+
     /**
      * QueryAssets uses a query string to perform a query for assets.
      * Query string matching state database syntax is passed in and executed as is.
      * Supports ad hoc queries that can be defined at runtime by the client.
      *
+     * The result lists the matching assets as ",assetID-ownerOrg" entries. A query that
+     * matches more than {@link #QUERY_RESULT_LIMIT} assets fails with RESULT_LIMIT_EXCEEDED;
+     * QueryAssetByPatientPaged returns the assets of a patient a page at a time instead.
+     *
      * @param ctx         the transaction context
      * @param queryString query string matching state database syntax
-     * @return the asset found on the ledger if there was one
+     * @return the assets found on the ledger
      */
-
     private String getQueryResult(final Context ctx, final String queryString) throws Exception {
+        return getQueryResult(ctx, queryString, QUERY_RESULT_LIMIT);
+    }
+
+    String getQueryResult(final Context ctx, final String queryString, final int limit) throws Exception {
         ChaincodeStub stub = ctx.getStub();
         System.out.printf("QueryAssets: %s\n", queryString);
 
-        String queryResults = " ";
-        // retrieve asset with keys between startKey (inclusive) and endKey(exclusive) in lexical order.
         try (QueryResultsIterator<KeyValue> results = stub.getPrivateDataQueryResult(ASSET_COLLECTION_NAME, queryString)) {
-            for (KeyValue result : results) {
-                if (result.getStringValue() == null || result.getStringValue().length() == 0) {
-                    System.err.printf("Invalid Asset json: %s\n", result.getStringValue());
-                    continue;
-                }
-                Asset asset = Asset.deserialize(result.getStringValue());
-                String owner = asset.getOwner();
-                String ownerOrg = null;
-                String[] parts = owner.split(",");
-                for (String part : parts) {
-                    if (part.trim().startsWith("O=")) {
-                        String orgDomain = part.trim().substring(2); // This will give"org1.example.com"
-                        String orgName = orgDomain.split("\\.")[0]; // This will give "org1"
-                        String orgNameCapitalized = orgName.substring(0, 1).toUpperCase() + orgName.substring(1); // This will give "Org1"
-                        ownerOrg = orgNameCapitalized + "MSP"; // This will give "Org1MSP"
-                    }
-                }
-                String temp = asset.getAssetID() + "-" + ownerOrg;
-                queryResults = queryResults + "," + temp;
-                // System.out.println("QueryResult: " + asset.toString());
+            return formatResults(results, result -> AssetCodec.summarize(result.getValue()), limit);
+        }
+    }
+
+    private static String formatResults(final QueryResultsIterator<KeyValue> results, final Function<KeyValue, AssetCodec.Summary> summarizer, final int limit) {
+        // an entry is about the size of an asset ID plus an MSP ID
+        StringBuilder queryResults = new StringBuilder(Math.min(limit, 64) * 32);
+        queryResults.append(' ');
+        int count = 0;
+        for (KeyValue result : results) {
+            if (result.getValue() == null || result.getValue().length == 0) {
+                System.err.printf("Invalid Asset value: %s\n", result.getKey());
+                continue;
+            }
+            if (count == limit) {
+                String errorMessage = String.format("Query matches more than %d assets", limit);
+                System.err.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.RESULT_LIMIT_EXCEEDED.toString());
             }
+            AssetCodec.Summary asset = summarizer.apply(result);
+            queryResults.append(',').append(asset.getAssetID()).append('-').append(asset.getOwnerOrg());
+            count++;
+        }
+        return queryResults.toString();
+    }
+
+    private static int envInt(final String name, final int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            System.err.printf("Ignoring invalid %s=%s\n", name, value);
+            return defaultValue;
         }
-        return queryResults;
     }
 
 
@@ -563,6 +1468,162 @@ public final class AssetManagement implements ContractInterface {
         }
 
         byte[] transientAssetJSON = transientMap.get("asset_properties");
+        final JSONObject json;
+        try {
+            json = new JSONObject(new String(transientAssetJSON, UTF_8));
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        Asset asset = assetFromProperties(json);
+        String assetID = asset.getAssetID();
+
+        // Check if asset already exists
+        byte[] assetJSON = ctx.getStub().getPrivateData(ASSET_COLLECTION_NAME, assetID);
+        if (assetJSON != null && assetJSON.length > 0) {
+            String errorMessage = String.format("Asset %s already exists", assetID);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+        }
+
+        // Get ID of submitting client identity
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        String clientMspId = caller.getMspId();
+        verifyCreator(ctx, caller);
+
+        putNewAsset(stub, asset, caller);
+
+        // Get collection name for this organization.
+        // String orgCollectionName = getCollectionName(ctx);
+
+        // Record the asset creation on the public ledger
+        String assetCreationRecord = String.format("Asset %s created by %s in %s at %s", assetID, clientMspId, ASSET_COLLECTION_NAME, stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.CREATION, assetCreationRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.CREATED, assetID, clientMspId, null);
+
+        return asset;
+    }
+
+    /**
+     * Creates a batch of new assets in one transaction.
+     * Input in transient map: assets_properties, a JSON array of asset properties as
+     * accepted by {@link #CreateAsset(Context)}.
+     *
+     * Every item is validated on its own. Items that are invalid, repeat an asset ID of the
+     * batch or name an existing asset are reported and skipped; the others are written, and
+     * a single creation record for all of them is added to the public ledger.
+     *
+     * @param ctx the transaction context
+     * @return a JSON object with the number of created and failed items and, for each item
+     *         in input order, its asset ID and status, or the error and its code
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreateAssets(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+        Map<String, byte[]> transientMap = stub.getTransient();
+        if (!transientMap.containsKey("assets_properties")) {
+            String errorMessage = "CreateAssets call must specify assets_properties in Transient map input";
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        final JSONArray items;
+        try {
+            items = new JSONArray(new String(transientMap.get("assets_properties"), UTF_8));
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        if (items.isEmpty() || items.length() > MAX_BATCH_SIZE) {
+            String errorMessage = String.format("CreateAssets batch must hold 1 to %d assets, got %d", MAX_BATCH_SIZE, items.length());
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        verifyCreator(ctx, caller);
+
+        JSONArray results = new JSONArray();
+        List<String> created = new ArrayList<>(items.length());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject result = new JSONObject().put("index", i);
+            try {
+                Asset asset = assetFromProperties(items.getJSONObject(i));
+                String assetID = asset.getAssetID();
+                result.put("assetID", assetID);
+                if (!seen.add(assetID)) {
+                    throw new ChaincodeException(String.format("Asset %s is repeated in the batch", assetID), AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+                }
+                byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, assetID);
+                if (assetJSON != null && assetJSON.length > 0) {
+                    throw new ChaincodeException(String.format("Asset %s already exists", assetID), AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+                }
+                putNewAsset(stub, asset, caller);
+                created.add(assetID);
+                AssetEvents.of(ctx).add(AssetEvents.Type.CREATED, assetID, caller.getMspId(), null);
+                result.put("status", "created");
+            } catch (ChaincodeException e) {
+                System.err.printf("CreateAssets: item %d rejected: %s\n", i, e.getMessage());
+                result.put("status", "failed");
+                result.put("error", e.getMessage());
+                result.put("code", e.getPayload() == null ? "" : new String(e.getPayload(), UTF_8));
+            } catch (Exception e) {
+                System.err.printf("CreateAssets: item %d rejected: %s\n", i, e);
+                result.put("status", "failed");
+                result.put("error", String.format("Invalid asset properties: %s", e.getMessage()));
+                result.put("code", AssetTransferErrors.INCOMPLETE_INPUT.toString());
+            }
+            results.put(result);
+        }
+
+        // Record the creation of the whole batch on the public ledger
+        if (!created.isEmpty()) {
+            String assetCreationRecord = String.format("%d assets created by %s in %s at %s", created.size(), caller.getMspId(), ASSET_COLLECTION_NAME, stub.getTxTimestamp());
+            new AccessJournal(stub).appendBatch(created, AccessJournal.Event.CREATION, assetCreationRecord);
+        }
+
+        JSONObject summary = new JSONObject();
+        summary.put("created", created.size());
+        summary.put("failed", items.length() - created.size());
+        summary.put("results", results);
+        return summary.toString();
+    }
+
+    private void verifyCreator(final Context ctx, final IdentityResolver.Caller caller) {
+        // Patient is not allowed to create assets
+        if (caller.isPatient()) {
+            String errorMessageRole = String.format("Client with role %s is not authorized to create asset", caller.getRole());
+            System.err.println(errorMessageRole);
+            throw new ChaincodeException(errorMessageRole, AssetTransferErrors.INVALID_ACCESS.toString());
+        }
+
+        // Verify that the client is submitting request to peer in their organization
+        // This is to ensure that a client from another org doesn't attempt to read or
+        // write private data from this peer.
+        verifyClientOrgMatchesPeerOrg(ctx);
+    }
+
+    private void putNewAsset(final ChaincodeStub stub, final Asset asset, final IdentityResolver.Caller caller) {
+        // Make submitting client the owner
+        asset.setOwner(caller.getId());
+        asset.setOwnerOrg(caller.getMspId());
+        asset.setOwnerName(caller.getIdName());
+        System.out.printf("CreateAsset Put: collection %s, ID %s\n", ASSET_COLLECTION_NAME, asset.getAssetID());
+        System.out.printf("Put: collection %s, ID %s\n", ASSET_COLLECTION_NAME, asset);
+        new AssetAcl(stub).moveOut(asset);
+        stub.putPrivateData(ASSET_COLLECTION_NAME, asset.getAssetID(), asset.serializeWithoutAcl());
+        new AssetIndex(stub).add(asset);
+    }
+
+    /**
+     * Reads and validates the properties of a new asset.
+     *
+     * @param json the asset properties: assetID, pointer, dataSubject, filekey, acl and version
+     * @return the asset, not yet owned by anyone
+     */
+    private Asset assetFromProperties(final JSONObject json) {
         final String assetID;
         final String pointer;
         final String dataSubject;
@@ -570,9 +1631,6 @@ public final class AssetManagement implements ContractInterface {
         List<String> acl;
         int version = 0;
         try {
-            JSONObject json = new JSONObject(new String(transientAssetJSON, UTF_8));
-            String jsonString = json.toString();
-            System.out.printf("check01: ", jsonString);
             Map<String, Object> tMap = json.toMap();
 
             pointer = (String) tMap.get("pointer");
@@ -614,47 +1672,178 @@ public final class AssetManagement implements ContractInterface {
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
         }
 
-        Asset asset = new Asset(pointer, assetID, dataSubject, version, "", filekey, acl);
-        // Check if asset already exists
-        byte[] assetJSON = ctx.getStub().getPrivateData(ASSET_COLLECTION_NAME, assetID);
-        if (assetJSON != null && assetJSON.length > 0) {
-            errorMessage = String.format("Asset %s already exists", assetID);
+        return new Asset(pointer, assetID, dataSubject, version, "", filekey, acl);
+    }
+
+    /**
+     * Adds a new version of an asset, see {@link AssetVersions}. The asset keeps its ID, data
+     * subject, owner and ACL and gets the new pointer and file key, under the next version
+     * number. The version it replaces stays readable with
+     * {@link #ReadAssetVersion(Context, String, int)} until it is purged. Only clients of the
+     * owner organization other than patients can add versions.
+     * Input in transient map: asset_version, a JSON object with assetID, pointer and filekey
+     *
+     * @param ctx the transaction context
+     * @return a JSON object with the asset ID, the new version and the version it replaced
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String UpdateAssetVersion(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+        Map<String, byte[]> transientMap = stub.getTransient();
+        if (!transientMap.containsKey("asset_version")) {
+            String errorMessage = String.format("UpdateAssetVersion call must specify asset_version in Transient map input");
             System.err.println(errorMessage);
-            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
         }
 
-        // Get ID of submitting client identity
-        String clientID = ctx.getClientIdentity().getId();
-        String clientMspId = ctx.getClientIdentity().getMSPID();
-        String clientRole = ctx.getClientIdentity().getAttributeValue("role");
-
-        // Patient is not allowed to create assets
-        if ("patient".equals(clientRole)) {
-            String errorMessageRole = String.format("Client with role %s is not authorized to create asset", clientRole);
+        final String assetID;
+        final String pointer;
+        final String filekey;
+        try {
+            JSONObject json = new JSONObject(new String(transientMap.get("asset_version"), UTF_8));
+            assetID = json.getString("assetID");
+            pointer = json.getString("pointer");
+            filekey = json.getString("filekey");
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
             System.err.println(errorMessage);
-            throw new ChaincodeException(errorMessageRole, AssetTransferErrors.INVALID_ACCESS.toString());
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        if (pointer.isEmpty() || filekey.isEmpty()) {
+            String errorMessage = String.format("Empty input in Transient map: %s", pointer.isEmpty() ? "pointer" : "filekey");
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
         }
 
-        // Verify that the client is submitting request to peer in their organization
-        // This is to ensure that a client from another org doesn't attempt to read or
-        // write private data from this peer.
+        Asset head = existingAsset(stub, assetID);
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        checkAclGrant(caller, head);
         verifyClientOrgMatchesPeerOrg(ctx);
 
-        // Make submitting client the owner
-        asset.setOwner(clientID);
-        System.out.printf("CreateAsset Put: collection %s, ID %s\n", ASSET_COLLECTION_NAME, assetID);
-        System.out.printf("Put: collection %s, ID %s\n", ASSET_COLLECTION_NAME, new String(asset.serialize()));
-        stub.putPrivateData(ASSET_COLLECTION_NAME, assetID, asset.serialize());
+        Asset next = new Asset(pointer, assetID, head.getDataSubject(), head.getVersion() + 1, head.getOwner(), filekey, head.getAcl());
+        next.setOwnerOrg(head.getOwnerOrg());
+        next.setOwnerName(head.getOwnerName());
+        next.setAclGeneration(head.getAclGeneration());
+        new AssetVersions(stub).append(head, next);
+        stub.putPrivateData(ASSET_COLLECTION_NAME, assetID, next.serialize());
+
+        // Record the new version on the public ledger
+        String assetVersionRecord = String.format("Version %d of asset %s created by %s in %s at %s", next.getVersion(), assetID, caller.getMspId(), ASSET_COLLECTION_NAME, stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.VERSION, assetVersionRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.VERSION_ADDED, assetID, caller.getMspId(), next.getVersion());
+
+        JSONObject result = new JSONObject();
+        result.put("assetID", assetID);
+        result.put("version", next.getVersion());
+        result.put("previous", head.getVersion());
+        return result.toString();
+    }
 
-        // Get collection name for this organization.
-        // String orgCollectionName = getCollectionName(ctx);
+    /**
+     * Lists one page of the versions of an asset, newest first. The listing names the
+     * versions only; their pointers and file keys are read with
+     * {@link #ReadAssetVersion(Context, String, int)}, which records the read. The caller
+     * needs read access to the asset, as for {@link #ReadAsset(Context, String)}.
+     *
+     * @param ctx         the transaction context
+     * @param assetID     the ID of the asset
+     * @param limit       the maximum number of versions to return, at most {@link #HISTORY_PAGE_LIMIT}
+     * @param resumeAfter the bookmark returned with the previous page, or empty for the first page
+     * @return a JSON object with the versions of the page, their count and the bookmark of
+     *         the next page, which is empty once the first version has been returned
+     */
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ListAssetVersions(final Context ctx, final String assetID, final int limit, final String resumeAfter) {
+        if (limit <= 0) {
+            String errorMessage = String.format("Invalid page size %d", limit);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+        ChaincodeStub stub = ctx.getStub();
+        Asset head = existingAsset(stub, assetID);
+        checkReadAccess(stub, IdentityResolver.caller(ctx), head);
+        return new AssetVersions(stub).list(head, Math.min(limit, HISTORY_PAGE_LIMIT), resumeAfter).toString();
+    }
 
-        // Record the asset creation on the public ledger
-        String assetCreationRecord = String.format("Asset %s created by %s in %s at %s", assetID, clientMspId, ASSET_COLLECTION_NAME, Instant.now());
-        String assetCreationRecordId = assetID + "_creation";
-        stub.putStringState(assetCreationRecordId, assetCreationRecord);
+    /**
+     * Retrieves an older version of an asset, applying the checks of
+     * {@link #ReadAsset(Context, String)} to the latest version and recording the read.
+     *
+     * @param ctx     the transaction context
+     * @param assetID the ID of the asset
+     * @param version the version to read
+     * @return the version in the format of {@link #ReadAsset(Context, String)}
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String ReadAssetVersion(final Context ctx, final String assetID, final int version) {
+        ChaincodeStub stub = ctx.getStub();
+        Asset head = existingAsset(stub, assetID);
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        checkReadAccess(stub, caller, head);
+        Asset asset = version == head.getVersion() ? head : new AssetVersions(stub).read(assetID, version);
+        if (asset == null) {
+            String errorMessage = String.format("Version %d of asset %s does not exist or has been purged", version, assetID);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
 
-        return asset;
+        // Record the asset read on the public ledger
+        String assetReadRecord = String.format("Version %d of asset %s read by %s at %s", version, assetID, caller.getMspId(), stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.READ, assetReadRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.READ, assetID, caller.getMspId(), version);
+        AccessCounter counter = new AccessCounter(stub);
+        counter.countRead(assetID, head.getDataSubject(), caller.getMspId());
+        counter.flush();
+        return describe(asset);
+    }
+
+    /**
+     * Purges the record of an older version of an asset, with its pointer and file key, and
+     * its history. The latest version can only be removed with the asset, see
+     * {@link #PurgeAsset(Context)}. The rules of {@link #eraseDataRequest(Context, String)}
+     * apply.
+     * Input in transient map: asset_purge, a JSON object with assetID and version
+     *
+     * @param ctx the transaction context
+     */
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void PurgeAssetVersion(final Context ctx) {
+        ChaincodeStub stub = ctx.getStub();
+        Map<String, byte[]> transientMap = stub.getTransient();
+        if (!transientMap.containsKey("asset_purge")) {
+            String errorMessage = String.format("PurgeAssetVersion call must specify 'asset_purge' in Transient map input");
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        final String assetID;
+        final int version;
+        try {
+            JSONObject json = new JSONObject(new String(transientMap.get("asset_purge"), UTF_8));
+            assetID = json.getString("assetID");
+            version = json.getInt("version");
+        } catch (Exception err) {
+            String errorMessage = String.format("TransientMap deserialized error: %s ", err);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        verifyClientOrgMatchesPeerOrg(ctx);
+        Asset head = existingAsset(stub, assetID);
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        checkErase(caller, assetID, head.getDataSubject(), head.getOwnerOrg());
+        if (version >= head.getVersion()) {
+            String errorMessage = String.format("Version %d is the latest version of asset %s, purge the asset instead", version, assetID);
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INCOMPLETE_INPUT.toString());
+        }
+
+        System.out.printf("PurgeAssetVersion: collection %s, ID %s, version %d\n", ASSET_COLLECTION_NAME, assetID, version);
+        new AssetVersions(stub).purge(assetID, version);
+
+        String assetVersionRecord = String.format("Version %d of asset %s purged by %s from %s at %s", version, assetID, caller.getMspId(), ASSET_COLLECTION_NAME, stub.getTxTimestamp());
+        new AccessJournal(stub).append(assetID, AccessJournal.Event.VERSION, assetVersionRecord);
+        AssetEvents.of(ctx).add(AssetEvents.Type.VERSION_PURGED, assetID, caller.getMspId(), version);
     }
 
     /**
@@ -702,9 +1891,10 @@ public final class AssetManagement implements ContractInterface {
 
         Asset asset = Asset.deserialize(assetJSON);
 
-        String clientMspId = ctx.getClientIdentity().getMSPID();
-        String clientRole = ctx.getClientIdentity().getAttributeValue("role");
-        String idName = extractId(ctx.getClientIdentity().getId());
+        IdentityResolver.Caller caller = IdentityResolver.caller(ctx);
+        String clientMspId = caller.getMspId();
+        String clientRole = caller.getRole();
+        String idName = caller.getIdName();
         String dataSubject = asset.getDataSubject();
 
         if ("patient".equals(clientRole) && !idName.equals(dataSubject)) {
@@ -713,18 +1903,8 @@ public final class AssetManagement implements ContractInterface {
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
         }
 
-        // Extract the organization from the owner's certificate
-        String owner = asset.getOwner();
-        String ownerOrg = null;
-        String[] parts = owner.split(",");
-        for (String part : parts) {
-            if (part.trim().startsWith("O=")) {
-                String orgDomain = part.trim().substring(2); // This will give"org1.example.com"
-                String orgName = orgDomain.split("\\.")[0]; // This will give "org1"
-                String orgNameCapitalized = orgName.substring(0, 1).toUpperCase() + orgName.substring(1); // This will give "Org1"
-                ownerOrg = orgNameCapitalized + "MSP"; // This will give "Org1MSP"
-            }
-        }
+        // The organization of the owner is stored with the asset
+        String ownerOrg = asset.getOwnerOrg();
 
         // Check if the client is from the owner's organization
         if (!clientMspId.equals(ownerOrg)) {
@@ -733,14 +1913,8 @@ public final class AssetManagement implements ContractInterface {
             throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ACCESS.toString());
         }
 
-        // delete the key from asset collection
-        System.out.printf("DeleteAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, assetID);
-        stub.delPrivateData(ASSET_COLLECTION_NAME, assetID);
-
-        // Record the asset creation on the public ledger
-        String assetDeletionRecord = String.format("Asset %s of %s was deleted by %s with id %s from %s at %s", assetID, dataSubject, clientMspId, idName, ASSET_COLLECTION_NAME, Instant.now());
-        String assetDeletionRecordId = assetID + "_deletion";
-        stub.putStringState(assetDeletionRecordId, assetDeletionRecord);
+        // delete the key from asset collection and record the deletion
+        deleteAsset(ctx, asset, caller);
     }
 
     /**
@@ -779,9 +1953,29 @@ public final class AssetManagement implements ContractInterface {
 
         verifyClientOrgMatchesPeerOrg(ctx);
 
+        // Purge the index entries as well. If the asset has been deleted already, its data
+        // subject and owner organization are taken from its deletion record.
+        int version = AssetVersions.NONE;
+        AssetErasure erasure = new AssetErasure(stub);
+        byte[] assetJSON = stub.getPrivateData(ASSET_COLLECTION_NAME, assetID);
+        if (assetJSON != null && assetJSON.length > 0) {
+            Asset asset = Asset.deserialize(assetJSON);
+            version = asset.getVersion();
+            new AssetIndex(stub).purge(asset.getDataSubject(), asset.getOwnerOrg(), assetID);
+        } else {
+            AssetErasure.Record deletion = erasure.deletionOf(assetID);
+            if (deletion != null) {
+                new AssetIndex(stub).purge(deletion.getDataSubject(), deletion.getOwnerOrg(), assetID);
+            }
+        }
+
+        new AssetVersions(stub).purgeAll(assetID, version);
+        erasure.purgeDetails(assetID);
+
         // delete the key from asset collection
         System.out.printf("PurgeAsset: collection %s, ID %s\n", ASSET_COLLECTION_NAME, assetID);
         stub.purgePrivateData(ASSET_COLLECTION_NAME, assetID);
+        AssetEvents.of(ctx).add(AssetEvents.Type.PURGED, assetID, ctx.getClientIdentity().getMSPID(), null);
     }
 
     private void verifyClientOrgMatchesPeerOrg(final Context ctx) {
@@ -803,14 +1997,4 @@ public final class AssetManagement implements ContractInterface {
         return clientMSPID + "PrivateCollection";
     }
 
-    private String extractId(final String input) {
-        String id = "";
-        Pattern pattern = Pattern.compile("CN=(.*?),");
-        Matcher matcher = pattern.matcher(input);
-        if (matcher.find()) {
-            id = matcher.group(1);
-        }
-        return id;
-    }
-
 }
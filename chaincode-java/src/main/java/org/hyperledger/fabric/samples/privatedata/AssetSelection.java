@@ -0,0 +1,74 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One chunk of the assets selected for a bulk operation.
+ */
+final class AssetSelection {
+
+    private final List<String> assetIDs = new ArrayList<>();
+    private String continuation = "";
+
+    List<String> getAssetIDs() {
+        return assetIDs;
+    }
+
+    int size() {
+        return assetIDs.size();
+    }
+
+    /**
+     * The continuation to select the next chunk, empty after the last chunk.
+     */
+    String getContinuation() {
+        return continuation;
+    }
+
+    /**
+     * Selects the next size assets of a list of asset IDs, {"assetIDs": [...]}, processed in
+     * list order with an offset as continuation.
+     *
+     * Bulk transactions are submitted, and a peer does not run range queries over private data
+     * in a transaction that writes, so a selection cannot name the assets of a data subject or
+     * an owner organization. Clients list those with QueryAssetByPatientIndex or
+     * QueryAssetByOwnerOrg and pass the asset IDs.
+     */
+    static AssetSelection select(final String selection, final String continuation, final int size) {
+        AssetSelection chunk = new AssetSelection();
+        try {
+            JSONObject json = new JSONObject(selection);
+            if (!json.has("assetIDs")) {
+                String errorMessage = String.format("Invalid asset selection %s: expected {\"assetIDs\": [...]}; list the assets of a data subject or"
+                        + " an organization with QueryAssetByPatientIndex or QueryAssetByOwnerOrg", selection);
+                System.err.println(errorMessage);
+                throw new ChaincodeException(errorMessage, "INCOMPLETE_INPUT");
+            }
+            JSONArray assetIDs = json.getJSONArray("assetIDs");
+            int offset = continuation == null || continuation.isEmpty() ? 0 : Integer.parseInt(continuation);
+            int end = Math.min(assetIDs.length(), offset + size);
+            for (int i = offset; i < end; i++) {
+                chunk.assetIDs.add(assetIDs.getString(i));
+            }
+            if (end < assetIDs.length()) {
+                chunk.continuation = Integer.toString(end);
+            }
+        } catch (ChaincodeException e) {
+            throw e;
+        } catch (Exception e) {
+            String errorMessage = String.format("Invalid asset selection %s: %s", selection, e.getMessage());
+            System.err.println(errorMessage);
+            throw new ChaincodeException(errorMessage, "INCOMPLETE_INPUT");
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hyperledger.fabric.samples.privatedata.AssetManagement.ASSET_COLLECTION_NAME;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The chain of versions of an asset.
+ *
+ * The asset key always holds the latest version, so it stays the head of the chain and
+ * reading the latest version remains a single point lookup. A new version replaces the head
+ * and moves the version it replaces to keys of its own:
+ * <ul>
+ * <li>a link "assetVersion~assetID~version" naming the version it replaced, written for the
+ * new version, and</li>
+ * <li>the replaced asset record, with its pointer and file key, under
+ * "assetVersionData~assetID~version".</li>
+ * </ul>
+ * Versions are zero padded in the keys, so they sort numerically. Listing the versions
+ * follows the links from the head, two point lookups per version whatever the length of the
+ * chain. The record of an older version can be purged on its own; its link stays, so the
+ * chain can still be walked and shows the version as purged. Deleting or purging the whole
+ * chain walks it the same way from the version of the head.
+ */
+final class AssetVersions {
+
+    static final String LINK_OBJECT_TYPE = "assetVersion";
+    static final String DATA_OBJECT_TYPE = "assetVersionData";
+
+    /**
+     * Stands for the version of a head that no longer exists; versions start at 1.
+     */
+    static final int NONE = 0;
+
+    private final ChaincodeStub stub;
+
+    AssetVersions(final ChaincodeStub stub) {
+        this.stub = stub;
+    }
+
+    static String linkKey(final String assetID, final int version) {
+        return new CompositeKey(LINK_OBJECT_TYPE, assetID, padded(version)).toString();
+    }
+
+    static String dataKey(final String assetID, final int version) {
+        return new CompositeKey(DATA_OBJECT_TYPE, assetID, padded(version)).toString();
+    }
+
+    private static String padded(final int version) {
+        return String.format("%010d", version);
+    }
+
+    /**
+     * Replaces the head of the chain with a new version of the asset, which the caller then
+     * writes under the asset key.
+     *
+     * @param head the current head
+     * @param next the new version, whose version number must be higher than the head's
+     */
+    void append(final Asset head, final Asset next) {
+        stub.putPrivateData(ASSET_COLLECTION_NAME, dataKey(head.getAssetID(), head.getVersion()), head.serialize());
+        Instant timestamp = stub.getTxTimestamp();
+        JSONObject link = new JSONObject();
+        link.put("version", next.getVersion());
+        link.put("previous", head.getVersion());
+        link.put("txId", stub.getTxId());
+        link.put("timestamp", timestamp == null ? 0L : timestamp.toEpochMilli());
+        stub.putPrivateData(ASSET_COLLECTION_NAME, linkKey(next.getAssetID(), next.getVersion()), link.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * Reads an older version of an asset.
+     *
+     * @return the version, or null if there is none or it has been purged
+     */
+    Asset read(final String assetID, final int version) {
+        byte[] data = stub.getPrivateData(ASSET_COLLECTION_NAME, dataKey(assetID, version));
+        return data == null || data.length == 0 ? null : Asset.deserialize(data);
+    }
+
+    /**
+     * Lists one page of the versions of an asset, newest first, by following the links from
+     * the given version down the chain.
+     *
+     * @param head        the asset, that is the latest version
+     * @param limit       the maximum number of versions to return
+     * @param resumeAfter the bookmark returned with the previous page, or empty for the first page
+     * @return a JSON object with the versions of the page, each with its version number, the
+     *         version it replaced, the transaction that created it and whether its record was
+     *         purged, their count and the bookmark of the next page, which is empty once the
+     *         first version has been returned
+     */
+    JSONObject list(final Asset head, final int limit, final String resumeAfter) {
+        Integer version = resumeAfter == null || resumeAfter.isEmpty() ? Integer.valueOf(head.getVersion()) : bookmarkOf(head, resumeAfter);
+        JSONArray versions = new JSONArray();
+        while (version != null && versions.length() < limit) {
+            byte[] linkBytes = stub.getPrivateData(ASSET_COLLECTION_NAME, linkKey(head.getAssetID(), version));
+            JSONObject link = linkBytes == null || linkBytes.length == 0 ? null : new JSONObject(new String(linkBytes, UTF_8));
+            JSONObject item = new JSONObject();
+            item.put("version", version);
+            if (link != null) {
+                item.put("previous", link.getInt("previous"));
+                item.put("txId", link.getString("txId"));
+                item.put("timestamp", link.getLong("timestamp"));
+            }
+            item.put("purged", version != head.getVersion() && read(head.getAssetID(), version) == null);
+            versions.put(item);
+            // the first version has no link
+            version = link == null ? null : Integer.valueOf(link.getInt("previous"));
+        }
+        JSONObject page = new JSONObject();
+        page.put("versions", versions);
+        page.put("fetchedRecordsCount", versions.length());
+        page.put("bookmark", version == null ? "" : version.toString());
+        return page;
+    }
+
+    private static Integer bookmarkOf(final Asset head, final String resumeAfter) {
+        try {
+            int version = Integer.parseInt(resumeAfter);
+            if (version >= 0 && version <= head.getVersion()) {
+                return version;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        String errorMessage = String.format("Unknown bookmark %s for %s", resumeAfter, head.getAssetID());
+        System.err.println(errorMessage);
+        throw new ChaincodeException(errorMessage, "INCOMPLETE_INPUT");
+    }
+
+    /**
+     * Purges the record of an older version with its history. The link stays.
+     */
+    void purge(final String assetID, final int version) {
+        stub.purgePrivateData(ASSET_COLLECTION_NAME, dataKey(assetID, version));
+    }
+
+    /**
+     * Deletes all older versions and links of an asset.
+     *
+     * @param assetID the ID of the asset
+     * @param latest  the version of the head, or {@link #NONE}
+     */
+    void removeAll(final String assetID, final int latest) {
+        for (String key : keys(assetID, latest)) {
+            stub.delPrivateData(ASSET_COLLECTION_NAME, key);
+        }
+    }
+
+    /**
+     * Deletes all older versions and links of an asset together with their history.
+     *
+     * @param assetID the ID of the asset
+     * @param latest  the version of the head, or {@link #NONE}
+     */
+    void purgeAll(final String assetID, final int latest) {
+        for (String key : keys(assetID, latest)) {
+            stub.purgePrivateData(ASSET_COLLECTION_NAME, key);
+        }
+    }
+
+    /**
+     * Collects the keys of the chain by following the links down from the head, one point
+     * lookup per version, since a peer does not run range queries over private data in a
+     * transaction that writes.
+     */
+    private List<String> keys(final String assetID, final int latest) {
+        List<String> keys = new ArrayList<>();
+        int version = latest;
+        while (version > NONE) {
+            byte[] linkBytes = stub.getPrivateData(ASSET_COLLECTION_NAME, linkKey(assetID, version));
+            // the first version has no link
+            if (linkBytes == null || linkBytes.length == 0) {
+                return keys;
+            }
+            final int previous;
+            try {
+                previous = new JSONObject(new String(linkBytes, UTF_8)).getInt("previous");
+            } catch (Exception e) {
+                throw new ChaincodeException("Version read error: " + e.getMessage(), "DATA_ERROR");
+            }
+            keys.add(linkKey(assetID, version));
+            keys.add(dataKey(assetID, previous));
+            // links always point to a lower version; never loop on a corrupt one
+            version = previous < version ? previous : NONE;
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Collects one page of a history scan: the records after the resume marker, up to the page
+ * limit. Used as the visitor of {@link AccessJournal#scan} and
+ * {@link AccessJournal#scanHistory}, so at most one page of records is held in memory.
+ *
+ * The resume marker is the {@link AccessJournal.Entry#getBookmark() bookmark} of the last
+ * record of the previous page. Scans return records in a fixed order, so the next page starts
+ * right after it. A journal scan starts at the bookmarked record, but a key history can only
+ * be read from its start, so resuming in one skips every record before the marker; at most
+ * skipLimit records are skipped, which bounds the work of a page on the peer.
+ */
+final class HistoryPage {
+
+    private final int limit;
+    private final String resumeAfter;
+    private final int skipLimit;
+    private final JSONArray records = new JSONArray();
+    private boolean resumed;
+    private int skipped;
+    private String lastBookmark = "";
+    private String bookmark = "";
+
+    HistoryPage(final int limit, final String resumeAfter, final int skipLimit) {
+        this.limit = limit;
+        this.resumeAfter = resumeAfter == null ? "" : resumeAfter;
+        this.skipLimit = skipLimit;
+        this.resumed = this.resumeAfter.isEmpty();
+    }
+
+    /**
+     * Offers the next record of the scan.
+     *
+     * @param entry the record
+     * @return false once the page is full and the scan can stop
+     */
+    boolean offer(final AccessJournal.Entry entry) {
+        if (!resumed) {
+            resumed = resumeAfter.equals(entry.getBookmark());
+            return resumed || ++skipped < skipLimit;
+        }
+        if (records.length() == limit) {
+            // there is at least one more record, resume after the last one returned
+            bookmark = lastBookmark;
+            return false;
+        }
+        lastBookmark = entry.getBookmark();
+        JSONObject record = new JSONObject();
+        record.put("txId", entry.getTxId());
+        record.put("timestamp", entry.getTimestamp() == null ? JSONObject.NULL : entry.getTimestamp().toString());
+        record.put("isDelete", entry.isDeleted());
+        record.put("value", entry.getRecord());
+        records.put(record);
+        return true;
+    }
+
+    /**
+     * Whether the resume marker was found, always true for a first page. False as well if the
+     * scan stopped after skipping skipLimit records without finding it.
+     */
+    boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * The page as a JSON object with the records, their count and the bookmark to pass as
+     * the resume marker for the next page, which is empty after the last page.
+     */
+    JSONObject toJson() {
+        JSONObject page = new JSONObject();
+        page.put("records", records);
+        page.put("fetchedRecordsCount", records.length());
+        page.put("bookmark", bookmark);
+        return page;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package org.hyperledger.fabric.samples.privatedata;
+
+import org.hyperledger.fabric.contract.ClientIdentity;
+import org.hyperledger.fabric.contract.Context;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the identities the contract works with: the submitting client, and the
+ * organization of an asset owner from the owner's X.509 distinguished name.
+ *
+ * The DN parsing results are memoized in bounded LRU caches that live as long as the
+ * chaincode process, so repeated owners and clients are parsed once rather than on every
+ * transaction or, for queries, on every result row.
+ */
+final class IdentityResolver {
+
+    static final int CACHE_SIZE = 1024;
+
+    private static final Pattern CN_PATTERN = Pattern.compile("CN=(.*?),");
+
+    private static final Map<String, String> OWNER_ORGS = lruCache(CACHE_SIZE);
+    private static final Map<String, String> COMMON_NAMES = lruCache(CACHE_SIZE);
+
+    /**
+     * The identity of the client submitting the current transaction.
+     */
+    static final class Caller {
+
+        private final String id;
+        private final String mspId;
+        private final String role;
+        private final String idName;
+
+        Caller(final String id, final String mspId, final String role, final String idName) {
+            this.id = id;
+            this.mspId = mspId;
+            this.role = role;
+            this.idName = idName;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        String getMspId() {
+            return mspId;
+        }
+
+        String getRole() {
+            return role;
+        }
+
+        /**
+         * The common name of the client, which is what patients are identified by.
+         */
+        String getIdName() {
+            return idName;
+        }
+
+        boolean isPatient() {
+            return "patient".equals(role);
+        }
+    }
+
+    private IdentityResolver() {
+    }
+
+    static Caller caller(final Context ctx) {
+        ClientIdentity identity = ctx.getClientIdentity();
+        String id = identity.getId();
+        return new Caller(id, identity.getMSPID(), identity.getAttributeValue("role"), commonName(id));
+    }
+
+    /**
+     * Maps an owner DN such as "x509::CN=owner,...::CN=ca.org1.example.com,O=org1.example.com,..."
+     * to the MSP ID of the issuing organization, e.g. "Org1MSP".
+     *
+     * @param owner the owner's X.509 identity string
+     * @return the owner's MSP ID, or null if the DN names no organization
+     */
+    static String ownerOrg(final String owner) {
+        if (owner == null) {
+            return null;
+        }
+        String ownerOrg = OWNER_ORGS.get(owner);
+        if (ownerOrg == null) {
+            ownerOrg = parseOwnerOrg(owner);
+            if (ownerOrg != null) {
+                OWNER_ORGS.put(owner, ownerOrg);
+            }
+        }
+        return ownerOrg;
+    }
+
+    /**
+     * Extracts the first CN of an X.509 identity string.
+     *
+     * @param id the client's X.509 identity string
+     * @return the common name, or an empty string if there is none
+     */
+    static String commonName(final String id) {
+        if (id == null) {
+            return "";
+        }
+        String cn = COMMON_NAMES.get(id);
+        if (cn == null) {
+            cn = "";
+            Matcher matcher = CN_PATTERN.matcher(id);
+            if (matcher.find()) {
+                cn = matcher.group(1);
+            }
+            COMMON_NAMES.put(id, cn);
+        }
+        return cn;
+    }
+
+    private static String parseOwnerOrg(final String owner) {
+        // the issuer's O= comes last, so the last organization in the DN wins
+        String ownerOrg = null;
+        for (String part : owner.split(",")) {
+            String trimmed = part.trim();
+            if (trimmed.startsWith("O=") && trimmed.length() > 2) {
+                String orgDomain = trimmed.substring(2); // "org1.example.com"
+                String orgName = orgDomain.split("\\.")[0]; // "org1"
+                if (!orgName.isEmpty()) {
+                    ownerOrg = orgName.substring(0, 1).toUpperCase() + orgName.substring(1) + "MSP"; // "Org1MSP"
+                }
+            }
+        }
+        return ownerOrg;
+    }
+
+    static Map<String, String> lruCache(final int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+}
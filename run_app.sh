@@ -18,6 +18,25 @@ export CHAINCODE_NAME
 read -p "Please enter the user (USER): " USER
 export USER
 
+# Runs an operation with the CLI, or with the resident service when SERVICE_URL is set,
+# for example SERVICE_URL=http://127.0.0.1:8080 after starting the service with
+# (cd application-gateway-java && ./gradlew run --args="Serve")
+# ListenEvents always runs as a process of its own. BenchmarkService and LoadTestService
+# run from the test classes, with the benchmarkService and loadTestService tasks.
+run_operation() {
+    if [[ $1 == "BenchmarkService" ]]; then
+        ./gradlew benchmarkService --args="${*:2}"
+    elif [[ $1 == "LoadTestService" ]]; then
+        ./gradlew loadTestService --args="${*:2}"
+    elif [ -n "$SERVICE_URL" ] && [[ $1 != "ListenEvents" ]]; then
+        curl -s -X POST -H "Content-Type: application/json" \
+            -d "$(jq -nc '$ARGS.positional' --args "${@:2}")" \
+            "$SERVICE_URL/operations/$1?org=$ORG" | jq -r '.output + (if .error then "Failed: " + .error else "" end)'
+    else
+        ./gradlew run --args="$*"
+    fi
+}
+
 # Build the project
 # ./application-gateway-java/gradlew build
 cd ./application-gateway-java
@@ -41,6 +60,25 @@ while true; do
     echo "11. CreateAsset_mock"
     echo "12. RetrieveOwnFile"
     echo "13. UploadKey"
+    echo "14. CreateAssets (import a JSONL file)"
+    echo "15. ReadAssetFast (evaluate, record the read later)"
+    echo "16. FlushReceipts"
+    echo "17. ReadAssets (comma-separated assetIDs)"
+    echo "18. GetAccessStats"
+    echo "19. ConfirmErasure"
+    echo "20. GetErasureStatus"
+    echo "21. EraseDataSubject"
+    echo "22. UpdateAssetVersion"
+    echo "23. ListAssetVersions"
+    echo "24. ReadAssetVersion"
+    echo "25. PurgeAssetVersion"
+    echo "26. ListenEvents (keep the local index up to date)"
+    echo "27. IndexHistory (local index)"
+    echo "28. IndexAssets (local index)"
+    echo "29. BenchmarkCachedReads (ReadAcl through the cache)"
+    echo "30. BenchmarkService (CLI against the running service)"
+    echo "31. PeerStats (routing and latency of the peers)"
+    echo "32. LoadTestService (service against in-process stand-in peers)"
 
     # Ask the user to choose an operation
     read -p "Please enter the number of the operation you want to perform: " OPERATION_NUMBER
@@ -83,7 +121,7 @@ while true; do
             ;;
         5)
             OPERATION="GetHistoryForAsset"
-            read -p "Please enter the assetID with the corresponding tail (_creation _read _acl _deletion _erasure _request): " ARG1
+            read -p "Please enter the assetID with the corresponding tail (_creation _read _acl _deletion _erasure _request _version): " ARG1
             ARGS="$ARG1"
             ;;
         6)
@@ -144,6 +182,113 @@ while true; do
             read -p "Please enter the key string: " ARG2
             ARGS="$key_type $ARG2"
             ;;
+        14)
+            OPERATION="CreateAssets"
+            read -p "Please enter the path of the JSONL file: " ARG1
+            read -p "Please enter the batch size: " ARG2
+            ARGS="$ARG1 $ARG2"
+            ;;
+        15)
+            OPERATION="ReadAssetFast"
+            read -p "Please enter the assetID: " ARG1
+            ARGS="$ARG1"
+            ;;
+        16)
+            OPERATION="FlushReceipts"
+            ARGS=""
+            ;;
+        17)
+            OPERATION="ReadAssets"
+            read -p "Please enter the assetIDs (comma-separated): " ARG1
+            ARGS="$ARG1"
+            ;;
+        18)
+            OPERATION="GetAccessStats"
+            read -p "Please enter the scope (asset or patient): " ARG1
+            read -p "Please enter the assetID or dataSubject: " ARG2
+            ARGS="$ARG1 $ARG2"
+            ;;
+        19)
+            OPERATION="ConfirmErasure"
+            read -p "Please enter the assetID: " ARG1
+            ARGS="$ARG1"
+            ;;
+        20)
+            OPERATION="GetErasureStatus"
+            read -p "Please enter the assetID: " ARG1
+            ARGS="$ARG1"
+            ;;
+        21)
+            OPERATION="EraseDataSubject"
+            read -p "Please enter the dataSubject: " ARG1
+            read -p "Please enter the mode (delete or purge): " ARG2
+            ARGS="$ARG1 $ARG2"
+            ;;
+        22)
+            OPERATION="UpdateAssetVersion"
+            read -p "Please enter the assetID: " ARG1
+            read -p "Please enter the new pointer: " ARG2
+            read -p "Please enter the new filekey: " ARG3
+            ARGS="$ARG1 $ARG2 $ARG3"
+            ;;
+        23)
+            OPERATION="ListAssetVersions"
+            read -p "Please enter the assetID: " ARG1
+            ARGS="$ARG1"
+            ;;
+        24)
+            OPERATION="ReadAssetVersion"
+            read -p "Please enter the assetID: " ARG1
+            read -p "Please enter the version: " ARG2
+            ARGS="$ARG1 $ARG2"
+            ;;
+        25)
+            OPERATION="PurgeAssetVersion"
+            read -p "Please enter the assetID: " ARG1
+            read -p "Please enter the version: " ARG2
+            ARGS="$ARG1 $ARG2"
+            ;;
+        26)
+            OPERATION="ListenEvents"
+            ARGS=""
+            ;;
+        27)
+            OPERATION="IndexHistory"
+            read -p "Please enter the assetID: " ARG1
+            ARGS="$ARG1"
+            ;;
+        28)
+            OPERATION="IndexAssets"
+            read -p "Please enter the data subject ID: " ARG1
+            ARGS="$ARG1"
+            ;;
+        29)
+            OPERATION="BenchmarkCachedReads"
+            read -p "Please enter the assetIDs (comma-separated): " ARG1
+            read -p "Please enter the number of rounds: " ARG2
+            ARGS="$ARG1 $ARG2"
+            ;;
+        30)
+            OPERATION="BenchmarkService"
+            read -p "Please enter the number of runs: " ARG1
+            read -p "Please enter the operation and its arguments: " ARG2
+            ARGS="$ARG1 $ARG2"
+            ;;
+        31)
+            OPERATION="PeerStats"
+            read -p "Please enter the assetIDs to evaluate ReadAcl for (comma-separated, optional): " ARG1
+            ARGS=""
+            if [ -n "$ARG1" ]; then
+                read -p "Please enter the number of rounds: " ARG2
+                ARGS="$ARG1 $ARG2"
+            fi
+            ;;
+        32)
+            OPERATION="LoadTestService"
+            read -p "Please enter the numbers of simultaneous requests (comma-separated, e.g. 10,100,1000,5000): " ARG1
+            read -p "Please enter the latency of the stand-in peers in ms: " ARG2
+            ARGS="$ARG1 $ARG2"
+            ;;
         *)
             echo "Invalid operation. Please choose a number between 1 and 4."
             # exit 1
@@ -153,7 +298,7 @@ while true; do
     # Run the application
     cd ./application-gateway-java
     if [[ $OPERATION == "RetrieveFile" ]]; then
-        file_info=$(./gradlew run --args="$OPERATION $ARGS" | grep "^\*\*\* Result:")  
+        file_info=$(run_operation $OPERATION $ARGS | grep "^\*\*\* Result:")  
         file_assetId=$(echo "$file_info" | grep -oP 'Asset ID: \K[^,]*')
         file_fileKey=$(echo "$file_info" | grep -oP 'File Key: \K[^,]*')
         file_pointer=$(echo "$file_info" | grep -oP 'Pointer: \K[^,]*')
@@ -163,12 +308,12 @@ while true; do
         query="${MSP_ID}_verification_key"
         OPERATION2="GetHistoryForAsset"
 
-        verification_key_output=$(./gradlew run --args="$OPERATION2 $query")
+        verification_key_output=$(run_operation $OPERATION2 $query)
         verification_key_string=$(echo "$verification_key_output" | grep -oP 'Result: \K[^,]*')
 
         #temp until change the server database
         query2="${MSP_ID}_public_key"
-        pub_key_output=$(./gradlew run --args="$OPERATION2 $query2")
+        pub_key_output=$(run_operation $OPERATION2 $query2)
         pub_key_string=$(echo "$pub_key_output" | grep -oP 'Result: \K[^,]*')
         cd ..  
         requestor_ID="$(echo ${ORG:0:1} | tr '[:lower:]' '[:upper:]')${ORG:1}MSP"
@@ -178,7 +323,7 @@ while true; do
         #  | tee /dev/fd/2
         # have the file downloaded
     elif [[ $OPERATION == "UpdateAclPermission" ]]; then
-        result=$(./gradlew run --args="$OPERATION $ARGS") 
+        result=$(run_operation $OPERATION $ARGS) 
         if [[ $result == *"Failed"* ]]; then
             cd ..
             echo "You are not authorized to grant permission for this file."
@@ -199,7 +344,7 @@ while true; do
             echo "Generating PRE key for organization $extracted_id."
             query="${ID}_public_key"
             cd ./application-gateway-java
-            public_key_output=$(./gradlew run --args="$OPERATION2 $query")
+            public_key_output=$(run_operation $OPERATION2 $query)
             public_key_string=$(echo "$public_key_output" | grep -oP 'Result: \K[^,]*')
             cd .. 
             # generate re-encryption key fragments and send them to PRE servers
@@ -212,7 +357,7 @@ while true; do
             curl -X POST -H "Content-Type: application/json" -d "{\"file_id\":\"$assetID\", \"requestor_id\":\"$ID\", \"reencryption_key\":\"$kFrag1\"}" http://localhost:5000/store_key
         fi
     elif [[ $OPERATION == "RevokeAclPermission" ]]; then
-        result=$(./gradlew run --args="$OPERATION $ARGS")  
+        result=$(run_operation $OPERATION $ARGS)  
         if [[ $result == *"Failed"* ]]; then
             cd ..
             echo "You are not authorized to revoke permission for this file."
@@ -224,14 +369,14 @@ while true; do
             curl -X POST -H "Content-Type: application/json" -d "{\"file_id\":\"$assetID\", \"requestor_id\":\"$ID\"}" http://localhost:5000/delete_key
         fi
     elif [[ $OPERATION == "RetrieveOwnFile" ]]; then
-        file_info=$(./gradlew run --args="$OPERATION $ARGS" | grep "^\*\*\* Result:")  
+        file_info=$(run_operation $OPERATION $ARGS | grep "^\*\*\* Result:")  
         file_assetId=$(echo "$file_info" | grep -oP 'Asset ID: \K[^,]*')
         file_fileKey=$(echo "$file_info" | grep -oP 'File Key: \K[^,]*')
         file_pointer=$(echo "$file_info" | grep -oP 'Pointer: \K[^,]*')
         cd ..  
         ./own_file_retrieval.sh $file_assetId $file_fileKey $file_pointer | tee /dev/fd/2
     elif [[ $OPERATION == "CreateAsset" ]]; then
-        ./gradlew run --args="$OPERATION $ARGS"
+        run_operation $OPERATION $ARGS
         cd ..
         # Ask the user for the path to the public key PEM file
         echo "Successfully uploaded file and created asset, now generating re-encryption keys for PRE servers."
@@ -253,7 +398,7 @@ while true; do
                 echo "Generating PRE key for organization $extracted_id."
                 query="${ID}_public_key"
                 cd ./application-gateway-java
-                public_key_output=$(./gradlew run --args="$OPERATION2 $query")
+                public_key_output=$(run_operation $OPERATION2 $query)
                 public_key_string=$(echo "$public_key_output" | grep -oP 'Result: \K[^,]*')
                 cd .. 
                 # generate re-encryption key fragments and send them to PRE servers
@@ -269,7 +414,7 @@ while true; do
             fi
         done
     else
-        ./gradlew run --args="$OPERATION $ARGS"
+        run_operation $OPERATION $ARGS
         cd ..
     fi
 done
\ No newline at end of file